@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Queries through DbQuery against an embedded H2 database in MySQL mode. A local MySQL server can be used instead
+ * with -Dbenchmark.jdbc.url=jdbc:mysql://localhost/bench -Dbenchmark.jdbc.driver=com.mysql.cj.jdbc.Driver and the
+ * matching benchmark.jdbc.username and benchmark.jdbc.password; the bench_sales table is recreated
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DbQueryBenchmark {
+
+	private static final int TABLE_ROWS = 10000;
+
+	@Param({ "false", "true" })
+	private boolean metrics;
+
+	private DbQuery dbQuery;
+
+	@Setup(Level.Trial)
+	public void setup() throws DbException {
+		dbQuery = new DbQuery(System.getProperty("benchmark.jdbc.driver", "org.h2.Driver"),
+				System.getProperty("benchmark.jdbc.url", "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1"),
+				System.getProperty("benchmark.jdbc.username", "sa"),
+				System.getProperty("benchmark.jdbc.password", ""));
+		dbQuery.execute("DROP TABLE IF EXISTS bench_sales");
+		dbQuery.execute("CREATE TABLE bench_sales (id BIGINT PRIMARY KEY, sku VARCHAR(64), qty INT, price DOUBLE)");
+		try (BatchInserter inserter = new BatchInserter(dbQuery, "bench_sales",
+				new String[] { "id", "sku", "qty", "price" })) {
+			for (int i = 0; i < TABLE_ROWS; i++) {
+				inserter.add(new Object[] { i, "SKU-" + i, i % 97, i * 1.25 });
+			}
+		}
+		if (metrics) {
+			dbQuery.setQueryListener(new QueryMetrics());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws DbException {
+		dbQuery.execute("DROP TABLE bench_sales");
+		dbQuery.closeConnection();
+	}
+
+	@Benchmark
+	public List<ResultRow> executeQuery() throws DbException {
+		return dbQuery.executeQuery("SELECT id, sku, qty, price FROM bench_sales WHERE id < 100");
+	}
+
+	@Benchmark
+	public List<ResultRow> executeQueryWithParameters() throws DbException {
+		return dbQuery.executeQuery("SELECT id, sku, qty, price FROM bench_sales WHERE id < ?", 100);
+	}
+
+}
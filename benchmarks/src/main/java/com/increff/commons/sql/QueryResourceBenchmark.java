@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Composing queries from resources, with the template cache warm, and stripping comments from SQL
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryResourceBenchmark {
+
+	private static final String RESOURCE_BASE = "/com/increff/commons/sql/benchmark";
+	private static final String QUERY = "report.sql";
+
+	private QueryResource queryResource;
+	private Map<String, String> data;
+	private String rawQuery;
+
+	@Setup
+	public void setup() throws DbException, IOException {
+		queryResource = new QueryResource(RESOURCE_BASE);
+		data = new HashMap<>();
+		data.put("schema", "inventory");
+		data.put("from_date", "2021-06-01");
+		data.put("to_date", "2021-06-30");
+		data.put("store_filter", "store_id IN (1, 2, 3)");
+		try (InputStream is = getClass().getResourceAsStream(RESOURCE_BASE + "/" + QUERY)) {
+			rawQuery = IOUtils.toString(is, StandardCharsets.UTF_8);
+		}
+		queryResource.getQuery(QUERY, data);
+	}
+
+	@Benchmark
+	public String getQuery() throws DbException {
+		return queryResource.getQuery(QUERY, data);
+	}
+
+	@Benchmark
+	public NamedQuery getNamedQuery() throws DbException {
+		return queryResource.getNamedQuery(QUERY, data);
+	}
+
+	@Benchmark
+	public String cleanComments() {
+		return QueryResource.cleanComments(rawQuery);
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Typed getters of ResultRow, looking up columns by name, by index and by column handle
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultRowBenchmark {
+
+	private ResultRow row;
+	private ColumnHandle[] handles;
+
+	@Setup
+	public void setup() {
+		String[] names = { "id", "sku", "qty", "price", "store", "day" };
+		HashMap<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			columns.put(names[i], i);
+		}
+		row = new ResultRow(columns);
+		row.setTokens(new String[] { "123456", "SKU-123456", "42", "19.99", "store-7", "2021-06-15" });
+		handles = ColumnHandle.of(columns, false, names);
+	}
+
+	@Benchmark
+	public void getByName(Blackhole bh) {
+		bh.consume(row.getLong("id"));
+		bh.consume(row.getString("sku"));
+		bh.consume(row.getInteger("qty"));
+		bh.consume(row.getDouble("price"));
+		bh.consume(row.getString("store"));
+		bh.consume(row.getLocalDate("day"));
+	}
+
+	@Benchmark
+	public void getByIndex(Blackhole bh) {
+		bh.consume(row.getLong(0));
+		bh.consume(row.getString(1));
+		bh.consume(row.getInteger(2));
+		bh.consume(row.getDouble(3));
+		bh.consume(row.getString(4));
+		bh.consume(row.getLocalDate(5));
+	}
+
+	@Benchmark
+	public void getByHandle(Blackhole bh) {
+		bh.consume(row.getLong(handles[0]));
+		bh.consume(row.getString(handles[1]));
+		bh.consume(row.getInteger(handles[2]));
+		bh.consume(row.getDouble(handles[3]));
+		bh.consume(row.getString(handles[4]));
+		bh.consume(row.getLocalDate(handles[5]));
+	}
+
+}
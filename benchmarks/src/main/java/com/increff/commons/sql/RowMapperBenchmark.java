@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping a ResultRow to an object by hand written code and by RowMapper
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+	public static class Sale {
+
+		private long id;
+		private String sku;
+		private int qty;
+		private double price;
+		private String storeCode;
+		private LocalDate day;
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public void setSku(String sku) {
+			this.sku = sku;
+		}
+
+		public void setQty(int qty) {
+			this.qty = qty;
+		}
+
+		public void setPrice(double price) {
+			this.price = price;
+		}
+
+		public void setStoreCode(String storeCode) {
+			this.storeCode = storeCode;
+		}
+
+		public void setDay(LocalDate day) {
+			this.day = day;
+		}
+
+	}
+
+	private ResultRow row;
+	private RowMapper<Sale> mapper;
+
+	@Setup
+	public void setup() {
+		String[] names = { "id", "sku", "qty", "price", "store_code", "day" };
+		HashMap<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			columns.put(names[i], i);
+		}
+		row = new ResultRow(columns);
+		row.setTokens(new String[] { "123456", "SKU-123456", "42", "19.99", "store-7", "2021-06-15" });
+		mapper = RowMapper.of(Sale.class);
+	}
+
+	@Benchmark
+	public Sale handWritten() {
+		Sale sale = new Sale();
+		sale.setId(row.getLong(0));
+		sale.setSku(row.getString(1));
+		sale.setQty(row.getInteger(2));
+		sale.setPrice(row.getDouble(3));
+		sale.setStoreCode(row.getString(4));
+		sale.setDay(row.getLocalDate(5));
+		return sale;
+	}
+
+	@Benchmark
+	public Sale rowMapper() {
+		return mapper.map(row);
+	}
+
+}
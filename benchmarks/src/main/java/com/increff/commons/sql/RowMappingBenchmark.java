@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.tools.SimpleResultSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Mapping of JDBC rows to ResultRow objects, on an in-memory result set so that only the mapping is measured
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMappingBenchmark {
+
+	@Param({ "1000" })
+	private int rows;
+
+	private SimpleResultSet rs;
+	private HashMap<String, Integer> columnMap;
+
+	@Setup
+	public void setup() throws SQLException {
+		rs = newResultSet(rows);
+		columnMap = JdbcUtil.getColumMap(rs);
+	}
+
+	@Benchmark
+	public HashMap<String, Integer> getColumMap() throws SQLException {
+		return JdbcUtil.getColumMap(rs);
+	}
+
+	@Benchmark
+	public void getResultRows(Blackhole bh) throws SQLException {
+		rs.beforeFirst();
+		while (rs.next()) {
+			bh.consume(JdbcUtil.getResultRow(rs, columnMap));
+		}
+	}
+
+	/**
+	 * Result set with a mix of numeric, text and date columns, like a typical pulled table
+	 */
+	static SimpleResultSet newResultSet(int rows) {
+		SimpleResultSet rs = new SimpleResultSet();
+		// Allows rewinding with beforeFirst()
+		rs.setAutoClose(false);
+		rs.addColumn("id", Types.BIGINT, 19, 0);
+		rs.addColumn("sku", Types.VARCHAR, 64, 0);
+		rs.addColumn("qty", Types.INTEGER, 10, 0);
+		rs.addColumn("price", Types.DOUBLE, 17, 0);
+		rs.addColumn("store", Types.VARCHAR, 64, 0);
+		rs.addColumn("day", Types.VARCHAR, 10, 0);
+		for (int i = 0; i < rows; i++) {
+			rs.addRow((long) i, "SKU-" + i, i % 97, i * 1.25, "store-" + i % 13, "2021-06-" + (10 + i % 20));
+		}
+		return rs;
+	}
+
+}
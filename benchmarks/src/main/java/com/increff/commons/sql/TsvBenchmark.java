@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Writing rows in the mysql client TSV format, reading the header of a pulled file, and reading its rows with
+ * BufferedReader and String.split compared to TsvReader
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TsvBenchmark {
+
+	private static final String[] HEADER = { "id", "sku", "qty", "price", "store", "description" };
+
+	@Param({ "10000" })
+	private int rows;
+
+	private String[][] values;
+	private File file;
+	private File compressedFile;
+
+	@Setup
+	public void setup() throws IOException {
+		values = new String[rows][];
+		for (int i = 0; i < rows; i++) {
+			values[i] = new String[] { Integer.toString(i), "SKU-" + i, Integer.toString(i % 97),
+					Double.toString(i * 1.25), i % 10 == 0 ? null : "store-" + i % 13, "line\twith\\escapes " + i };
+		}
+		file = File.createTempFile("tsv-benchmark", ".tsv");
+		compressedFile = File.createTempFile("tsv-benchmark", ".tsv.gz");
+		for (File f : new File[] { file, compressedFile }) {
+			TsvWriter writer = TsvWriter.open(f, false);
+			writer.writeHeader(HEADER);
+			writeRows(writer);
+			writer.close();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+		compressedFile.delete();
+	}
+
+	@Benchmark
+	public long writeRows() throws IOException {
+		TsvWriter writer = new TsvWriter(new NullChannel(), TsvWriter.CLI_NULL);
+		writer.writeHeader(HEADER);
+		writeRows(writer);
+		writer.close();
+		return writer.getBytes();
+	}
+
+	@Benchmark
+	public long writeCompressedFile() throws IOException {
+		TsvWriter writer = TsvWriter.open(compressedFile, false);
+		writer.writeHeader(HEADER);
+		writeRows(writer);
+		writer.close();
+		return writer.getBytes();
+	}
+
+	@Benchmark
+	public String getColumns() throws DbException {
+		return DbCmd.getColumns(file.getPath());
+	}
+
+	@Benchmark
+	public String getColumnsCompressed() throws DbException {
+		return DbCmd.getColumns(compressedFile.getPath());
+	}
+
+	@Benchmark
+	public long readLines() throws IOException {
+		long sum = 0;
+		try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			reader.readLine();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				String[] tokens = line.split("\t", -1);
+				sum += Long.parseLong(tokens[0]) + tokens[1].length();
+			}
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long readTsvReader() throws DbException {
+		long[] sum = new long[1];
+		TsvReader.open(file).forEach(row -> sum[0] += row.getLong(0) + row.getValue(1).length());
+		return sum[0];
+	}
+
+	@Benchmark
+	public long readTsvReaderSplit() throws DbException {
+		LongAdder sum = new LongAdder();
+		TsvReader.open(file).split(4).parallelStream().forEach(reader -> {
+			try {
+				reader.forEach(row -> sum.add(row.getLong(0) + row.getValue(1).length()));
+			} catch (DbException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		return sum.sum();
+	}
+
+	private void writeRows(TsvWriter writer) throws IOException {
+		for (String[] row : values) {
+			writer.writeRow(row);
+		}
+	}
+
+	/**
+	 * Discards everything written, so that only encoding is measured
+	 */
+	private static class NullChannel implements WritableByteChannel {
+
+		private boolean open = true;
+
+		@Override
+		public int write(ByteBuffer src) {
+			int n = src.remaining();
+			src.position(src.limit());
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+
+	}
+
+}
@@ -0,0 +1,17 @@
+-- Daily sales report, used by QueryResourceBenchmark
+/*
+ * Aggregates sales by store and SKU for a date range. Returns are netted off
+ * against sales of the same day.
+ */
+SELECT s.store_id, s.sku, s.day, -- grouping keys
+	SUM(s.qty) AS qty, # units sold
+	SUM(s.qty * s.price) AS revenue,
+	COALESCE(SUM(r.qty), 0) AS returned_qty
+FROM ${schema}.sales s
+LEFT JOIN ${schema}.returns r ON r.store_id = s.store_id AND r.sku = s.sku AND r.day = s.day
+WHERE s.day BETWEEN '${from_date}' AND '${to_date}'
+	AND ${store_filter}
+	AND s.channel <> '--online--' // marketplace orders are reported separately
+	AND s.sku = :{sku}
+GROUP BY s.store_id, s.sku, s.day
+ORDER BY revenue DESC
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor running at most maxInFlight tasks at a time on a delegate executor, so that asynchronous calls do not
+ * overwhelm a connection pool. Further tasks are queued without blocking the submitting thread, and are started as
+ * running tasks complete
+ */
+public class AsyncExecutor implements Executor {
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+	private static volatile Executor threadExecutor;
+
+	private final Executor delegate;
+	private final int maxInFlight;
+	private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * @param delegate Executor running the tasks
+	 * @param maxInFlight Maximum number of tasks running at a time
+	 */
+	public AsyncExecutor(Executor delegate, int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		}
+		this.delegate = delegate;
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Create an executor running tasks on {@link #getThreadExecutor()}
+	 * @param maxInFlight Maximum number of tasks running at a time
+	 */
+	public AsyncExecutor(int maxInFlight) {
+		this(getThreadExecutor(), maxInFlight);
+	}
+
+	/**
+	 * Executor shared by default by all AsyncExecutors: a virtual thread per task where the JVM supports virtual
+	 * threads (Java 21), else a cached pool of daemon threads. Virtual threads are looked up reflectively, so that the
+	 * library keeps running on Java 8
+	 */
+	public static Executor getThreadExecutor() {
+		Executor executor = threadExecutor;
+		if (executor == null) {
+			synchronized (AsyncExecutor.class) {
+				if (threadExecutor == null) {
+					threadExecutor = newThreadExecutor();
+				}
+				executor = threadExecutor;
+			}
+		}
+		return executor;
+	}
+
+	private static Executor newThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// No virtual threads, fall back to platform threads
+		}
+		ThreadFactory factory = r -> {
+			Thread thread = new Thread(r, "dbquery-async-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return Executors.newCachedThreadPool(factory);
+	}
+
+	/**
+	 * Run a task, completing the future with its result, or exceptionally with the exception it throws
+	 * @param task Task to run
+	 * @return Future of the task result
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task) {
+		return submit(this, task);
+	}
+
+	/**
+	 * Run a task on any executor, see {@link #submit(Callable)}
+	 */
+	static <T> CompletableFuture<T> submit(Executor executor, Callable<T> task) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		executor.execute(() -> {
+			try {
+				future.complete(task.call());
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		queue.add(task);
+		drain();
+	}
+
+	/**
+	 * Start queued tasks while fewer than maxInFlight are running
+	 */
+	private void drain() {
+		while (!queue.isEmpty()) {
+			int running = inFlight.get();
+			if (running >= maxInFlight) {
+				return;
+			}
+			if (!inFlight.compareAndSet(running, running + 1)) {
+				continue;
+			}
+			Runnable task = queue.poll();
+			if (task == null) {
+				inFlight.decrementAndGet();
+				continue;
+			}
+			try {
+				delegate.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						inFlight.decrementAndGet();
+						drain();
+					}
+				});
+			} catch (RuntimeException e) {
+				inFlight.decrementAndGet();
+				throw e;
+			}
+		}
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * @return Number of tasks currently running
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+	/**
+	 * @return Number of tasks waiting to be started
+	 */
+	public int getQueued() {
+		return queue.size();
+	}
+
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts rows with multi-row INSERT or REPLACE statements, for servers where LOAD DATA LOCAL INFILE is disabled.
+ * Rows are buffered and sent in batches of a fixed number of rows, which is chosen when the first batch is sent so that
+ * rows of its average size fill three quarters of the byte budget. The budget should stay below max_allowed_packet of
+ * the server and remains a hard limit: a batch which would exceed it is sent early. One prepared statement is reused
+ * for all full batches, and a statement for any other batch size is closed after use. Alternatively rows
+ * can be sent as a JDBC batch of single row statements, which the MySQL driver rewrites into multi-row statements
+ * when rewriteBatchedStatements=true is set on the JDBC URL. Transactions are left to the caller
+ */
+public class BatchInserter implements AutoCloseable {
+
+	private static final long DEFAULT_MAX_BATCH_BYTES = 1 << 20;
+	// Placeholder limit of the MySQL protocol for a prepared statement
+	private static final int MAX_PARAMETERS = 65535;
+	// Estimated size of separators and quotes around each value
+	private static final int VALUE_OVERHEAD = 4;
+
+	private DbQuery dbQuery;
+	private Connection con;
+	private String tableName;
+	private String[] columns;
+	private boolean replace;
+	private boolean jdbcBatch;
+	private long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+	private int maxBatchRows;
+	// Rows of a full batch, 0 until the first batch is sent
+	private int batchRows;
+	private List<Object[]> pending;
+	private long pendingBytes;
+	private PreparedStatement statement;
+	private int statementRows;
+	private long rowsInserted;
+	private long startNanos;
+	private long lastFlushNanos;
+
+	/**
+	 * @param dbQuery DbQuery whose connection is used for the inserts
+	 * @param tableName Table to insert into
+	 * @param columns Columns of the rows, in order
+	 */
+	public BatchInserter(DbQuery dbQuery, String tableName, String[] columns) throws DbException {
+		this.dbQuery = dbQuery;
+		this.con = dbQuery.acquireConnection();
+		this.tableName = tableName;
+		this.columns = columns;
+		this.maxBatchRows = MAX_PARAMETERS / columns.length;
+		this.pending = new ArrayList<>();
+	}
+
+	/**
+	 * @param replace Send REPLACE instead of INSERT statements
+	 */
+	public void setReplace(boolean replace) {
+		this.replace = replace;
+	}
+
+	/**
+	 * @param jdbcBatch Send rows as a JDBC batch of single row statements, to be rewritten by the driver
+	 */
+	public void setJdbcBatch(boolean jdbcBatch) {
+		this.jdbcBatch = jdbcBatch;
+	}
+
+	/**
+	 * @param maxBatchBytes Estimated size of rows sent in one statement, defaults to 1 MB
+	 */
+	public void setMaxBatchBytes(long maxBatchBytes) {
+		this.maxBatchBytes = maxBatchBytes;
+		this.batchRows = 0;
+	}
+
+	/**
+	 * @param maxBatchRows Maximum number of rows sent in one statement
+	 */
+	public void setMaxBatchRows(int maxBatchRows) {
+		this.maxBatchRows = Math.min(maxBatchRows, MAX_PARAMETERS / columns.length);
+		this.batchRows = 0;
+	}
+
+	/**
+	 * Set the byte budget to half of max_allowed_packet of the server, leaving room for escaping of values
+	 */
+	public void setMaxBatchBytesFromServer() throws DbException {
+		Statement stmt = null;
+		try {
+			stmt = con.createStatement();
+			ResultSet rs = stmt.executeQuery("SELECT @@max_allowed_packet");
+			if (rs.next()) {
+				setMaxBatchBytes(rs.getLong(1) / 2);
+			}
+		} catch (SQLException e) {
+			throw new DbException("Error reading max_allowed_packet", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+		}
+	}
+
+	/**
+	 * Add a row, sending the buffered rows if the batch is full. The values are copied
+	 * @param values Values of the row, in column order
+	 */
+	public void add(Object[] values) throws DbException {
+		if (values.length != columns.length) {
+			throw new DbException("Expected " + columns.length + " values, found " + values.length);
+		}
+		if (startNanos == 0) {
+			startNanos = System.nanoTime();
+		}
+		long bytes = 0;
+		for (Object value : values) {
+			bytes += estimateBytes(value);
+		}
+		if (!pending.isEmpty()) {
+			if (batchRows == 0 && pendingBytes + bytes > maxBatchBytes / 4 * 3) {
+				batchRows = pending.size();
+				flush();
+			} else if (pendingBytes + bytes > maxBatchBytes) {
+				flush();
+			}
+		}
+		pending.add(values.clone());
+		pendingBytes += bytes;
+		if (batchRows == 0 && pending.size() >= maxBatchRows) {
+			batchRows = maxBatchRows;
+		}
+		if (batchRows > 0 && pending.size() >= batchRows) {
+			flush();
+		}
+	}
+
+	/**
+	 * @return Number of rows sent in a full batch, 0 until the first batch is sent
+	 */
+	public int getBatchRows() {
+		return batchRows;
+	}
+
+	/**
+	 * Add a row, with values taken in the order of its tokens
+	 * @param row Row to add
+	 */
+	public void add(ResultRow row) throws DbException {
+		add(row.getTokens());
+	}
+
+	/**
+	 * Send all buffered rows. The rows are dropped even if sending them fails, so that they are not sent again by a
+	 * later flush or by {@link #close()}
+	 */
+	public void flush() throws DbException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		boolean success = false;
+		int rows = pending.size();
+		long start = dbQuery.startQuery();
+		try {
+			if (jdbcBatch) {
+				executeJdbcBatch();
+			} else {
+				executeMultiRow();
+			}
+			success = true;
+		} catch (SQLException e) {
+			throw new DbException("Error inserting rows into table: " + tableName, e);
+		} finally {
+			if (start != 0) {
+				// Recorded under a single key for all batch sizes
+				String query = (replace ? "REPLACE" : "INSERT") + " INTO " + tableName + " ("
+						+ String.join(",", columns) + ") VALUES (?+)";
+				dbQuery.endQuery(query, start, success ? rows : -1, success);
+			}
+			dbQuery.invalidate(tableName);
+			pending.clear();
+			pendingBytes = 0;
+		}
+		rowsInserted += rows;
+		lastFlushNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return Number of rows sent to the database
+	 */
+	public long getRowsInserted() {
+		return rowsInserted;
+	}
+
+	/**
+	 * @return Rows sent per second, measured from the first row added to the last batch sent
+	 */
+	public double getRowsPerSecond() {
+		long nanos = lastFlushNanos - startNanos;
+		return nanos <= 0 ? 0 : rowsInserted * 1e9 / nanos;
+	}
+
+	/**
+	 * Send the remaining rows and close the prepared statements. A connection borrowed from a pool is returned
+	 */
+	@Override
+	public void close() throws DbException {
+		try {
+			flush();
+		} finally {
+			JdbcUtil.closeQuietly(statement);
+			statement = null;
+			dbQuery.releaseConnection(con);
+		}
+	}
+
+	// UTILITY METHODS
+
+	private void executeMultiRow() throws SQLException {
+		int rows = pending.size();
+		PreparedStatement ps = rows == batchRows ? getStatement(rows) : con.prepareStatement(getInsertSql(rows));
+		try {
+			int index = 1;
+			for (Object[] values : pending) {
+				for (Object value : values) {
+					ps.setObject(index++, value);
+				}
+			}
+			ps.executeUpdate();
+		} finally {
+			if (ps != statement) {
+				JdbcUtil.closeQuietly(ps);
+			}
+		}
+	}
+
+	private void executeJdbcBatch() throws SQLException {
+		PreparedStatement ps = getStatement(1);
+		for (Object[] values : pending) {
+			for (int i = 0; i < values.length; i++) {
+				ps.setObject(i + 1, values[i]);
+			}
+			ps.addBatch();
+		}
+		ps.executeBatch();
+	}
+
+	/**
+	 * Statement for a number of rows, kept open for reuse until one for another number of rows is needed
+	 */
+	private PreparedStatement getStatement(int rows) throws SQLException {
+		if (statement == null || statementRows != rows) {
+			JdbcUtil.closeQuietly(statement);
+			statement = null;
+			statement = con.prepareStatement(getInsertSql(rows));
+			statementRows = rows;
+		}
+		return statement;
+	}
+
+	String getInsertSql(int rows) {
+		StringBuilder sb = new StringBuilder(replace ? "REPLACE" : "INSERT").append(" INTO ").append(tableName)
+				.append(" (").append(String.join(",", columns)).append(") VALUES ");
+		StringBuilder placeholders = new StringBuilder("(");
+		for (int i = 0; i < columns.length; i++) {
+			placeholders.append(i == 0 ? "?" : ",?");
+		}
+		placeholders.append(')');
+		for (int i = 0; i < rows; i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(placeholders);
+		}
+		return sb.toString();
+	}
+
+	static long estimateBytes(Object value) {
+		if (value == null) {
+			return VALUE_OVERHEAD;
+		}
+		if (value instanceof String) {
+			return ((String) value).length() + VALUE_OVERHEAD;
+		}
+		if (value instanceof byte[]) {
+			return ((byte[]) value).length * 2 + VALUE_OVERHEAD;
+		}
+		if (value instanceof Number) {
+			return 20 + VALUE_OVERHEAD;
+		}
+		return value.toString().length() + VALUE_OVERHEAD;
+	}
+
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Deletes rows of a table in batches ordered by a key, such as the primary key, each batch committed on its own, so
+ * that no single transaction holds locks and undo log for the whole delete. Each batch first looks up the key of its
+ * last row and then deletes the key range up to it, so rows already skipped by the predicate are not scanned again.
+ * Batches can be throttled with a fixed sleep and by waiting for a replica to catch up. Used with
+ * {@link DbCmd#delete(ChunkedDelete)} or {@link #run(DbQuery)}
+ */
+public class ChunkedDelete {
+
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final long LAG_CHECK_MILLIS = 1000;
+
+	private String table;
+	private String keyColumn;
+	private String where;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private long sleepMillis;
+	private DbQuery replica;
+	private long maxReplicaLagSeconds;
+	private String lagColumn;
+	private ProgressListener progressListener;
+	private long rowsDeleted;
+	private long startNanos;
+	private long lastBatchNanos;
+
+	/**
+	 * @param table Table to delete from
+	 * @param keyColumn Unique indexed column the batches are ordered by, usually the primary key
+	 */
+	public ChunkedDelete(String table, String keyColumn) {
+		this.table = table;
+		this.keyColumn = keyColumn;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public String getKeyColumn() {
+		return keyColumn;
+	}
+
+	/**
+	 * @param where Optional predicate restricting the rows deleted, all rows are deleted without it
+	 */
+	public void setWhere(String where) {
+		this.where = where;
+	}
+
+	/**
+	 * @param batchSize Rows deleted per statement, defaults to 1000
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param sleepMillis Pause after each batch
+	 */
+	public void setSleepMillis(long sleepMillis) {
+		this.sleepMillis = sleepMillis;
+	}
+
+	/**
+	 * Wait after each batch until the replication lag of a replica is at most maxLagSeconds
+	 * @param replica DbQuery connected to the replica, with a user allowed to read the replica status
+	 * @param maxLagSeconds Maximum lag in seconds
+	 */
+	public void setReplicaLag(DbQuery replica, long maxLagSeconds) {
+		this.replica = replica;
+		this.maxReplicaLagSeconds = maxLagSeconds;
+	}
+
+	/**
+	 * @param progressListener Listener called after each batch
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * @return Rows deleted by the last run
+	 */
+	public long getRowsDeleted() {
+		return rowsDeleted;
+	}
+
+	/**
+	 * @return Rows deleted per second by the last run, including throttling pauses
+	 */
+	public double getRowsPerSecond() {
+		long nanos = lastBatchNanos - startNanos;
+		return nanos <= 0 ? 0 : rowsDeleted * 1e9 / nanos;
+	}
+
+	/**
+	 * Run the delete. Batches are committed separately, also when the connection is not in auto-commit mode, so a
+	 * failed run leaves the earlier batches deleted and can simply be run again
+	 * @param dbQuery DbQuery used to connect to the database
+	 * @return Number of rows deleted
+	 */
+	public long run(DbQuery dbQuery) throws DbException {
+		rowsDeleted = 0;
+		startNanos = System.nanoTime();
+		lastBatchNanos = startNanos;
+		Connection con = null;
+		try {
+			con = dbQuery.acquireConnection();
+			Object lower = null;
+			while (true) {
+				Object upper = getUpperKey(dbQuery, con, lower);
+				int rows = deleteRange(dbQuery, con, lower, upper);
+				if (!con.getAutoCommit()) {
+					con.commit();
+				}
+				dbQuery.invalidate(table);
+				rowsDeleted += rows;
+				lastBatchNanos = System.nanoTime();
+				if (progressListener != null) {
+					progressListener.progress(rowsDeleted, getRowsPerSecond());
+				}
+				if (upper == null) {
+					return rowsDeleted;
+				}
+				lower = upper;
+				throttle();
+			}
+		} catch (SQLException e) {
+			throw new DbException("Error deleting from table: " + table + ", rows deleted: " + rowsDeleted, e);
+		} finally {
+			dbQuery.releaseConnection(con);
+		}
+	}
+
+	/**
+	 * Key of the last row of the batch after lower, or null if fewer rows than the batch size are left
+	 */
+	private Object getUpperKey(DbQuery dbQuery, Connection con, Object lower) throws SQLException {
+		String query = "SELECT " + keyColumn + " FROM " + table + getWhereClause(lower, false) + " ORDER BY "
+				+ keyColumn + " LIMIT 1 OFFSET " + (batchSize - 1);
+		PreparedStatement ps = dbQuery.prepareStatement(con, query);
+		try {
+			if (lower != null) {
+				ps.setObject(1, lower);
+			}
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getObject(1) : null;
+			}
+		} finally {
+			dbQuery.releaseStatement(ps);
+		}
+	}
+
+	private int deleteRange(DbQuery dbQuery, Connection con, Object lower, Object upper) throws SQLException {
+		String query = "DELETE FROM " + table + getWhereClause(lower, upper != null);
+		PreparedStatement ps = dbQuery.prepareStatement(con, query);
+		int rows = -1;
+		long start = dbQuery.startQuery();
+		try {
+			int index = 1;
+			if (lower != null) {
+				ps.setObject(index++, lower);
+			}
+			if (upper != null) {
+				ps.setObject(index, upper);
+			}
+			rows = ps.executeUpdate();
+			return rows;
+		} finally {
+			dbQuery.releaseStatement(ps);
+			dbQuery.endQuery(query, start, rows, rows >= 0);
+		}
+	}
+
+	private String getWhereClause(Object lower, boolean upper) {
+		StringBuilder sb = new StringBuilder();
+		if (lower != null) {
+			sb.append(keyColumn).append(" > ?");
+		}
+		if (upper) {
+			sb.append(sb.length() == 0 ? "" : " AND ").append(keyColumn).append(" <= ?");
+		}
+		if (where != null) {
+			sb.append(sb.length() == 0 ? "" : " AND ").append('(').append(where).append(')');
+		}
+		return sb.length() == 0 ? "" : " WHERE " + sb;
+	}
+
+	private void throttle() throws DbException {
+		if (sleepMillis > 0) {
+			sleep(sleepMillis);
+		}
+		if (replica == null) {
+			return;
+		}
+		while (getReplicaLag() > maxReplicaLagSeconds) {
+			sleep(LAG_CHECK_MILLIS);
+		}
+	}
+
+	/**
+	 * Replication lag in seconds, read with SHOW REPLICA STATUS or with SHOW SLAVE STATUS on servers before 8.0.22
+	 */
+	private long getReplicaLag() throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		try {
+			con = replica.acquireConnection();
+			stmt = con.createStatement();
+			ResultSet rs;
+			if (lagColumn == null) {
+				try {
+					rs = stmt.executeQuery("SHOW REPLICA STATUS");
+					lagColumn = "Seconds_Behind_Source";
+				} catch (SQLException e) {
+					rs = stmt.executeQuery("SHOW SLAVE STATUS");
+					lagColumn = "Seconds_Behind_Master";
+				}
+			} else {
+				rs = stmt.executeQuery(lagColumn.endsWith("Source") ? "SHOW REPLICA STATUS" : "SHOW SLAVE STATUS");
+			}
+			if (!rs.next()) {
+				throw new DbException("Replica lag cannot be checked, server is not a replica");
+			}
+			long lag = rs.getLong(lagColumn);
+			if (rs.wasNull()) {
+				throw new DbException("Replica lag cannot be checked, replication is not running");
+			}
+			return lag;
+		} catch (SQLException e) {
+			throw new DbException("Error reading replica status", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			replica.releaseConnection(con);
+		}
+	}
+
+	private static void sleep(long millis) throws DbException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while throttling delete", e);
+		}
+	}
+
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.function.Supplier;
+
+import com.nextscm.commons.lang.CmdUtil;
+
+/**
+ * Runs every operation as a separate mysql command line client process
+ */
+class CliBackend implements DbCmdBackend {
+
+	private SqlUtil sqlUtil;
+	private Supplier<Redirect> logRedirect;
+
+	CliBackend(SqlUtil sqlUtil, Supplier<Redirect> logRedirect) {
+		this.sqlUtil = sqlUtil;
+		this.logRedirect = logRedirect;
+	}
+
+	@Override
+	public void runAdmin(String query) throws DbException {
+		Redirect redirect = logRedirect.get();
+		run(sqlUtil.getAdminCmd(query), redirect, redirect);
+	}
+
+	@Override
+	public void runQuery(String query) throws DbException {
+		run(sqlUtil.getQueryCmd(query), null, logRedirect.get());
+	}
+
+	@Override
+	public long importFile(String filePath, String columns) throws DbException {
+		Redirect redirect = logRedirect.get();
+		if (Compression.forFile(filePath) == Compression.NONE) {
+			run(sqlUtil.getImportCmd(filePath, columns), redirect, redirect);
+			return -1;
+		}
+		if (OperatingSystem.getOs() == OperatingSystem.windows) {
+			throw new DbException("Pushing compressed files through the mysql client is not supported on Windows");
+		}
+		InputStream in = null;
+		try {
+			in = Compression.newInputStream(new File(filePath));
+			runPiped(sqlUtil.getStreamImportCmd(filePath, columns), in, null, redirect);
+		} catch (IOException e) {
+			throw new DbException("Error reading file: " + filePath, e);
+		} finally {
+			JdbcUtil.closeQuietly(in);
+		}
+		return -1;
+	}
+
+	/**
+	 * Run a mysql client command, either writing in to its standard input or copying its standard output to out.
+	 * The process is killed if copying fails
+	 * @param cmd Command to be run
+	 * @param in Stream copied to the standard input of the process, or null
+	 * @param out Stream receiving the standard output of the process, or null to send it to the log
+	 * @param log Redirect for standard error, and for standard output if out is null
+	 */
+	static void runPiped(String[] cmd, InputStream in, OutputStream out, Redirect log) throws DbException {
+		ProcessBuilder pb = new ProcessBuilder(cmd).redirectError(log);
+		if (out == null) {
+			pb.redirectOutput(log);
+		}
+		Process process = null;
+		try {
+			process = pb.start();
+			if (in == null) {
+				process.getOutputStream().close();
+			} else {
+				try (OutputStream stdin = process.getOutputStream()) {
+					copy(in, stdin);
+				}
+			}
+			if (out != null) {
+				try (InputStream stdout = process.getInputStream()) {
+					copy(stdout, out);
+				}
+			}
+			int exitCode = process.waitFor();
+			if (exitCode != 0) {
+				throw new DbException("mysql exited with code " + exitCode + ", see log for details");
+			}
+		} catch (IOException e) {
+			throw new DbException("Error running mysql command", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted running mysql command", e);
+		} finally {
+			if (process != null && process.isAlive()) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	private static void copy(InputStream in, OutputStream out) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			out.write(buffer, 0, n);
+		}
+	}
+
+	private static void run(String[] cmd, Redirect redirectOut, Redirect redirectError) throws DbException {
+		try {
+			CmdUtil.runCmd(cmd, redirectOut, redirectError);
+		} catch (IOException | InterruptedException e) {
+			throw new DbException("Error running mysql command", e);
+		}
+	}
+
+}
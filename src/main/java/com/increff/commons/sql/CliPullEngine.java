@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.function.Supplier;
+
+import com.nextscm.commons.lang.CmdUtil;
+
+/**
+ * Pulls data by running the query through the mysql command line client, redirecting its output to the file. Output
+ * to files with a {@link Compression} extension is piped through the compressor
+ */
+class CliPullEngine implements PullEngine {
+
+	private SqlUtil sqlUtil;
+	private Supplier<Redirect> logRedirect;
+
+	CliPullEngine(SqlUtil sqlUtil, Supplier<Redirect> logRedirect) {
+		this.sqlUtil = sqlUtil;
+		this.logRedirect = logRedirect;
+	}
+
+	@Override
+	public long pull(String query, File outFile, boolean append) throws DbException {
+		String[] cmd = sqlUtil.getQueryCmd(query);
+		if (Compression.forFile(outFile.getName()) != Compression.NONE) {
+			OutputStream out = null;
+			try {
+				out = Compression.newOutputStream(outFile, append);
+				CliBackend.runPiped(cmd, null, out, logRedirect.get());
+				out.close();
+			} catch (IOException e) {
+				throw new DbException("Error writing file: " + outFile, e);
+			} finally {
+				JdbcUtil.closeQuietly(out);
+			}
+			return -1;
+		}
+		Redirect redirectOut = append ? Redirect.appendTo(outFile) : Redirect.to(outFile);
+		Redirect redirectError = logRedirect.get();
+
+		try {
+			CmdUtil.runCmd(cmd, redirectOut, redirectError);
+		} catch (IOException | InterruptedException e) {
+			throw new DbException("Error running pull query", e);
+		}
+		return -1;
+	}
+
+}
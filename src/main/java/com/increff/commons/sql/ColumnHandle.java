@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.Map;
+
+/**
+ * Column of a result, resolved from its name once per result instead of once per value. Getters of
+ * {@link ResultRow} taking a handle read the value by index without hashing. A handle is valid for every row of the
+ * result it was resolved from, and of other results with the same columns
+ */
+public final class ColumnHandle {
+
+	private final String name;
+	private final int index;
+
+	private ColumnHandle(String name, int index) {
+		this.name = name;
+		this.index = index;
+	}
+
+	/**
+	 * Resolve a column name, failing if the column does not exist
+	 * @param columns Mapping of column names to 0-based index, e.g. {@link ResultRow#getColumns()}
+	 * @param name Column name
+	 * @param ignoreCase Match the name ignoring case, failing if it matches more than one column
+	 * @return Handle of the column
+	 */
+	public static ColumnHandle of(Map<String, Integer> columns, String name, boolean ignoreCase) {
+		Integer index = columns.get(name);
+		if (index != null) {
+			return new ColumnHandle(name, index);
+		}
+		if (ignoreCase) {
+			ColumnHandle handle = null;
+			for (Map.Entry<String, Integer> e : columns.entrySet()) {
+				if (!e.getKey().equalsIgnoreCase(name)) {
+					continue;
+				}
+				if (handle != null) {
+					throw new RuntimeException("Ambiguous column:" + name);
+				}
+				handle = new ColumnHandle(e.getKey(), e.getValue());
+			}
+			if (handle != null) {
+				return handle;
+			}
+		}
+		throw new RuntimeException("Invalid column:" + name);
+	}
+
+	/**
+	 * Resolve several column names at once, see {@link #of(Map, String, boolean)}
+	 */
+	public static ColumnHandle[] of(Map<String, Integer> columns, boolean ignoreCase, String... names) {
+		ColumnHandle[] handles = new ColumnHandle[names.length];
+		for (int i = 0; i < names.length; i++) {
+			handles[i] = of(columns, names[i], ignoreCase);
+		}
+		return handles;
+	}
+
+	/**
+	 * @return Column name as found in the result
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return 0-based index of the column
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	@Override
+	public String toString() {
+		return name + "#" + index;
+	}
+
+}
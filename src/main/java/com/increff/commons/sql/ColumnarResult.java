@@ -0,0 +1,399 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Column oriented, primitive typed query result. Each column is read once using its native JDBC type and stored in a
+ * primitive array: integer types in int[] or long[], floating point types in double[] and every other type as
+ * dictionary encoded strings. Null values are tracked in a bitmap per column. Columns are addressed by a 0-based
+ * index, see {@link #getColumnIndex(String)}
+ */
+public class ColumnarResult {
+
+	public enum ColumnType {
+		INT, LONG, DOUBLE, STRING
+	}
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private String[] names;
+	private HashMap<String, Integer> index;
+	private Column[] columns;
+	private int size;
+
+	private ColumnarResult(ResultSetMetaData rsm, HashMap<String, Integer> index) throws SQLException {
+		int columnCount = rsm.getColumnCount();
+		this.names = new String[columnCount];
+		this.index = index;
+		this.columns = new Column[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			names[i] = rsm.getColumnName(i + 1);
+			columns[i] = newColumn(getColumnType(rsm, i + 1));
+		}
+	}
+
+	/**
+	 * Read all rows of a result set into columnar storage
+	 * @param rs Result set positioned before the first row
+	 * @return Columnar result
+	 */
+	protected static ColumnarResult read(ResultSet rs) throws SQLException {
+		ColumnarResult result = new ColumnarResult(rs.getMetaData(), JdbcUtil.getColumMap(rs));
+		Column[] columns = result.columns;
+		int row = 0;
+		while (rs.next()) {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i].read(rs, i + 1, row);
+			}
+			row++;
+		}
+		for (Column column : columns) {
+			column.trim(row);
+		}
+		result.size = row;
+		return result;
+	}
+
+	/* META INFORMATION */
+
+	public int size() {
+		return size;
+	}
+
+	public int getColumnCount() {
+		return names.length;
+	}
+
+	public String getColumnName(int col) {
+		return names[col];
+	}
+
+	public ColumnType getColumnType(int col) {
+		return columns[col].getType();
+	}
+
+	/**
+	 * @param col Column name
+	 * @return 0-based index of the column
+	 */
+	public int getColumnIndex(String col) {
+		Integer i = index.get(col);
+		if (i == null) {
+			throw new RuntimeException("Invalid column:" + col);
+		}
+		return i;
+	}
+
+	/* TYPED GETS */
+
+	public boolean isNull(int row, int col) {
+		return columns[col].nulls.get(row);
+	}
+
+	/**
+	 * Primitive value of an INT or LONG column. Returns 0 for null values, use {@link #isNull(int, int)} to tell them
+	 * apart
+	 */
+	public long getLong(int row, int col) {
+		Column c = columns[col];
+		if (c instanceof LongColumn) {
+			return ((LongColumn) c).values[row];
+		}
+		if (c instanceof IntColumn) {
+			return ((IntColumn) c).values[row];
+		}
+		throw new RuntimeException("Column is not of integer type:" + names[col]);
+	}
+
+	/**
+	 * Primitive value of an INT column. Returns 0 for null values, use {@link #isNull(int, int)} to tell them apart
+	 */
+	public int getInt(int row, int col) {
+		Column c = columns[col];
+		if (c instanceof IntColumn) {
+			return ((IntColumn) c).values[row];
+		}
+		throw new RuntimeException("Column is not of int type:" + names[col]);
+	}
+
+	/**
+	 * Primitive value of a numeric column. Returns 0 for null values, use {@link #isNull(int, int)} to tell them apart
+	 */
+	public double getDouble(int row, int col) {
+		Column c = columns[col];
+		if (c instanceof DoubleColumn) {
+			return ((DoubleColumn) c).values[row];
+		}
+		return getLong(row, col);
+	}
+
+	/**
+	 * String value of any column. Floating point values are formatted in plain notation without trailing zeros
+	 */
+	public String getString(int row, int col) {
+		return columns[col].getString(row);
+	}
+
+	public Long getLong(int row, String col) {
+		int i = getColumnIndex(col);
+		return isNull(row, i) ? null : getLong(row, i);
+	}
+
+	public Integer getInteger(int row, String col) {
+		int i = getColumnIndex(col);
+		return isNull(row, i) ? null : getInt(row, i);
+	}
+
+	public Double getDouble(int row, String col) {
+		int i = getColumnIndex(col);
+		return isNull(row, i) ? null : getDouble(row, i);
+	}
+
+	public String getString(int row, String col) {
+		return getString(row, getColumnIndex(col));
+	}
+
+	/**
+	 * Distinct values of a STRING column, indexed by the codes returned from {@link #getCode(int, int)}
+	 */
+	public List<String> getDictionary(int col) {
+		return stringColumn(col).dictionary;
+	}
+
+	/**
+	 * Dictionary code of a STRING column value, or -1 for null
+	 */
+	public int getCode(int row, int col) {
+		return stringColumn(col).codes[row];
+	}
+
+	/**
+	 * Row oriented view of a single row, with values formatted as by {@link #getString(int, int)}
+	 * @param row 0-based row number
+	 * @return ResultRow holding the values of the row
+	 */
+	public ResultRow getRow(int row) {
+		String[] tokens = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			tokens[i] = columns[i].getString(row);
+		}
+		ResultRow rr = new ResultRow(index);
+		rr.setTokens(tokens);
+		rr.setRow(row);
+		return rr;
+	}
+
+	// UTILITY METHODS
+
+	private StringColumn stringColumn(int col) {
+		Column c = columns[col];
+		if (c instanceof StringColumn) {
+			return (StringColumn) c;
+		}
+		throw new RuntimeException("Column is not of string type:" + names[col]);
+	}
+
+	private static ColumnType getColumnType(ResultSetMetaData rsm, int col) throws SQLException {
+		switch (rsm.getColumnType(col)) {
+		case Types.TINYINT:
+		case Types.SMALLINT:
+			return ColumnType.INT;
+		case Types.INTEGER:
+			return rsm.isSigned(col) ? ColumnType.INT : ColumnType.LONG;
+		case Types.BIGINT:
+			// Unsigned BIGINT does not fit in a long
+			return rsm.isSigned(col) ? ColumnType.LONG : ColumnType.STRING;
+		case Types.FLOAT:
+		case Types.REAL:
+		case Types.DOUBLE:
+			return ColumnType.DOUBLE;
+		default:
+			return ColumnType.STRING;
+		}
+	}
+
+	private static Column newColumn(ColumnType type) {
+		switch (type) {
+		case INT:
+			return new IntColumn();
+		case LONG:
+			return new LongColumn();
+		case DOUBLE:
+			return new DoubleColumn();
+		default:
+			return new StringColumn();
+		}
+	}
+
+	private static abstract class Column {
+
+		protected BitSet nulls = new BitSet();
+
+		abstract ColumnType getType();
+
+		abstract void read(ResultSet rs, int col, int row) throws SQLException;
+
+		abstract String getString(int row);
+
+		abstract void trim(int size);
+
+		protected static int grow(int length) {
+			return Math.max(INITIAL_CAPACITY, length * 2);
+		}
+	}
+
+	private static class IntColumn extends Column {
+
+		private int[] values = new int[0];
+
+		ColumnType getType() {
+			return ColumnType.INT;
+		}
+
+		void read(ResultSet rs, int col, int row) throws SQLException {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(row));
+			}
+			values[row] = rs.getInt(col);
+			if (rs.wasNull()) {
+				nulls.set(row);
+			}
+		}
+
+		String getString(int row) {
+			return nulls.get(row) ? null : Integer.toString(values[row]);
+		}
+
+		void trim(int size) {
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class LongColumn extends Column {
+
+		private long[] values = new long[0];
+
+		ColumnType getType() {
+			return ColumnType.LONG;
+		}
+
+		void read(ResultSet rs, int col, int row) throws SQLException {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(row));
+			}
+			values[row] = rs.getLong(col);
+			if (rs.wasNull()) {
+				nulls.set(row);
+			}
+		}
+
+		String getString(int row) {
+			return nulls.get(row) ? null : Long.toString(values[row]);
+		}
+
+		void trim(int size) {
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class DoubleColumn extends Column {
+
+		private double[] values = new double[0];
+
+		ColumnType getType() {
+			return ColumnType.DOUBLE;
+		}
+
+		void read(ResultSet rs, int col, int row) throws SQLException {
+			if (row == values.length) {
+				values = Arrays.copyOf(values, grow(row));
+			}
+			values[row] = rs.getDouble(col);
+			if (rs.wasNull()) {
+				nulls.set(row);
+			}
+		}
+
+		String getString(int row) {
+			if (nulls.get(row)) {
+				return null;
+			}
+			double value = values[row];
+			if (Double.isNaN(value) || Double.isInfinite(value)) {
+				return Double.toString(value);
+			}
+			// As printed by MySQL, e.g. 10000000000 and 1 rather than 1.0E10 and 1.0
+			return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+		}
+
+		void trim(int size) {
+			values = Arrays.copyOf(values, size);
+		}
+	}
+
+	private static class StringColumn extends Column {
+
+		private int[] codes = new int[0];
+		private ArrayList<String> dictionary = new ArrayList<>();
+		private HashMap<String, Integer> lookup = new HashMap<>();
+
+		ColumnType getType() {
+			return ColumnType.STRING;
+		}
+
+		void read(ResultSet rs, int col, int row) throws SQLException {
+			if (row == codes.length) {
+				codes = Arrays.copyOf(codes, grow(row));
+			}
+			String s = rs.getString(col);
+			if (s == null) {
+				nulls.set(row);
+				codes[row] = -1;
+				return;
+			}
+			Integer code = lookup.get(s);
+			if (code == null) {
+				code = dictionary.size();
+				dictionary.add(s);
+				lookup.put(s, code);
+			}
+			codes[row] = code;
+		}
+
+		String getString(int row) {
+			int code = codes[row];
+			return code < 0 ? null : dictionary.get(code);
+		}
+
+		void trim(int size) {
+			codes = Arrays.copyOf(codes, size);
+			dictionary.trimToSize();
+			// The lookup is only needed while reading
+			lookup = null;
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of TSV files, chosen by the extension following .tsv, e.g. orders.tsv.gz
+ */
+public enum Compression {
+
+	NONE(""),
+	/** gzip format. Appending to a file adds a gzip member, which is read back as one stream */
+	GZIP(".gz"),
+	/** zlib wrapped deflate format. Files cannot be appended to */
+	DEFLATE(".zz");
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String extension;
+
+	Compression(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * @return Extension of compressed files including the leading dot, empty for NONE
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * @return Whether data can be appended to an existing file
+	 */
+	public boolean isAppendable() {
+		return this != DEFLATE;
+	}
+
+	/**
+	 * Compression of a file, based on its extension
+	 * @param fileName Name or path of file
+	 */
+	public static Compression forFile(String fileName) {
+		for (Compression compression : values()) {
+			if (compression != NONE && fileName.endsWith(compression.extension)) {
+				return compression;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * Strip the compression extension from a file name, e.g. orders.tsv.gz becomes orders.tsv
+	 * @param fileName Name or path of file
+	 */
+	public static String stripExtension(String fileName) {
+		Compression compression = forFile(fileName);
+		return fileName.substring(0, fileName.length() - compression.extension.length());
+	}
+
+	/**
+	 * Open a file for writing, compressed as per its extension
+	 * @param file File to write
+	 * @param append Append to the file instead of overwriting it
+	 */
+	public static OutputStream newOutputStream(File file, boolean append) throws IOException {
+		Compression compression = forFile(file.getName());
+		if (append && !compression.isAppendable() && file.length() > 0) {
+			throw new IOException("Cannot append to " + compression + " compressed file: " + file);
+		}
+		OutputStream out = new FileOutputStream(file, append);
+		try {
+			return compression.compress(out);
+		} catch (IOException e) {
+			out.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Open a file for reading, decompressed as per its extension
+	 * @param file File to read
+	 */
+	public static InputStream newInputStream(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			return forFile(file.getName()).decompress(in);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Wrap a stream so that data written to it is compressed. Closing the returned stream closes out
+	 * @param out Stream receiving compressed data
+	 */
+	public OutputStream compress(OutputStream out) throws IOException {
+		switch (this) {
+		case GZIP:
+			return new GZIPOutputStream(out, BUFFER_SIZE);
+		case DEFLATE:
+			return new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE, false) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						def.end();
+					}
+				}
+			};
+		default:
+			return out;
+		}
+	}
+
+	/**
+	 * Wrap a stream so that data read from it is decompressed. Closing the returned stream closes in
+	 * @param in Stream of compressed data
+	 */
+	public InputStream decompress(InputStream in) throws IOException {
+		switch (this) {
+		case GZIP:
+			return new GZIPInputStream(in, BUFFER_SIZE);
+		case DEFLATE:
+			return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inf.end();
+					}
+				}
+			};
+		default:
+			return in;
+		}
+	}
+
+}
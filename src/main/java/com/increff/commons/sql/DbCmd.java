@@ -16,14 +16,32 @@ package com.increff.commons.sql;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.lang.ProcessBuilder.Redirect;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
 
-import com.nextscm.commons.lang.CmdUtil;
 import com.nextscm.commons.lang.FileUtil;
 import com.nextscm.commons.lang.IoUtil;
 
@@ -34,11 +52,17 @@ import com.nextscm.commons.lang.IoUtil;
  */
 public class DbCmd {
 
-	private static final DateFormat df = new SimpleDateFormat("yyyy-MM-dd");
+	private static final DateTimeFormatter df = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 	private String localDir;
-	private SqlUtil sqlUtil;
+	private PullEngine pullEngine;
+	private DbCmdBackend backend;
+	private volatile QueryListener queryListener;
+	private volatile Executor asyncExecutor;
+	private volatile QueryCache queryCache;
+	private final Object watermarkLock = new Object();
 
 	private static final String DBCMD = "dbcmd";
+	private static final String WATERMARK_FILE = DBCMD + "-watermarks.properties";
 
 	/**
 	 * Instantiate a DbCmd object to interact with the database
@@ -50,8 +74,103 @@ public class DbCmd {
 	 */
 	public DbCmd(String localDir, String host, String username, String password, String schema) {
 		this.localDir = localDir;
-		this.sqlUtil = new SqlUtil(host, username, password, schema);
+		SqlUtil sqlUtil = new SqlUtil(host, username, password, schema);
+		this.pullEngine = new CliPullEngine(sqlUtil, this::getLogRedirect);
+		this.backend = new CliBackend(sqlUtil, this::getLogRedirect);
+	}
+
+	/**
+	 * Instantiate a DbCmd object which runs all operations over JDBC, through a {@link JdbcBackend} and a
+	 * {@link JdbcPullEngine}, without forking the mysql command line client
+	 * @param localDir Directory to store files locally for reading/writing
+	 * @param dbQuery DbQuery used to connect to the database
+	 */
+	public DbCmd(String localDir, DbQuery dbQuery) {
+		this.localDir = localDir;
+		this.pullEngine = new JdbcPullEngine(dbQuery);
+		this.backend = new JdbcBackend(dbQuery);
+	}
+
+	/**
+	 * Instantiate a DbCmd object which pulls files using the given engine
+	 * @param localDir Directory to store files locally for reading/writing
+	 * @param host Host information of database
+	 * @param username Database username
+	 * @param password Database password
+	 * @param schema Database schema name
+	 * @param pullEngine Engine used to pull files, e.g. a {@link JdbcPullEngine}
+	 */
+	public DbCmd(String localDir, String host, String username, String password, String schema,
+			PullEngine pullEngine) {
+		this(localDir, host, username, password, schema);
+		this.pullEngine = pullEngine;
+	}
+
+	/**
+	 * Set the backend running all operations other than pulls. By default they are run through the mysql command
+	 * line client
+	 * @param backend Backend running the operations, e.g. a {@link JdbcBackend}
+	 */
+	public void setBackend(DbCmdBackend backend) {
+		this.backend = backend;
+	}
+
+	/**
+	 * Set a listener receiving the timing of every operation, e.g. a {@link QueryMetrics}. Pulls report the bytes
+	 * written to file. When DbCmd runs over JDBC, setting the listener on the DbQuery instead also records connection
+	 * acquisition; setting it on both records operations twice
+	 * @param queryListener Listener, or null to stop recording
+	 */
+	public void setQueryListener(QueryListener queryListener) {
+		this.queryListener = queryListener;
+	}
+
+	/**
+	 * Set a cache whose results are invalidated by the tables changed through this DbCmd, e.g. the cache of a DbQuery
+	 * reading the same database, see {@link DbQuery#setQueryCache(QueryCache)}. Over JDBC, changes made through the
+	 * DbQuery already invalidate its own cache
+	 * @param queryCache Cache to invalidate, or null
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	/**
+	 * Set the executor running {@link #pullAsync(String, String)} and {@link #pushAsync(String)}, e.g. an
+	 * {@link AsyncExecutor} bounding the transfers in flight
+	 * @param asyncExecutor Executor running asynchronous transfers
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Get the executor running asynchronous transfers. Unless set, transfers over JDBC run on the executor of the
+	 * DbQuery, see {@link DbQuery#getAsyncExecutor()}, and transfers through the mysql command line client run up to
+	 * one per processor at a time
+	 * @return Executor running asynchronous transfers
+	 */
+	public Executor getAsyncExecutor() {
+		Executor executor = asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				if (asyncExecutor == null) {
+					asyncExecutor = backend instanceof JdbcBackend
+							? ((JdbcBackend) backend).getDbQuery().getAsyncExecutor()
+							: new AsyncExecutor(Runtime.getRuntime().availableProcessors());
+				}
+				executor = asyncExecutor;
+			}
+		}
+		return executor;
+	}
 
+	/**
+	 * Set the engine used to pull files. By default files are pulled through the mysql command line client
+	 * @param pullEngine Engine used to pull files
+	 */
+	public void setPullEngine(PullEngine pullEngine) {
+		this.pullEngine = pullEngine;
 	}
 
 	/**
@@ -60,12 +179,12 @@ public class DbCmd {
 	 */
 	public void createDb(String schema) throws DbException {
 		String query = "CREATE DATABASE " + schema + " DEFAULT CHARACTER SET utf8";
-		String[] cmd = sqlUtil.getAdminCmd(query);
-		Redirect redirect = getLogRedirect();
-
 		try {
-			CmdUtil.runCmd(cmd, redirect, redirect);
-		} catch (IOException | InterruptedException e) {
+			record(query, null, () -> {
+				backend.runAdmin(query);
+				return -1;
+			});
+		} catch (DbException e) {
 			throw new DbException("Error creating schema: " + schema, e);
 		}
 	}
@@ -76,15 +195,16 @@ public class DbCmd {
 	 */
 	public void dropDb(String schema) throws DbException {
 		String query = "DROP DATABASE IF EXISTS " + schema;
-		String[] cmd = sqlUtil.getAdminCmd(query);
-		Redirect redirect = getLogRedirect();
-
 		try {
-			CmdUtil.runCmd(cmd, redirect, redirect);
-		} catch (IOException | InterruptedException e) {
+			record(query, null, () -> {
+				backend.runAdmin(query);
+				return -1;
+			});
+		} catch (DbException e) {
 			throw new DbException("Error dropping schema: " + schema, e);
+		} finally {
+			invalidateStatement(query);
 		}
-
 	}
 
 	/**
@@ -93,17 +213,30 @@ public class DbCmd {
 	 * @param fileQueryMap Mapping of destination file and pull query
 	 */
 	public void pull(HashMap<String, String> fileQueryMap) throws DbException {
-		ArrayList<String> failedFiles = new ArrayList<>();
-		for (String fileName : fileQueryMap.keySet()) {
-			try {
-				pull(fileName, fileQueryMap.get(fileName));
-			} catch (DbException e) {
-				failedFiles.add(fileName);
-			}
+		TransferReport report = pull(fileQueryMap, 1);
+		if (report.hasFailures()) {
+			throw new DbException("Error pulling files: " + String.join(",", report.getFailedFiles()));
 		}
-		if (failedFiles.size() > 0) {
-			throw new DbException("Error pulling files: " + String.join(",", failedFiles));
+	}
+
+	/**
+	 * Pull a collection of files, running up to parallelism pulls at a time. Failures do not stop the remaining pulls
+	 * and are reported per file. When pulling through a {@link JdbcPullEngine}, its DbQuery must be able to serve
+	 * concurrent queries. Rows are only counted by the JdbcPullEngine; pulls through the mysql client report -1 rows
+	 * @param fileQueryMap Mapping of destination file and pull query
+	 * @param parallelism Maximum number of concurrent pulls
+	 * @return Per file report of the pulls
+	 */
+	public TransferReport pull(Map<String, String> fileQueryMap, int parallelism) throws DbException {
+		long start = System.currentTimeMillis();
+		List<Callable<TransferResult>> tasks = new ArrayList<>();
+		for (Map.Entry<String, String> e : fileQueryMap.entrySet()) {
+			String fileName = e.getKey();
+			String fullQuery = e.getValue();
+			tasks.add(() -> runTransfer(fileName, getFilePath(fileName), () -> pullFile(fileName, fullQuery)));
 		}
+		List<TransferResult> results = runAll(tasks, parallelism);
+		return new TransferReport(results, System.currentTimeMillis() - start);
 	}
 
 	/**
@@ -111,34 +244,33 @@ public class DbCmd {
 	 * @param fullQuery SQL query to be run
 	 */
 	public void processQuery(String fullQuery) throws DbException {
-		String[] cmd = sqlUtil.getQueryCmd(fullQuery);
-
-		Redirect redirectOut = null;
-		Redirect redirectError = getLogRedirect();
-
 		try {
-			CmdUtil.runCmd(cmd, redirectOut, redirectError);
-		} catch (IOException | InterruptedException e) {
-			throw new DbException("Error processing  query");
+			record(fullQuery, null, () -> {
+				backend.runQuery(fullQuery);
+				return -1;
+			});
+		} catch (DbException e) {
+			throw new DbException("Error processing  query", e);
+		} finally {
+			invalidateStatement(fullQuery);
 		}
 	}
 
 	/**
-	 * Pull data from database and append to the specified TSV file
+	 * Pull data from database and append to the specified TSV file. The .tsv extension is added to fileName, before
+	 * the compression extension if there is one, i.e. orders.gz appends to orders.tsv.gz
 	 * @param fileName Target file for appending
 	 * @param fullQuery SQL query for pulling data
 	 */
 	public void pullAppend(String fileName, String fullQuery) throws DbException {
-		fileName = fileName + ".tsv";
+		fileName = Compression.stripExtension(fileName) + ".tsv" + Compression.forFile(fileName).getExtension();
 		String outFilePath = getFilePath(fileName);
-		String[] cmd = sqlUtil.getQueryCmd(fullQuery);
-
-		Redirect redirectOut = Redirect.appendTo(new File(outFilePath));
-		Redirect redirectError = getLogRedirect();
+		clearWatermark(fileName);
 
+		File outFile = new File(outFilePath);
 		try {
-			CmdUtil.runCmd(cmd, redirectOut, redirectError);
-		} catch (IOException | InterruptedException e) {
+			record(fullQuery, outFile, () -> pullEngine.pull(fullQuery, outFile, true));
+		} catch (DbException e) {
 			throw new DbException("Error pulling file: " + fileName, e);
 		}
 	}
@@ -149,20 +281,146 @@ public class DbCmd {
 	 * @param fullQuery Full query to be executed for pulling
 	 */
 	public void pull(String fileName, String fullQuery) throws DbException {
+		pullFile(fileName, fullQuery);
+	}
+
+	private long pullFile(String fileName, String fullQuery) throws DbException {
 		String outFilePath = getFilePath(fileName);
-		String[] cmd = sqlUtil.getQueryCmd(fullQuery);
+		clearWatermark(fileName);
 
 		FileUtil.deleteFile(outFilePath);
-		Redirect redirectOut = Redirect.to(new File(outFilePath));
-		Redirect redirectError = getLogRedirect();
-
+		File outFile = new File(outFilePath);
 		try {
-			CmdUtil.runCmd(cmd, redirectOut, redirectError);
-		} catch (IOException | InterruptedException e) {
+			return record(fullQuery, outFile, () -> pullEngine.pull(fullQuery, outFile, false));
+		} catch (DbException e) {
 			throw new DbException("Error pulling file: " + fileName, e);
 		}
 	}
 
+	/**
+	 * Run {@link #pull(String, String)} on the async executor, see {@link #getAsyncExecutor()}
+	 * @param fileName Location to store pulled file
+	 * @param fullQuery Full query to be executed for pulling
+	 * @return Future of the number of rows pulled, -1 if not known, completed exceptionally with a DbException if
+	 * the pull fails
+	 */
+	public CompletableFuture<Long> pullAsync(String fileName, String fullQuery) {
+		return AsyncExecutor.submit(getAsyncExecutor(), () -> pullFile(fileName, fullQuery));
+	}
+
+	/**
+	 * Pull a single table as concurrent queries over ranges of a numeric key. The ranges are either merged into
+	 * fileName with a single header row, or kept as part files named like orders.part000.tsv for orders.tsv, which
+	 * {@link #push(String)} loads into the table orders
+	 * @param fileName Location to store pulled file
+	 * @param spec Table, key and number of ranges to pull
+	 * @return Per range report of the pulls
+	 */
+	public TransferReport pull(String fileName, PartitionedPull spec) throws DbException {
+		long start = System.currentTimeMillis();
+		List<String> splitPoints = getSplitPoints(spec);
+		List<String> partNames = new ArrayList<>();
+		List<Callable<TransferResult>> tasks = new ArrayList<>();
+		for (int i = 0; i <= splitPoints.size(); i++) {
+			String lower = i == 0 ? null : splitPoints.get(i - 1);
+			String upper = i == splitPoints.size() ? null : splitPoints.get(i);
+			String partName = getPartFileName(fileName, i);
+			String rangeQuery = spec.getRangeQuery(lower, upper);
+			partNames.add(partName);
+			tasks.add(() -> runTransfer(partName, getFilePath(partName), () -> pullFile(partName, rangeQuery)));
+		}
+		List<TransferResult> results = runAll(tasks, tasks.size());
+		TransferReport report = new TransferReport(results, System.currentTimeMillis() - start);
+		if (!spec.isMerge()) {
+			return report;
+		}
+
+		try {
+			if (report.hasFailures()) {
+				throw new DbException("Error pulling file: " + fileName + ", failed parts: "
+						+ String.join(",", report.getFailedFiles()));
+			}
+			clearWatermark(fileName);
+			mergeParts(fileName, partNames);
+		} catch (IOException e) {
+			throw new DbException("Error merging parts of file: " + fileName, e);
+		} finally {
+			for (String partName : partNames) {
+				FileUtil.deleteFile(getFilePath(partName));
+			}
+		}
+		return new TransferReport(results, System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Pull the rows of a table whose watermark column is above the watermark recorded by the previous pull of
+	 * fileName, and append them to it with the semantics of {@link #pullAppend(String, String)}, without repeating
+	 * the header row. The new rows are pulled into a temporary file first, and the watermark is advanced only after
+	 * they have been appended. Watermarks are kept in dbcmd-watermarks.properties in the local directory, along with
+	 * the length of each file and a checksum of its last bytes, so that rows appended by a pull whose watermark was
+	 * not saved are dropped by the next pull instead of being pulled twice. A file which was deleted is started
+	 * afresh, while a file which was otherwise changed since the last pull fails the pull. Other pulls of the same file
+	 * clear its watermark. Incremental pulls of a DbCmd run one at a time. DEFLATE compressed (.zz) files cannot be
+	 * appended to, so they are rejected before any query is run
+	 * @param fileName Target file for appending
+	 * @param spec Table and watermark column to pull
+	 * @return Number of rows pulled, -1 if not known
+	 */
+	public long pull(String fileName, IncrementalPull spec) throws DbException {
+		Compression compression = Compression.forFile(fileName);
+		if (!compression.isAppendable()) {
+			throw new DbException("Cannot pull incrementally into " + compression + " compressed file: " + fileName);
+		}
+		String targetName = Compression.stripExtension(fileName) + ".tsv" + compression.getExtension();
+		Path target = Paths.get(getFilePath(targetName));
+		synchronized (watermarkLock) {
+			Properties state = readWatermarks();
+			String lower = state.getProperty(targetName + ".watermark", spec.getInitialWatermark());
+			String length = state.getProperty(targetName + ".length");
+			String checksum = state.getProperty(targetName + ".checksum");
+			List<String[]> bounds = queryValues(spec.getUpperBoundQuery());
+			String upper = bounds.isEmpty() ? null : bounds.get(0)[0];
+			if (upper == null || upper.equals(lower)) {
+				return 0;
+			}
+
+			File part = null;
+			try {
+				part = File.createTempFile(DBCMD, ".tsv" + Compression.forFile(targetName).getExtension(),
+						new File(localDir));
+				long rows = pullFile(part.getName(), spec.getRangeQuery(lower, upper));
+				if (length != null && !rollBack(target, Long.parseLong(length), checksum)) {
+					throw new DbException("File was changed since its last incremental pull: " + targetName);
+				}
+				append(part.toPath(), target);
+				long targetLength = Files.size(target);
+				state.setProperty(targetName + ".watermark", upper);
+				state.setProperty(targetName + ".length", String.valueOf(targetLength));
+				state.setProperty(targetName + ".checksum", String.valueOf(getTailChecksum(target, targetLength)));
+				writeWatermarks(state);
+				return rows;
+			} catch (IOException e) {
+				throw new DbException("Error appending to file: " + targetName, e);
+			} finally {
+				if (part != null && part.exists()) {
+					FileUtil.deleteFile(part.getPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Watermark recorded by the last incremental pull of a file
+	 * @param fileName File pulled with {@link #pull(String, IncrementalPull)}
+	 * @return Watermark, or null if the file has not been pulled incrementally
+	 */
+	public String getWatermark(String fileName) throws DbException {
+		String targetName = Compression.stripExtension(fileName) + ".tsv" + Compression.forFile(fileName).getExtension();
+		synchronized (watermarkLock) {
+			return readWatermarks().getProperty(targetName + ".watermark");
+		}
+	}
+
 	// DELETE FILE IF EXISTS
 
 	// PUSH TO DATABASE
@@ -172,17 +430,32 @@ public class DbCmd {
 	 * @param fileNames Set of names of files to be pushed
 	 */
 	public void push(Set<String> fileNames) throws DbException {
-		ArrayList<String> failedFiles = new ArrayList<>();
-		for (String fileName : fileNames) {
-			try {
-				push(fileName);
-			} catch (DbException e) {
-				failedFiles.add(fileName);
-			}
+		TransferReport report = push(Collections.singletonList(fileNames), 1);
+		if (report.hasFailures()) {
+			throw new DbException("Error pushing files: " + String.join(",", report.getFailedFiles()));
 		}
-		if (failedFiles.size() > 0) {
-			throw new DbException("Error pushing files: " + String.join(",", failedFiles));
+	}
+
+	/**
+	 * Push files in stages, running up to parallelism pushes at a time. All files of a stage are pushed before the
+	 * next stage starts, so tables referenced by foreign keys should be placed in an earlier stage than the tables
+	 * referencing them. Failures do not stop the remaining pushes and are reported per file. Rows are only counted by
+	 * the {@link JdbcBackend}; pushes through the mysql client, the default backend, report -1 rows
+	 * @param stages Names of files to be pushed, grouped into stages in push order
+	 * @param parallelism Maximum number of concurrent pushes
+	 * @return Per file report of the pushes
+	 */
+	public TransferReport push(List<? extends Collection<String>> stages, int parallelism) throws DbException {
+		long start = System.currentTimeMillis();
+		List<TransferResult> results = new ArrayList<>();
+		for (Collection<String> stage : stages) {
+			List<Callable<TransferResult>> tasks = new ArrayList<>();
+			for (String fileName : stage) {
+				tasks.add(() -> runTransfer(fileName, getFilePath(fileName), () -> pushFile(fileName)));
+			}
+			results.addAll(runAll(tasks, parallelism));
 		}
+		return new TransferReport(results, System.currentTimeMillis() - start);
 	}
 
 	/**
@@ -190,15 +463,28 @@ public class DbCmd {
 	 * @param fileName Name of file to be pushed
 	 */
 	public void push(String fileName) throws DbException {
+		pushFile(fileName);
+	}
+
+	/**
+	 * Run {@link #push(String)} on the async executor, see {@link #getAsyncExecutor()}
+	 * @param fileName Name of file to be pushed
+	 * @return Future of the number of rows pushed, -1 if not known, completed exceptionally with a DbException if
+	 * the push fails
+	 */
+	public CompletableFuture<Long> pushAsync(String fileName) {
+		return AsyncExecutor.submit(getAsyncExecutor(), () -> pushFile(fileName));
+	}
+
+	private long pushFile(String fileName) throws DbException {
 		String filePath = getFilePath(fileName);
 		String columns = getColumns(filePath);
-		String[] cmd = sqlUtil.getImportCmd(filePath, columns);
-
-		Redirect redirect = getLogRedirect();
 		try {
-			CmdUtil.runCmd(cmd, redirect, redirect);
-		} catch (IOException | InterruptedException e) {
+			return record(getPushQuery(filePath), null, () -> backend.importFile(filePath, columns));
+		} catch (DbException e) {
 			throw new DbException("Error pushing to table: " + fileName, e);
+		} finally {
+			invalidate(SqlUtil.getTableName(filePath));
 		}
 	}
 
@@ -208,12 +494,16 @@ public class DbCmd {
 	 * @throws DbException
 	 */
 	public void truncate(String tableName) throws DbException {
-		Redirect redirectAll = getLogRedirect();
-		String[] cmd = sqlUtil.getTruncateCmd(tableName);
+		String query = SqlUtil.getTruncateQuery(tableName);
 		try {
-			CmdUtil.runCmd(cmd, redirectAll, redirectAll);
-		} catch (IOException | InterruptedException e) {
+			record(query, null, () -> {
+				backend.runQuery(query);
+				return -1;
+			});
+		} catch (DbException e) {
 			throw new DbException("Error truncating table: " + tableName, e);
+		} finally {
+			invalidate(tableName);
 		}
 	}
 
@@ -221,18 +511,407 @@ public class DbCmd {
 	 * Delete all records in a table using DELETE
 	 * @param tableName Name of table to be deleted
 	 */
-		public void delete(String tableName) throws DbException {
-		Redirect redirectAll = getLogRedirect();
-		String[] cmd = sqlUtil.getDeleteAllCommand(tableName);
+	public void delete(String tableName) throws DbException {
+		String query = SqlUtil.getDeleteAllQuery(tableName);
 		try {
-			CmdUtil.runCmd(cmd, redirectAll, redirectAll);
-		} catch (IOException | InterruptedException e) {
+			record(query, null, () -> {
+				backend.runQuery(query);
+				return -1;
+			});
+		} catch (DbException e) {
 			throw new DbException("Error deleting from table table: " + tableName, e);
+		} finally {
+			invalidate(tableName);
 		}
 	}
 
+	/**
+	 * Delete rows in batches ordered by a key, see {@link ChunkedDelete}. Needs a {@link JdbcBackend}
+	 * @param spec Table, key, predicate and throttling of the delete
+	 * @return Number of rows deleted
+	 */
+	public long delete(ChunkedDelete spec) throws DbException {
+		if (!(backend instanceof JdbcBackend)) {
+			throw new DbException("Chunked delete needs a JdbcBackend, table: " + spec.getTable());
+		}
+		return spec.run(((JdbcBackend) backend).getDbQuery());
+	}
+
 	// UTILITY METHODS
 
+	/**
+	 * Key values at which the table is split, in increasing order
+	 */
+	private List<String> getSplitPoints(PartitionedPull spec) throws DbException {
+		List<BigInteger> points = new ArrayList<>();
+		int partitions = spec.getPartitions();
+		try {
+			if (spec.getSampleRate() > 0) {
+				List<BigInteger> keys = new ArrayList<>();
+				for (String[] row : queryValues(spec.getSampleQuery())) {
+					if (row[0] != null) {
+						keys.add(new BigInteger(row[0]));
+					}
+				}
+				Collections.sort(keys);
+				for (int i = 1; i < partitions && !keys.isEmpty(); i++) {
+					addSplitPoint(points, keys.get(i * keys.size() / partitions));
+				}
+			} else {
+				List<String[]> rows = queryValues(spec.getBoundsQuery());
+				if (rows.isEmpty() || rows.get(0)[0] == null) {
+					return new ArrayList<>();
+				}
+				BigInteger min = new BigInteger(rows.get(0)[0]);
+				BigInteger span = new BigInteger(rows.get(0)[1]).subtract(min).add(BigInteger.ONE);
+				for (int i = 1; i < partitions; i++) {
+					BigInteger offset = span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(partitions));
+					addSplitPoint(points, min.add(offset));
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new DbException("Key column is not an integer: " + spec.getKeyColumn(), e);
+		}
+		List<String> splitPoints = new ArrayList<>();
+		for (BigInteger point : points) {
+			splitPoints.add(point.toString());
+		}
+		return splitPoints;
+	}
+
+	private static void addSplitPoint(List<BigInteger> points, BigInteger point) {
+		if (points.isEmpty() || point.compareTo(points.get(points.size() - 1)) > 0) {
+			points.add(point);
+		}
+	}
+
+	/**
+	 * Run a query through the pull engine and read back its rows, with NULL values returned as null
+	 */
+	private List<String[]> queryValues(String query) throws DbException {
+		File file = null;
+		try {
+			file = File.createTempFile(DBCMD, ".tsv", new File(localDir));
+			pullEngine.pull(query, file, false);
+			List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+			List<String[]> rows = new ArrayList<>();
+			for (int i = 1; i < lines.size(); i++) {
+				String[] values = lines.get(i).split("\t", -1);
+				for (int j = 0; j < values.length; j++) {
+					values[j] = TsvWriter.CLI_NULL.equals(values[j]) ? null : values[j];
+				}
+				rows.add(values);
+			}
+			return rows;
+		} catch (IOException e) {
+			throw new DbException("Error reading result of query: " + query, e);
+		} finally {
+			if (file != null) {
+				FileUtil.deleteFile(file.getPath());
+			}
+		}
+	}
+
+	private Properties readWatermarks() throws DbException {
+		Properties state = new Properties();
+		Path path = Paths.get(getFilePath(WATERMARK_FILE));
+		if (!Files.exists(path)) {
+			return state;
+		}
+		try (InputStream in = Files.newInputStream(path)) {
+			state.load(in);
+			return state;
+		} catch (IOException e) {
+			throw new DbException("Error reading watermarks: " + path, e);
+		}
+	}
+
+	/**
+	 * Write the watermarks to a temporary file which then replaces the previous ones, so that a failed write leaves
+	 * them as they were
+	 */
+	private void writeWatermarks(Properties state) throws IOException {
+		Path path = Paths.get(getFilePath(WATERMARK_FILE));
+		Path tempPath = Files.createTempFile(path.getParent(), DBCMD, ".properties");
+		try {
+			try (OutputStream out = Files.newOutputStream(tempPath)) {
+				state.store(out, null);
+			}
+			Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(tempPath);
+		}
+	}
+
+	/**
+	 * Remove the watermark of a file which is being overwritten or appended to by another pull
+	 */
+	private void clearWatermark(String fileName) throws DbException {
+		if (!Files.exists(Paths.get(getFilePath(WATERMARK_FILE)))) {
+			return;
+		}
+		synchronized (watermarkLock) {
+			Properties state = readWatermarks();
+			if (state.remove(fileName + ".watermark") == null) {
+				return;
+			}
+			state.remove(fileName + ".length");
+			state.remove(fileName + ".checksum");
+			try {
+				writeWatermarks(state);
+			} catch (IOException e) {
+				throw new DbException("Error clearing watermark of file: " + fileName, e);
+			}
+		}
+	}
+
+	/**
+	 * Truncate a file back to the length recorded with its watermark, dropping rows appended after it was recorded
+	 * @return False if the file no longer starts with the bytes it had when the watermark was recorded
+	 */
+	private static boolean rollBack(Path target, long length, String checksum) throws IOException {
+		if (!Files.exists(target)) {
+			return true;
+		}
+		long size = Files.size(target);
+		if (size < length || checksum == null || getTailChecksum(target, length) != Long.parseLong(checksum)) {
+			return false;
+		}
+		if (size > length) {
+			try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+				channel.truncate(length);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * CRC32 of the last 8KB of a file before length, identifying the file a watermark was recorded for
+	 */
+	private static long getTailChecksum(Path target, long length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, 8192));
+		try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+			long position = length - buffer.capacity();
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					break;
+				}
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 0, buffer.position());
+		return crc.getValue();
+	}
+
+	/**
+	 * Append a pulled file to another, keeping its header row only if the other file is empty. Compressed files get
+	 * a new compressed stream, e.g. a new gzip member
+	 */
+	private static void append(Path part, Path target) throws IOException {
+		if (!Files.exists(target) || Files.size(target) == 0) {
+			Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+			return;
+		}
+		if (Compression.forFile(target.toString()) != Compression.NONE) {
+			try (InputStream in = Compression.newInputStream(part.toFile());
+					OutputStream out = Compression.newOutputStream(target.toFile(), true)) {
+				copy(in, out, true);
+			}
+			return;
+		}
+		try (FileChannel in = FileChannel.open(part, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+			long size = in.size();
+			long position = getHeaderLength(in);
+			while (position < size) {
+				position += in.transferTo(position, size - position, out);
+			}
+		}
+	}
+
+	/**
+	 * Name of a part file, e.g. orders.part001.tsv for orders.tsv and orders.part001.tsv.gz for orders.tsv.gz
+	 */
+	private static String getPartFileName(String fileName, int part) {
+		String extension = Compression.forFile(fileName).getExtension();
+		fileName = Compression.stripExtension(fileName);
+		int dotIndex = fileName.lastIndexOf('.');
+		if (dotIndex <= fileName.lastIndexOf(File.separatorChar)) {
+			dotIndex = fileName.length();
+		}
+		return fileName.substring(0, dotIndex) + String.format(".part%03d", part) + fileName.substring(dotIndex)
+				+ extension;
+	}
+
+	/**
+	 * Concatenate part files into a single file, keeping only the header row of the first part
+	 */
+	private void mergeParts(String fileName, List<String> partNames) throws IOException {
+		if (Compression.forFile(fileName) != Compression.NONE) {
+			mergeCompressedParts(fileName, partNames);
+			return;
+		}
+		Path outPath = Paths.get(getFilePath(fileName));
+		try (FileChannel out = FileChannel.open(outPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			boolean first = true;
+			for (String partName : partNames) {
+				try (FileChannel in = FileChannel.open(Paths.get(getFilePath(partName)), StandardOpenOption.READ)) {
+					long size = in.size();
+					long position = first ? 0 : getHeaderLength(in);
+					while (position < size) {
+						position += in.transferTo(position, size - position, out);
+					}
+					first = first && size == 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compressed parts cannot be concatenated without dropping their headers, so they are decompressed and written
+	 * to a single compressed stream
+	 */
+	private void mergeCompressedParts(String fileName, List<String> partNames) throws IOException {
+		try (OutputStream out = Compression.newOutputStream(new File(getFilePath(fileName)), false)) {
+			boolean first = true;
+			for (String partName : partNames) {
+				try (InputStream in = Compression.newInputStream(new File(getFilePath(partName)))) {
+					first = copy(in, out, !first) == 0 && first;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copy a stream, optionally skipping its first line
+	 * @return Number of bytes read
+	 */
+	private static long copy(InputStream in, OutputStream out, boolean skipHeader) throws IOException {
+		byte[] buffer = new byte[64 * 1024];
+		boolean inHeader = skipHeader;
+		long total = 0;
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			total += n;
+			int offset = 0;
+			while (inHeader && offset < n) {
+				inHeader = buffer[offset++] != '\n';
+			}
+			out.write(buffer, offset, n - offset);
+		}
+		return total;
+	}
+
+	private static long getHeaderLength(FileChannel in) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = 0;
+		while (in.read(buffer, position) > 0) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				position++;
+				if (buffer.get() == '\n') {
+					return position;
+				}
+			}
+			buffer.clear();
+		}
+		return position;
+	}
+
+	/**
+	 * Single file transfer or other operation, returning the number of rows transferred or -1 if not known
+	 */
+	private interface Transfer {
+		long run() throws DbException;
+	}
+
+	private TransferResult runTransfer(String fileName, String filePath, Transfer transfer) {
+		long start = System.currentTimeMillis();
+		long rows = -1;
+		Throwable failure = null;
+		try {
+			rows = transfer.run();
+		} catch (DbException | RuntimeException e) {
+			failure = e;
+		}
+		long duration = System.currentTimeMillis() - start;
+		return new TransferResult(fileName, duration, new File(filePath).length(), rows, failure);
+	}
+
+	/**
+	 * Run an operation, reporting it to the listener if one is set
+	 * @param query Query reported to the listener
+	 * @param outFile File written by the operation, whose growth is reported as bytes, or null
+	 */
+	private long record(String query, File outFile, Transfer operation) throws DbException {
+		QueryListener listener = queryListener;
+		if (listener == null) {
+			return operation.run();
+		}
+		long start = System.nanoTime();
+		long initialBytes = outFile == null ? 0 : outFile.length();
+		long rows = -1;
+		boolean success = false;
+		try {
+			rows = operation.run();
+			success = true;
+			return rows;
+		} finally {
+			long bytes = outFile == null ? -1 : outFile.length() - initialBytes;
+			listener.queryCompleted(query, System.nanoTime() - start, rows, bytes, success);
+		}
+	}
+
+	private void invalidate(String table) {
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			cache.invalidate(table);
+		}
+	}
+
+	private void invalidateStatement(String statement) {
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			cache.invalidateStatement(statement);
+		}
+	}
+
+	private String getPushQuery(String filePath) {
+		return queryListener == null ? null : "LOAD DATA LOCAL INFILE INTO TABLE " + SqlUtil.getTableName(filePath);
+	}
+
+	/**
+	 * Run tasks with at most parallelism of them running at a time and return their results in task order
+	 */
+	private static <T> List<T> runAll(List<Callable<T>> tasks, int parallelism) throws DbException {
+		List<T> results = new ArrayList<>();
+		if (parallelism <= 1 || tasks.size() <= 1) {
+			for (Callable<T> task : tasks) {
+				try {
+					results.add(task.call());
+				} catch (Exception e) {
+					throw new DbException("Error running task", e);
+				}
+			}
+			return results;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()));
+		try {
+			for (Future<T> future : executor.invokeAll(tasks)) {
+				results.add(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while running tasks", e);
+		} catch (ExecutionException e) {
+			throw new DbException("Error running task", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
 	/**
 	 * Prepend local directory path to specified input
 	 * @param fileName Path to which prepend the local directory path
@@ -255,15 +934,14 @@ public class DbCmd {
 	 * @return Log file
 	 */
 	private File getLogFile() {
-		Date d = new Date();
-		String suffix = df.format(d);
+		String suffix = LocalDate.now().format(df);
 		String logFilePath = getFilePath(DBCMD) + "-" + suffix + ".log";
 		File logFile = new File(logFilePath);
 		return logFile;
 	}
 
 	/**
-	 * Names of all columns read from a TSV file
+	 * Names of all columns read from a TSV file, which may be compressed
 	 * @param filePath Path to TSV
 	 * @return Column names as a single, comma separated string
 	 */
@@ -271,7 +949,7 @@ public class DbCmd {
 		String columns = null;
 		BufferedReader br = null;
 		try {
-			br = new BufferedReader(new FileReader(filePath));
+			br = new BufferedReader(new InputStreamReader(Compression.newInputStream(new File(filePath))));
 			columns = br.readLine();
 		} catch (IOException e) {
 			throw new DbException("Error reading header for file: " + filePath, e);
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Runs the database operations of {@link DbCmd} other than pulls, which are run by a {@link PullEngine}
+ */
+public interface DbCmdBackend {
+
+	/**
+	 * Run a statement which does not depend on the schema, such as CREATE DATABASE
+	 * @param query Statement to be run
+	 */
+	void runAdmin(String query) throws DbException;
+
+	/**
+	 * Run a statement in the schema
+	 * @param query Statement to be run
+	 */
+	void runQuery(String query) throws DbException;
+
+	/**
+	 * Load a TSV file with a header row into the table named after the file
+	 * @param filePath Path of the file
+	 * @param columns Comma separated columns of the file
+	 * @return Number of rows loaded, or -1 if not known
+	 */
+	long importFile(String filePath, String columns) throws DbException;
+
+}
@@ -14,6 +14,13 @@
 
 package com.increff.commons.sql;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.sql.DataSource;
+
 import org.apache.commons.dbcp2.BasicDataSource;
 
 public class DbPoolUtil {
@@ -47,4 +54,61 @@ public class DbPoolUtil {
         bean.setValidationQuery("SELECT 1");
         return bean;
     }
+
+    /**
+     * Create a pool from a profile, which sets how connections are validated, statement pooling and warm-up
+     * @param driverClassName Name of JDBC driver class
+     * @param url URL for JDBC driver
+     * @param userName Username for JDBC
+     * @param password Password for JDBC
+     * @param profile Pool settings
+     * @return Pool of connections, see {@link PoolMetrics#of(DataSource)} for its state
+     */
+    public static BasicDataSource initDataSource(String driverClassName, String url, String userName, String password,
+                                       PoolProfile profile) throws DbException {
+        boolean idleTime = profile.getValidation() == PoolProfile.Validation.IDLE_TIME;
+        BasicDataSource bean = new ProfiledDataSource(idleTime ? profile.getValidationIdleMillis() : -1);
+        bean.setDriverClassName(driverClassName);
+        bean.setUrl(url);
+        bean.setUsername(userName);
+        bean.setPassword(password);
+        bean.setInitialSize(profile.getMinConnections());
+        bean.setMaxTotal(profile.getMaxConnections());
+        bean.setMaxIdle(profile.getMinConnections());
+        bean.setMaxWaitMillis(profile.getMaxWaitMillis());
+        bean.setValidationQuery(profile.getValidationQuery());
+        bean.setValidationQueryTimeout(profile.getValidationTimeoutSeconds());
+        bean.setTestOnBorrow(profile.getValidation() != PoolProfile.Validation.NONE);
+        if (profile.getIdleTestMillis() > 0) {
+            bean.setTestWhileIdle(true);
+            bean.setTimeBetweenEvictionRunsMillis(profile.getIdleTestMillis());
+        }
+        bean.setPoolPreparedStatements(profile.isPoolPreparedStatements());
+        bean.setMaxOpenPreparedStatements(profile.getMaxOpenPreparedStatements());
+        if (profile.isWarmUp()) {
+            warmUp(bean, profile.getMinConnections());
+        }
+        return bean;
+    }
+
+    /**
+     * Open the given number of connections at once and return them to the pool, so that the pool is filled and
+     * validated before the first request
+     * @param dataSource Pool to warm up
+     * @param connections Number of connections to open
+     */
+    public static void warmUp(DataSource dataSource, int connections) throws DbException {
+        List<Connection> opened = new ArrayList<>();
+        try {
+            for (int i = 0; i < Math.max(connections, 1); i++) {
+                opened.add(dataSource.getConnection());
+            }
+        } catch (SQLException e) {
+            throw new DbException("Error warming up connection pool, connections opened: " + opened.size(), e);
+        } finally {
+            for (Connection con : opened) {
+                JdbcUtil.closeQuietly(con);
+            }
+        }
+    }
 }
@@ -14,26 +14,54 @@
 
 package com.increff.commons.sql;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp2.BasicDataSource;
 
 /**
+ * Runs queries over JDBC, either on a single cached connection or on connections borrowed from a DataSource for
+ * every call. Only a DataSource-backed DbQuery may be shared between threads
  *
  * WARNING: This class uses TSV format for files. It automatically applies
  * <b>.tsv</b> to the given file names
  */
 public class DbQuery {
 
+	private static final int DEFAULT_STATEMENT_CACHE_SIZE = 64;
+	private static final int SCRIPT_BATCH_SIZE = 500;
+	private static final int DEFAULT_MAX_IN_FLIGHT = 8;
+	private static final Object[] NO_PARAMS = new Object[0];
+
 	private Connection con;
 	private String jdbcUrl;
 	private String username;
 	private String password;
+	private DataSource dataSource;
+	private int statementCacheSize = DEFAULT_STATEMENT_CACHE_SIZE;
+	private StatementCache statementCache = new StatementCache(DEFAULT_STATEMENT_CACHE_SIZE);
+	private volatile QueryListener queryListener;
+	private volatile Executor asyncExecutor;
+	private volatile QueryCache queryCache;
 
 	/**
 	 * Set up JDBC Driver for interacting with a database
@@ -54,11 +82,24 @@ public class DbQuery {
 	}
 
 	/**
-	 * Get a new connection using JDBC driver
+	 * Set up a DbQuery which borrows a connection from the DataSource for every call and returns it once the call
+	 * completes, so that it can be shared between threads
+	 * @param dataSource Connection pool, e.g. from {@link DbPoolUtil#initDataSource}
+	 */
+	public DbQuery(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	/**
+	 * Get a connection using JDBC driver. For a DataSource-backed DbQuery, a connection is borrowed from the pool
+	 * and must be closed by the caller to return it
 	 * @return Connection object
 	 */
 	public Connection getConnection() throws DbException {
 		try {
+			if (dataSource != null) {
+				return dataSource.getConnection();
+			}
 			if (con != null && !con.isClosed()) {
 				return con;
 			}
@@ -71,13 +112,178 @@ public class DbQuery {
 	}
 
 	/**
-	 * Quietly close a connection
+	 * Quietly close a connection. Does nothing for a DataSource-backed DbQuery
 	 */
 	public void closeConnection() {
+		statementCache.clear();
 		JdbcUtil.closeQuietly(con);
 		con = null;
 	}
 
+	/**
+	 * Set the number of prepared statements kept open on the cached connection, 0 to disable caching. A
+	 * DataSource-backed DbQuery does not cache statements itself, enable statement pooling on the pool instead
+	 * @param size Maximum number of cached statements, defaults to 64
+	 */
+	public void setStatementCacheSize(int size) {
+		statementCache.clear();
+		statementCacheSize = size;
+		statementCache = new StatementCache(size);
+	}
+
+	/**
+	 * Set a listener receiving the timing of every query and connection acquisition, e.g. a {@link QueryMetrics}.
+	 * Without a listener, the only overhead is a null check per call
+	 * @param queryListener Listener, or null to stop recording
+	 */
+	public void setQueryListener(QueryListener queryListener) {
+		this.queryListener = queryListener;
+	}
+
+	public QueryListener getQueryListener() {
+		return queryListener;
+	}
+
+	/**
+	 * Set a cache for the results of {@link #executeQuery(String)} and {@link #executeQuery(String, Object...)}.
+	 * Statements run through this DbQuery invalidate the cached results of the tables they change. The same cache
+	 * may be shared by DbQuery and DbCmd objects on the same database
+	 * @param queryCache Cache, or null to stop caching
+	 */
+	public void setQueryCache(QueryCache queryCache) {
+		this.queryCache = queryCache;
+	}
+
+	public QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	/**
+	 * Invalidate cached results of a table changed through this DbQuery
+	 */
+	void invalidate(String table) {
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			cache.invalidate(table);
+		}
+	}
+
+	/**
+	 * Invalidate cached results of the tables changed by a statement run through this DbQuery
+	 */
+	void invalidateStatement(String statement) {
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			cache.invalidateStatement(statement);
+		}
+	}
+
+	/**
+	 * Set the executor running the asynchronous calls, e.g. an {@link AsyncExecutor} bounding the calls in flight.
+	 * A DbQuery on a single cached connection must not run calls concurrently
+	 * @param asyncExecutor Executor running asynchronous calls
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor;
+	}
+
+	/**
+	 * Get the executor running the asynchronous calls. Unless set, an {@link AsyncExecutor} is created which runs up
+	 * to the pool's maximum number of connections at a time for a DataSource-backed DbQuery, or one call at a time on
+	 * a single cached connection
+	 * @return Executor running asynchronous calls
+	 */
+	public Executor getAsyncExecutor() {
+		Executor executor = asyncExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				if (asyncExecutor == null) {
+					asyncExecutor = new AsyncExecutor(getDefaultMaxInFlight());
+				}
+				executor = asyncExecutor;
+			}
+		}
+		return executor;
+	}
+
+	private int getDefaultMaxInFlight() {
+		if (dataSource == null) {
+			return 1;
+		}
+		if (dataSource instanceof BasicDataSource && ((BasicDataSource) dataSource).getMaxTotal() > 0) {
+			return ((BasicDataSource) dataSource).getMaxTotal();
+		}
+		return DEFAULT_MAX_IN_FLIGHT;
+	}
+
+	/**
+	 * @return True if connections are borrowed from a DataSource for every call
+	 */
+	public boolean isPooled() {
+		return dataSource != null;
+	}
+
+	/**
+	 * Get a connection for a single call, to be handed back with {@link #releaseConnection(Connection)}
+	 */
+	protected Connection acquireConnection() throws DbException {
+		QueryListener listener = queryListener;
+		if (listener == null) {
+			return getConnection();
+		}
+		long start = System.nanoTime();
+		Connection con = getConnection();
+		listener.connectionAcquired(System.nanoTime() - start);
+		return con;
+	}
+
+	/**
+	 * Start timing a query, returning 0 if no listener is set
+	 */
+	long startQuery() {
+		return queryListener == null ? 0 : System.nanoTime();
+	}
+
+	/**
+	 * Report a query timed from {@link #startQuery()} to the listener
+	 */
+	void endQuery(String query, long start, long rows, boolean success) {
+		QueryListener listener = queryListener;
+		if (listener != null && start != 0) {
+			listener.queryCompleted(query, System.nanoTime() - start, rows, -1, success);
+		}
+	}
+
+	/**
+	 * Prepare a statement for a single call, to be handed back with {@link #releaseStatement(PreparedStatement)}.
+	 * Statements on the cached connection are taken from the statement cache
+	 */
+	protected PreparedStatement prepareStatement(Connection con, String query) throws SQLException {
+		if (dataSource != null || statementCacheSize <= 0) {
+			return con.prepareStatement(query);
+		}
+		return statementCache.prepare(con, query);
+	}
+
+	/**
+	 * Hand back a statement obtained from {@link #prepareStatement(Connection, String)}
+	 */
+	protected void releaseStatement(PreparedStatement ps) {
+		if (dataSource != null || statementCacheSize <= 0) {
+			JdbcUtil.closeQuietly(ps);
+		}
+	}
+
+	/**
+	 * Hand back a connection obtained from {@link #acquireConnection()}. Borrowed connections are returned to the
+	 * pool, the cached connection is kept open
+	 */
+	protected void releaseConnection(Connection con) {
+		if (dataSource != null) {
+			JdbcUtil.closeQuietly(con);
+		}
+	}
+
 	public static String toSqlStr(String s) {
 		return "'" + s + "'";
 	}
@@ -89,84 +295,563 @@ public class DbQuery {
 	 * @return Row count for SQL DML statements
 	 */
 	public int importData(String filename, String tableName) throws DbException {
+		Connection con = null;
 		Statement stmt = null;
 		int result = -1;
+		String sql = "LOAD DATA LOCAL INFILE " + toSqlStr(filename) //
+				+ " INTO TABLE " + tableName //
+				+ " FIELDS TERMINATED BY '\t' ENCLOSED BY '' ESCAPED BY '\\\\'" //
+				+ " LINES TERMINATED BY '\\n' " //
+				+ " IGNORE 1 ROWS";//
+		long start = startQuery();
 		try {
-			Connection con = getConnection();
+			con = acquireConnection();
 			stmt = con.createStatement();
-			String sql = "LOAD DATA LOCAL INFILE " + toSqlStr(filename) //
-					+ " INTO TABLE " + tableName //
-					+ " FIELDS TERMINATED BY '\t' ENCLOSED BY '' ESCAPED BY '\\\\'" //
-					+ " LINES TERMINATED BY '\\n' " //
-					+ " IGNORE 1 ROWS";//
 			result = stmt.executeUpdate(sql);
-			con.commit();
+			if (!con.getAutoCommit()) {
+				con.commit();
+			}
 		} catch (SQLException e) {
 			throw new DbException("Error importing data file", e);
 		} finally {
 			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(sql, start, result, result >= 0);
+			invalidate(tableName);
+		}
+		return result;
+	}
+
+	/**
+	 * Reads rows from a stream into a table using LOAD DATA LOCAL INFILE, without a file on disk. The data must be
+	 * tab separated and escaped as for {@link #importData(String, String)}. Requires the MySQL driver, with
+	 * allowLoadLocalInfile=true set on the JDBC URL
+	 * @param is Stream to read rows from
+	 * @param tableName Table to read into
+	 * @param columns Comma separated columns of the stream, or null for all columns of the table
+	 * @param skipHeader Skip the first line of the stream
+	 * @return Row count for SQL DML statements
+	 */
+	public int importData(InputStream is, String tableName, String columns, boolean skipHeader) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		int result = -1;
+		// The file name is ignored by the driver when an input stream is set
+		String sql = "LOAD DATA LOCAL INFILE " + toSqlStr("stream") //
+				+ " INTO TABLE " + tableName //
+				+ " FIELDS TERMINATED BY '\t' ENCLOSED BY '' ESCAPED BY '\\\\'" //
+				+ " LINES TERMINATED BY '\\n' " //
+				+ (skipHeader ? " IGNORE 1 ROWS" : "") //
+				+ (columns == null ? "" : " (" + columns + ")");
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = con.createStatement();
+			JdbcUtil.setLocalInfileInputStream(stmt, is);
+			result = stmt.executeUpdate(sql);
+			if (!con.getAutoCommit()) {
+				con.commit();
+			}
+		} catch (SQLException e) {
+			throw new DbException("Error importing data stream into table: " + tableName, e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(sql, start, result, result >= 0);
+			invalidate(tableName);
 		}
 		return result;
 	}
 
+	/**
+	 * Loads rows generated by a producer into a table using LOAD DATA LOCAL INFILE, without a file on disk. The
+	 * producer runs and encodes rows on a pipeline thread, so that generating and loading rows overlap
+	 * @param tableName Table to read into
+	 * @param columns Columns of the rows written by the producer
+	 * @param producer Producer writing the rows
+	 * @return Row count for SQL DML statements
+	 */
+	public int importRows(String tableName, String[] columns, RowProducer producer) throws DbException {
+		RowProducerStream is;
+		try {
+			is = RowProducerStream.start(producer, "import-rows-" + tableName);
+		} catch (IOException e) {
+			throw new DbException("Error creating pipe for table: " + tableName, e);
+		}
+		try {
+			return importData(is, tableName, String.join(",", columns), false);
+		} catch (DbException e) {
+			if (is.getFailure() != null) {
+				throw new DbException("Error producing rows for table: " + tableName, is.getFailure());
+			}
+			throw e;
+		} finally {
+			// Unblocks the producer if the load stopped reading early
+			JdbcUtil.closeQuietly(is);
+		}
+	}
+
 	/**
 	 * Writes rows, resulting from a query, to a file using a JDBC Connection
 	 * @param filename File on which to write rows
 	 * @param query Query to fetch rows
 	 */
 	public void exportData(String filename, String query) throws DbException {
+		Connection con = null;
 		Statement stmt = null;
+		boolean success = false;
+		// For comma separated file
+		String sql = query + //
+				"INTO OUTFILE " + toSqlStr(filename) //
+				+ " FIELDS TERMINATED BY '\t' ENCLOSED BY '' ESCAPED BY '\\\\'" //
+				+ " LINES TERMINATED BY '\\n' " //
+				+ " IGNORE 1 ROWS";//
+		long start = startQuery();
 		try {
-			stmt = getConnection().createStatement();
-			// For comma separated file
-			String sql = query + //
-					"INTO OUTFILE " + toSqlStr(filename) //
-					+ " FIELDS TERMINATED BY '\t' ENCLOSED BY '' ESCAPED BY '\\\\'" //
-					+ " LINES TERMINATED BY '\\n' " //
-					+ " IGNORE 1 ROWS";//
+			con = acquireConnection();
+			stmt = con.createStatement();
 			stmt.executeQuery(sql);
+			success = true;
 		} catch (SQLException e) {
 			throw new DbException("Error exporting data file", e);
 		} finally {
 			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(sql, start, -1, success);
 		}
 	}
 
 	/**
-	 * Execute an SQL query and return the output as a ResultRow object list
+	 * Execute an SQL query and return the output as a ResultRow object list. With a query cache set, the result may
+	 * be served from the cache, see {@link #setQueryCache(QueryCache)}
 	 * @param query Query to be executed
 	 * @return Result of query execution as a list of ResultRow objects
 	 * @throws DbException
 	 */
 	public List<ResultRow> executeQuery(String query) throws DbException {
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			return cache.get(query, NO_PARAMS, () -> runQuery(query));
+		}
+		return runQuery(query);
+	}
+
+	private List<ResultRow> runQuery(String query) throws DbException {
+		Connection con = null;
 		Statement stmt = null;
 		List<ResultRow> rowList = null;
+		long start = startQuery();
 		try {
-			stmt = getConnection().createStatement();
+			con = acquireConnection();
+			stmt = con.createStatement();
 			ResultSet rs = stmt.executeQuery(query);
 			HashMap<String, Integer> columnMap = JdbcUtil.getColumMap(rs);
-			rowList = new ArrayList<ResultRow>();
+			List<ResultRow> rows = new ArrayList<ResultRow>();
 			while (rs.next()) {
-				rowList.add(JdbcUtil.getResultRow(rs, columnMap));
+				rows.add(JdbcUtil.getResultRow(rs, columnMap));
 			}
+			rowList = rows;
 		} catch (SQLException e) {
 			throw new DbException("Error running DB query", e);
 		} finally {
 			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, rowList == null ? -1 : rowList.size(), rowList != null);
+		}
+		return rowList;
+	}
+
+	/**
+	 * Execute a parameterized SQL query and return the output as a ResultRow object list. The statement is prepared
+	 * once and reused from the statement cache by later calls with the same query. With a query cache set, the result
+	 * may be served from the cache, see {@link #setQueryCache(QueryCache)}
+	 * @param query Query with ? placeholders
+	 * @param params Values bound to the placeholders, in order
+	 * @return Result of query execution as a list of ResultRow objects
+	 */
+	public List<ResultRow> executeQuery(String query, Object... params) throws DbException {
+		QueryCache cache = queryCache;
+		if (cache != null) {
+			return cache.get(query, params.clone(), () -> runQuery(query, params));
+		}
+		return runQuery(query, params);
+	}
+
+	private List<ResultRow> runQuery(String query, Object[] params) throws DbException {
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		List<ResultRow> rowList = null;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			ps = prepareStatement(con, query);
+			JdbcUtil.setParameters(ps, params);
+			rs = ps.executeQuery();
+			HashMap<String, Integer> columnMap = JdbcUtil.getColumMap(rs);
+			List<ResultRow> rows = new ArrayList<ResultRow>();
+			while (rs.next()) {
+				rows.add(JdbcUtil.getResultRow(rs, columnMap));
+			}
+			rowList = rows;
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(rs);
+			releaseStatement(ps);
+			releaseConnection(con);
+			endQuery(query, start, rowList == null ? -1 : rowList.size(), rowList != null);
 		}
 		return rowList;
 	}
 
+	/**
+	 * Execute a query with named parameters and return the output as a ResultRow object list
+	 * @param query Query compiled from :{parameter_name} placeholders
+	 * @param params Parameter name to value mapping
+	 * @return Result of query execution as a list of ResultRow objects
+	 */
+	public List<ResultRow> executeQuery(NamedQuery query, Map<String, ?> params) throws DbException {
+		return executeQuery(query.getSql(), query.bind(params));
+	}
+
+	/**
+	 * Execute an SQL query and map each row of the output to an object, see {@link RowMapper}
+	 * @param query Query to be executed
+	 * @param type Class to map rows to
+	 * @return Result of query execution as a list of mapped objects
+	 */
+	public <T> List<T> executeQuery(String query, Class<T> type) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		List<T> result = null;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = con.createStatement();
+			result = RowMapper.of(type).mapAll(stmt.executeQuery(query));
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, result == null ? -1 : result.size(), result != null);
+		}
+		return result;
+	}
+
+	/**
+	 * Execute a parameterized SQL query and map each row of the output to an object, see {@link RowMapper}
+	 * @param query Query with ? placeholders
+	 * @param type Class to map rows to
+	 * @param params Values bound to the placeholders, in order
+	 * @return Result of query execution as a list of mapped objects
+	 */
+	public <T> List<T> executeQuery(String query, Class<T> type, Object... params) throws DbException {
+		Connection con = null;
+		PreparedStatement ps = null;
+		ResultSet rs = null;
+		List<T> result = null;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			ps = prepareStatement(con, query);
+			JdbcUtil.setParameters(ps, params);
+			rs = ps.executeQuery();
+			result = RowMapper.of(type).mapAll(rs);
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(rs);
+			releaseStatement(ps);
+			releaseConnection(con);
+			endQuery(query, start, result == null ? -1 : result.size(), result != null);
+		}
+		return result;
+	}
+
+	/**
+	 * Execute an SQL query and pass each row of the result to the handler as it is read. Rows are streamed from the
+	 * database, so the complete result is never held in memory
+	 * @param query Query to be executed
+	 * @param handler Callback invoked for every row
+	 * @return Number of rows processed
+	 */
+	public long forEach(String query, RowHandler handler) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		long count = 0;
+		boolean success = false;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = JdbcUtil.createStreamingStatement(con);
+			ResultSet rs = stmt.executeQuery(query);
+			HashMap<String, Integer> columnMap = JdbcUtil.getColumMap(rs);
+			while (rs.next()) {
+				handler.handle(JdbcUtil.getResultRow(rs, columnMap));
+				count++;
+			}
+			success = true;
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, count, success);
+		}
+		return count;
+	}
+
+	/**
+	 * Execute an SQL query and return an iterator which streams rows from the database as they are consumed. The
+	 * iterator must be closed, preferably with try-with-resources. No other query can be run on the connection of
+	 * a DbQuery which is not DataSource-backed until the iterator is closed
+	 * @param query Query to be executed
+	 * @return Closeable iterator over the result rows
+	 */
+	public ResultIterator executeStream(String query) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = JdbcUtil.createStreamingStatement(con);
+			ResultSet rs = stmt.executeQuery(query);
+			ResultIterator iterator = new ResultIterator(this, con, stmt, rs);
+			iterator.setTiming(query, start);
+			return iterator;
+		} catch (SQLException e) {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, -1, false);
+			throw new DbException("Error running DB query", e);
+		}
+	}
+
+	/**
+	 * Execute an SQL query and return its rows with random access. Rows are held in memory until their estimated
+	 * size exceeds maxMemoryBytes, after which all of them are spilled to a file which is read back through memory
+	 * mapped buffers, see {@link SpillableResult}. The result must be closed once done
+	 * @param query Query to be executed
+	 * @param maxMemoryBytes Estimated heap size of the rows above which they are spilled
+	 * @param spillDir Directory of the spill files, e.g. the local directory of a {@link DbCmd}
+	 * @return Result of query execution, which must be closed
+	 */
+	public SpillableResult executeSpillable(String query, long maxMemoryBytes, File spillDir) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		SpillableResult result = null;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = JdbcUtil.createStreamingStatement(con);
+			ResultSet rs = stmt.executeQuery(query);
+			result = SpillableResult.read(rs, maxMemoryBytes, spillDir);
+			return result;
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} catch (IOException e) {
+			throw new DbException("Error spilling result of DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, result == null ? -1 : result.size(), result != null);
+		}
+	}
+
+	/**
+	 * Execute an SQL query and return the output in columnar form. Each value is read once with the native JDBC type
+	 * of its column, so numeric columns are held in primitive arrays instead of strings
+	 * @param query Query to be executed
+	 * @return Result of query execution as a ColumnarResult
+	 */
+	public ColumnarResult executeColumnar(String query) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		ColumnarResult result = null;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = JdbcUtil.createStreamingStatement(con);
+			ResultSet rs = stmt.executeQuery(query);
+			result = ColumnarResult.read(rs);
+			return result;
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, result == null ? -1 : result.size(), result != null);
+		}
+	}
+
 	public boolean execute(String query) throws DbException {
+		Connection con = null;
 		Statement stmt = null;
+		boolean success = false;
+		long start = startQuery();
+		try {
+			con = acquireConnection();
+			stmt = con.createStatement();
+			boolean result = stmt.execute(query);
+			success = true;
+			return result;
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			endQuery(query, start, -1, success);
+			invalidateStatement(query);
+		}
+	}
+
+	/**
+	 * Execute a parameterized SQL statement, reusing the prepared statement from the statement cache
+	 * @param query Statement with ? placeholders
+	 * @param params Values bound to the placeholders, in order
+	 * @return True if the statement returned a result set
+	 */
+	public boolean execute(String query, Object... params) throws DbException {
+		Connection con = null;
+		PreparedStatement ps = null;
+		boolean success = false;
+		long start = startQuery();
 		try {
-			stmt = getConnection().createStatement();
-			return stmt.execute(query);
+			con = acquireConnection();
+			ps = prepareStatement(con, query);
+			JdbcUtil.setParameters(ps, params);
+			boolean result = ps.execute();
+			success = true;
+			return result;
 		} catch (SQLException e) {
 			throw new DbException("Error running DB query", e);
+		} finally {
+			releaseStatement(ps);
+			releaseConnection(con);
+			endQuery(query, start, -1, success);
+			invalidateStatement(query);
+		}
+	}
+
+	/**
+	 * Execute a statement with named parameters
+	 * @param query Statement compiled from :{parameter_name} placeholders
+	 * @param params Parameter name to value mapping
+	 * @return True if the statement returned a result set
+	 */
+	public boolean execute(NamedQuery query, Map<String, ?> params) throws DbException {
+		return execute(query.getSql(), query.bind(params));
+	}
+
+	/**
+	 * Run {@link #executeQuery(String, Object...)} on the async executor, see {@link #getAsyncExecutor()}
+	 * @param query Query, with ? placeholders if params are given
+	 * @param params Values bound to the placeholders, in order
+	 * @return Future of the result, completed exceptionally with a DbException if the query fails
+	 */
+	public CompletableFuture<List<ResultRow>> executeQueryAsync(String query, Object... params) {
+		return AsyncExecutor.submit(getAsyncExecutor(),
+				() -> params.length == 0 ? executeQuery(query) : executeQuery(query, params));
+	}
+
+	/**
+	 * Run {@link #executeQuery(String, Class, Object...)} on the async executor, see {@link #getAsyncExecutor()}
+	 * @param query Query, with ? placeholders if params are given
+	 * @param type Class to map rows to
+	 * @param params Values bound to the placeholders, in order
+	 * @return Future of the mapped objects, completed exceptionally with a DbException if the query fails
+	 */
+	public <T> CompletableFuture<List<T>> executeQueryAsync(String query, Class<T> type, Object... params) {
+		return AsyncExecutor.submit(getAsyncExecutor(),
+				() -> params.length == 0 ? executeQuery(query, type) : executeQuery(query, type, params));
+	}
+
+	/**
+	 * Run {@link #execute(String, Object...)} on the async executor, see {@link #getAsyncExecutor()}
+	 * @param query Statement, with ? placeholders if params are given
+	 * @param params Values bound to the placeholders, in order
+	 * @return Future of the result of {@link Statement#execute(String)}, completed exceptionally with a DbException
+	 * if the statement fails
+	 */
+	public CompletableFuture<Boolean> executeAsync(String query, Object... params) {
+		return AsyncExecutor.submit(getAsyncExecutor(),
+				() -> params.length == 0 ? execute(query) : execute(query, params));
+	}
+
+	/**
+	 * Execute an SQL script over a single connection. Statements are split by {@link SqlLexer} as the script is read
+	 * and sent as JDBC batches, which the MySQL driver sends as multi-statement packets when rewriteBatchedStatements
+	 * and allowMultiQueries are set on the JDBC URL. Statements must not return result sets
+	 * @param script SQL script to be executed. The reader is not closed
+	 * @return Update count of every statement, in script order
+	 */
+	public int[] executeScript(Reader script) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		List<int[]> counts = new ArrayList<>();
+		int total = 0;
+		QueryCache cache = queryCache;
+		// Tables written by the script, null if it may write any table
+		Set<String> tables = new HashSet<>();
+		try {
+			con = acquireConnection();
+			stmt = con.createStatement();
+			SqlLexer lexer = new SqlLexer(script);
+			int batched = 0;
+			String statement;
+			while ((statement = lexer.nextStatement()) != null) {
+				if (cache != null && tables != null) {
+					Set<String> written = SqlTables.getWriteTables(statement);
+					if (written == null) {
+						tables = null;
+					} else {
+						tables.addAll(written);
+					}
+				}
+				stmt.addBatch(statement);
+				if (++batched == SCRIPT_BATCH_SIZE) {
+					counts.add(stmt.executeBatch());
+					total += batched;
+					batched = 0;
+				}
+			}
+			if (batched > 0) {
+				counts.add(stmt.executeBatch());
+				total += batched;
+			}
+		} catch (SQLException e) {
+			throw new DbException("Error running DB script", e);
+		} catch (IOException e) {
+			throw new DbException("Error reading DB script", e);
 		} finally {
 			JdbcUtil.closeQuietly(stmt);
+			releaseConnection(con);
+			if (cache != null) {
+				if (tables == null) {
+					cache.invalidateAll();
+				} else if (!tables.isEmpty()) {
+					cache.invalidate(tables);
+				}
+			}
 		}
+		int[] result = new int[total];
+		int i = 0;
+		for (int[] batch : counts) {
+			System.arraycopy(batch, 0, result, i, batch.length);
+			i += batch.length;
+		}
+		return result;
+	}
+
+	/**
+	 * Execute an SQL script over a single connection, see {@link #executeScript(Reader)}
+	 * @param script SQL script to be executed
+	 * @return Update count of every statement, in script order
+	 */
+	public int[] executeScript(String script) throws DbException {
+		return executeScript(new StringReader(script));
 	}
 
 }
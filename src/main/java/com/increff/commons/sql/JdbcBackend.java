@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Runs operations over JDBC instead of forking the mysql command line client for each of them. Statements run on the
+ * connection of the DbQuery, so admin statements and queries share the schema of its JDBC URL. That schema is selected
+ * again after every admin statement, as dropping it unselects it on the connection; a connection whose schema was
+ * dropped is kept for the next admin statement, usually the one creating the schema again. Queries may hold several
+ * statements separated by semicolons, like for the mysql client. Files are pushed with LOAD DATA LOCAL INFILE, which
+ * requires allowLoadLocalInfile=true on the JDBC URL. Compressed files are decompressed while streaming them to the
+ * server
+ */
+public class JdbcBackend implements DbCmdBackend {
+
+	private DbQuery dbQuery;
+	// Schema of the JDBC URL, as selected on the first connection used for an admin statement
+	private String schema;
+	// Connection whose schema was dropped, not handed back until the schema can be selected again
+	private Connection unselected;
+
+	/**
+	 * @param dbQuery DbQuery used to connect to the database
+	 */
+	public JdbcBackend(DbQuery dbQuery) {
+		this.dbQuery = dbQuery;
+	}
+
+	public DbQuery getDbQuery() {
+		return dbQuery;
+	}
+
+	@Override
+	public synchronized void runAdmin(String query) throws DbException {
+		Connection con = unselected;
+		unselected = null;
+		Statement stmt = null;
+		boolean success = false;
+		long start = dbQuery.startQuery();
+		try {
+			if (con == null) {
+				con = dbQuery.acquireConnection();
+			}
+			if (schema == null) {
+				schema = con.getCatalog();
+			}
+			stmt = con.createStatement();
+			stmt.execute(query);
+			success = true;
+		} catch (SQLException e) {
+			throw new DbException("Error running DB query", e);
+		} finally {
+			JdbcUtil.closeQuietly(stmt);
+			dbQuery.endQuery(query, start, -1, success);
+			dbQuery.invalidateStatement(query);
+			if (con != null) {
+				if (selectSchema(con)) {
+					dbQuery.releaseConnection(con);
+				} else {
+					unselected = con;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run a query, which may hold several statements separated by semicolons. Several statements run over a single
+	 * connection with {@link DbQuery#executeScript(String)}, so they must not return result sets
+	 */
+	@Override
+	public void runQuery(String query) throws DbException {
+		List<String> statements = SqlLexer.split(query);
+		if (statements.size() == 1) {
+			dbQuery.execute(statements.get(0));
+		} else if (statements.size() > 1) {
+			dbQuery.executeScript(query);
+		}
+	}
+
+	@Override
+	public long importFile(String filePath, String columns) throws DbException {
+		InputStream is = null;
+		try {
+			is = Compression.newInputStream(new File(filePath));
+			return dbQuery.importData(is, SqlUtil.getTableName(filePath), columns, true);
+		} catch (IOException e) {
+			throw new DbException("Error reading file: " + filePath, e);
+		} finally {
+			JdbcUtil.closeQuietly(is);
+		}
+	}
+
+	/**
+	 * Select the schema of the JDBC URL again
+	 * @return False if the schema does not exist
+	 */
+	private boolean selectSchema(Connection con) {
+		if (schema == null) {
+			return true;
+		}
+		try {
+			con.setCatalog(schema);
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Pulls data over JDBC without forking the mysql client. Rows are streamed from the database and written through a
+ * {@link TsvWriter}, producing the same bytes as the mysql client in batch mode. Unlike the client, only a single
+ * statement may be passed as the query. Concurrent pulls, e.g. from {@link DbCmd#pull(java.util.Map, int)}, need a
+ * DataSource-backed DbQuery
+ */
+public class JdbcPullEngine implements PullEngine {
+
+	private DbQuery dbQuery;
+
+	/**
+	 * @param dbQuery DbQuery used to connect to the database
+	 */
+	public JdbcPullEngine(DbQuery dbQuery) {
+		this.dbQuery = dbQuery;
+	}
+
+	@Override
+	public long pull(String query, File outFile, boolean append) throws DbException {
+		Connection con = null;
+		Statement stmt = null;
+		TsvWriter writer = null;
+		try {
+			con = dbQuery.acquireConnection();
+			stmt = JdbcUtil.createStreamingStatement(con);
+			ResultSet rs = stmt.executeQuery(query);
+			ResultSetMetaData rsm = rs.getMetaData();
+			int columnCount = rsm.getColumnCount();
+			String[] values = new String[columnCount];
+			for (int i = 0; i < columnCount; i++) {
+				values[i] = rsm.getColumnLabel(i + 1);
+			}
+			writer = TsvWriter.open(outFile, append);
+			writer.writeHeader(values);
+			while (rs.next()) {
+				for (int i = 0; i < columnCount; i++) {
+					values[i] = rs.getString(i + 1);
+				}
+				writer.writeRow(values);
+			}
+			writer.close();
+			return writer.getRows();
+		} catch (SQLException e) {
+			throw new DbException("Error running pull query", e);
+		} catch (IOException e) {
+			throw new DbException("Error writing file: " + outFile, e);
+		} finally {
+			JdbcUtil.closeQuietly(writer);
+			JdbcUtil.closeQuietly(stmt);
+			dbQuery.releaseConnection(con);
+		}
+	}
+
+}
@@ -14,6 +14,10 @@
 
 package com.increff.commons.sql;
 
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -21,6 +25,10 @@ import java.sql.Statement;
 import java.util.HashMap;
 
 public class JdbcUtil {
+
+	// Statement interfaces of MySQL Connector/J 8 and 5 which accept an input stream for LOAD DATA LOCAL INFILE
+	private static final String[] LOCAL_INFILE_STATEMENTS = { "com.mysql.cj.jdbc.JdbcStatement",
+			"com.mysql.jdbc.Statement" };
 	
 	protected static void closeQuitely(Statement stmt) {
 		if (stmt == null) {
@@ -32,12 +40,15 @@ public class JdbcUtil {
 		}
 	}
 
+	/**
+	 * Mapping of column names to 0-based index, matching the tokens of rows from {@link #getResultRow}
+	 */
 	protected static HashMap<String, Integer> getColumMap(ResultSet rs) throws SQLException {
 		ResultSetMetaData rsm = rs.getMetaData();
 		int columnCount = rsm.getColumnCount();
 		HashMap<String, Integer> map = new HashMap<String, Integer>();
-		for (int i = 1; i <= columnCount; i++) {
-			map.put(rsm.getColumnName(i), i);
+		for (int i = 0; i < columnCount; i++) {
+			map.put(rsm.getColumnName(i + 1), i);
 		}
 		return map;
 	}
@@ -54,6 +65,52 @@ public class JdbcUtil {
 		return rr;
 	}
 
+	protected static void setParameters(PreparedStatement ps, Object[] params) throws SQLException {
+		for (int i = 0; i < params.length; i++) {
+			ps.setObject(i + 1, params[i]);
+		}
+	}
+
+	/**
+	 * Creates a forward-only, read-only statement which makes the MySQL driver stream rows one at a time instead of
+	 * buffering the complete result in memory. No other statement can be run on the connection until the result set
+	 * of the returned statement is fully read or closed
+	 * @param con Connection to create the statement on
+	 * @return Streaming statement
+	 */
+	protected static Statement createStreamingStatement(Connection con) throws SQLException {
+		Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(Integer.MIN_VALUE);
+		return stmt;
+	}
+
+	/**
+	 * Make the next LOAD DATA LOCAL INFILE statement run on stmt read its data from the given stream instead of a
+	 * file. The MySQL driver is accessed reflectively, so that it is not a compile time dependency
+	 * @param stmt Statement to run LOAD DATA LOCAL INFILE on
+	 * @param is Stream of data to load
+	 */
+	protected static void setLocalInfileInputStream(Statement stmt, InputStream is) throws SQLException {
+		for (String className : LOCAL_INFILE_STATEMENTS) {
+			Class<?> c;
+			try {
+				c = Class.forName(className);
+			} catch (ClassNotFoundException e) {
+				continue;
+			}
+			if (!stmt.isWrapperFor(c)) {
+				continue;
+			}
+			try {
+				c.getMethod("setLocalInfileInputStream", InputStream.class).invoke(stmt.unwrap(c), is);
+				return;
+			} catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+				throw new SQLException("Error setting input stream for LOAD DATA LOCAL INFILE", e);
+			}
+		}
+		throw new SQLException("JDBC driver does not support LOAD DATA LOCAL INFILE from a stream");
+	}
+
 	protected static void closeQuietly(AutoCloseable c) {
 		if (c == null) {
 			return;
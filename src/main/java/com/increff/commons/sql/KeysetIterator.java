@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Walks a table in pages ordered by a unique key, single or composite, such as the primary key. Each page continues
+ * after the key of the last row of the previous page instead of using OFFSET, so every page costs the same however
+ * far the walk has got, and only one page is held in memory. After a page has been processed,
+ * {@link #getCheckpoint()} returns a token from which a new iterator continues with {@link #setCheckpoint(String)},
+ * so that a failed job can resume from the last completed page. The key columns must not be null
+ */
+public class KeysetIterator implements Iterator<List<ResultRow>> {
+
+	private static final int DEFAULT_PAGE_SIZE = 1000;
+	private static final String TOKEN_VERSION = "k1";
+
+	private DbQuery dbQuery;
+	private String table;
+	private String[] keyColumns;
+	private String columns = "*";
+	private String where;
+	private int pageSize = DEFAULT_PAGE_SIZE;
+	private Object[] lastKey;
+	private String checkpoint;
+	private List<ResultRow> nextPage;
+	private boolean done;
+	private long rowsRead;
+
+	/**
+	 * @param dbQuery DbQuery used to run the page queries
+	 * @param table Table to walk, or a subquery with an alias such as (SELECT ...) t
+	 * @param keyColumns Columns of a unique index the pages are ordered by, most significant first
+	 */
+	public KeysetIterator(DbQuery dbQuery, String table, String... keyColumns) {
+		if (keyColumns.length == 0) {
+			throw new IllegalArgumentException("No key columns for table: " + table);
+		}
+		this.dbQuery = dbQuery;
+		this.table = table;
+		this.keyColumns = keyColumns;
+	}
+
+	/**
+	 * @param columns Comma separated columns to read, defaults to *. Must include the key columns
+	 */
+	public void setColumns(String columns) {
+		this.columns = columns;
+	}
+
+	/**
+	 * @param where Optional predicate restricting the rows read
+	 */
+	public void setWhere(String where) {
+		this.where = where;
+	}
+
+	/**
+	 * @param pageSize Rows per page, defaults to 1000
+	 */
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Continue after the page a checkpoint was taken at
+	 * @param checkpoint Token from {@link #getCheckpoint()}, or null to start from the beginning
+	 */
+	public void setCheckpoint(String checkpoint) {
+		this.checkpoint = checkpoint;
+		this.lastKey = checkpoint == null ? null : decodeKey(checkpoint, keyColumns.length);
+		this.nextPage = null;
+		this.done = false;
+	}
+
+	/**
+	 * @return Token to continue after the last page returned by {@link #next()}, or the checkpoint this iterator was
+	 *         started from if no page has been returned yet
+	 */
+	public String getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * @return Rows returned so far
+	 */
+	public long getRowsRead() {
+		return rowsRead;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextPage == null && !done) {
+			try {
+				nextPage = readPage();
+			} catch (DbException e) {
+				throw new RuntimeException("Error reading page of table: " + table, e);
+			}
+		}
+		return nextPage != null;
+	}
+
+	/**
+	 * @return Next page of rows, never empty
+	 */
+	@Override
+	public List<ResultRow> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		List<ResultRow> page = nextPage;
+		nextPage = null;
+		checkpoint = encodeKey(lastKey);
+		rowsRead += page.size();
+		return page;
+	}
+
+	/**
+	 * Read the page after lastKey, advancing lastKey to its last row, or return null at the end of the table
+	 */
+	private List<ResultRow> readPage() throws DbException {
+		String query = getPageQuery(lastKey != null);
+		Connection con = null;
+		PreparedStatement ps = null;
+		List<ResultRow> page = null;
+		long start = dbQuery.startQuery();
+		try {
+			con = dbQuery.acquireConnection();
+			ps = dbQuery.prepareStatement(con, query);
+			if (lastKey != null) {
+				setKeyParameters(ps, lastKey);
+			}
+			page = new ArrayList<>();
+			Object[] key = null;
+			try (ResultSet rs = ps.executeQuery()) {
+				HashMap<String, Integer> columnMap = JdbcUtil.getColumMap(rs);
+				int[] keyIndexes = getKeyIndexes(rs);
+				while (rs.next()) {
+					page.add(JdbcUtil.getResultRow(rs, columnMap));
+					key = new Object[keyColumns.length];
+					for (int i = 0; i < key.length; i++) {
+						key[i] = rs.getObject(keyIndexes[i]);
+						if (key[i] == null) {
+							throw new DbException("Null value in key column: " + keyColumns[i] + ", table: " + table);
+						}
+					}
+				}
+			}
+			done = page.size() < pageSize;
+			if (page.isEmpty()) {
+				return null;
+			}
+			lastKey = key;
+			return page;
+		} catch (SQLException e) {
+			throw new DbException("Error reading page of table: " + table, e);
+		} finally {
+			dbQuery.releaseStatement(ps);
+			dbQuery.releaseConnection(con);
+			dbQuery.endQuery(query, start, page == null ? -1 : page.size(), page != null);
+		}
+	}
+
+	/**
+	 * Page query, with the keyset predicate expanded with OR so that MySQL uses a range scan of the index on the
+	 * key columns, e.g. for keys a, b: a &gt;= ? AND (a &gt; ? OR (a = ? AND b &gt; ?))
+	 */
+	String getPageQuery(boolean after) {
+		StringBuilder sb = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(table);
+		List<String> conditions = new ArrayList<>();
+		if (after) {
+			StringBuilder keyset = new StringBuilder();
+			for (int i = 0; i < keyColumns.length; i++) {
+				keyset.append(i == 0 ? "" : " OR ").append(i == 0 ? "" : "(");
+				for (int j = 0; j < i; j++) {
+					keyset.append(keyColumns[j]).append(" = ? AND ");
+				}
+				keyset.append(keyColumns[i]).append(" > ?").append(i == 0 ? "" : ")");
+			}
+			if (keyColumns.length > 1) {
+				conditions.add(keyColumns[0] + " >= ?");
+			}
+			conditions.add("(" + keyset + ")");
+		}
+		if (where != null) {
+			conditions.add("(" + where + ")");
+		}
+		if (!conditions.isEmpty()) {
+			sb.append(" WHERE ").append(String.join(" AND ", conditions));
+		}
+		sb.append(" ORDER BY ").append(String.join(", ", keyColumns)).append(" LIMIT ").append(pageSize);
+		return sb.toString();
+	}
+
+	private void setKeyParameters(PreparedStatement ps, Object[] key) throws SQLException {
+		int index = 1;
+		if (key.length > 1) {
+			ps.setObject(index++, key[0]);
+		}
+		for (int i = 0; i < key.length; i++) {
+			for (int j = 0; j <= i; j++) {
+				ps.setObject(index++, key[j]);
+			}
+		}
+	}
+
+	private int[] getKeyIndexes(ResultSet rs) throws SQLException {
+		int[] indexes = new int[keyColumns.length];
+		for (int i = 0; i < indexes.length; i++) {
+			String name = keyColumns[i];
+			// Qualified or quoted key columns are found by their plain name
+			name = name.substring(name.lastIndexOf('.') + 1).replace("`", "");
+			indexes[i] = rs.findColumn(name);
+		}
+		return indexes;
+	}
+
+	// CHECKPOINT TOKENS
+
+	/**
+	 * Encode key values as a token, keeping their types so that they bind to the same parameter types on resume
+	 */
+	static String encodeKey(Object[] key) {
+		StringBuilder sb = new StringBuilder(TOKEN_VERSION);
+		for (Object value : key) {
+			char type;
+			String text;
+			if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				type = 'L';
+				text = value.toString();
+			} else if (value instanceof BigInteger) {
+				type = 'B';
+				text = value.toString();
+			} else if (value instanceof BigDecimal) {
+				type = 'D';
+				text = ((BigDecimal) value).toPlainString();
+			} else if (value instanceof Double || value instanceof Float) {
+				type = 'F';
+				text = value.toString();
+			} else if (value instanceof Timestamp) {
+				type = 'T';
+				text = value.toString();
+			} else if (value instanceof LocalDateTime) {
+				type = 'T';
+				text = Timestamp.valueOf((LocalDateTime) value).toString();
+			} else if (value instanceof java.sql.Date) {
+				type = 'd';
+				text = value.toString();
+			} else if (value instanceof LocalDate) {
+				type = 'd';
+				text = value.toString();
+			} else if (value instanceof byte[]) {
+				type = 'X';
+				text = toHex((byte[]) value);
+			} else {
+				type = 'S';
+				text = value.toString();
+			}
+			sb.append(';').append(type).append(encode(text));
+		}
+		return sb.toString();
+	}
+
+	static Object[] decodeKey(String token, int length) {
+		String[] parts = token.split(";", -1);
+		if (!parts[0].equals(TOKEN_VERSION) || parts.length != length + 1) {
+			throw new IllegalArgumentException("Invalid checkpoint: " + token);
+		}
+		Object[] key = new Object[length];
+		for (int i = 0; i < length; i++) {
+			String part = parts[i + 1];
+			if (part.isEmpty()) {
+				throw new IllegalArgumentException("Invalid checkpoint: " + token);
+			}
+			String text = decode(part.substring(1));
+			switch (part.charAt(0)) {
+			case 'L':
+				key[i] = Long.valueOf(text);
+				break;
+			case 'B':
+				key[i] = new BigInteger(text);
+				break;
+			case 'D':
+				key[i] = new BigDecimal(text);
+				break;
+			case 'F':
+				key[i] = Double.valueOf(text);
+				break;
+			case 'T':
+				key[i] = Timestamp.valueOf(text);
+				break;
+			case 'd':
+				key[i] = java.sql.Date.valueOf(text);
+				break;
+			case 'X':
+				key[i] = fromHex(text);
+				break;
+			case 'S':
+				key[i] = text;
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid checkpoint: " + token);
+			}
+		}
+		return key;
+	}
+
+	private static String encode(String s) {
+		try {
+			return URLEncoder.encode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		}
+		return sb.toString();
+	}
+
+	private static byte[] fromHex(String s) {
+		byte[] bytes = new byte[s.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query with named bind parameters in the format :{parameter_name}, compiled to SQL with ? placeholders. Parameters
+ * may be repeated. Placeholders inside quoted strings and identifiers are left untouched
+ */
+public class NamedQuery {
+
+	private String sql;
+	private List<String> parameters;
+
+	private NamedQuery(String sql, List<String> parameters) {
+		this.sql = sql;
+		this.parameters = parameters;
+	}
+
+	/**
+	 * Compile a query with named parameters
+	 * @param query Query with :{parameter_name} placeholders
+	 * @return Compiled query
+	 */
+	public static NamedQuery parse(String query) {
+		StringBuilder sql = new StringBuilder(query.length());
+		List<String> parameters = new ArrayList<>();
+		int length = query.length();
+		char quote = 0;
+		for (int i = 0; i < length; i++) {
+			char c = query.charAt(i);
+			if (quote != 0) {
+				sql.append(c);
+				if (c == '\\' && quote != '`' && i + 1 < length) {
+					sql.append(query.charAt(++i));
+				} else if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == ':' && i + 1 < length && query.charAt(i + 1) == '{') {
+				int end = query.indexOf('}', i + 2);
+				if (end > i + 2) {
+					parameters.add(query.substring(i + 2, end).trim());
+					sql.append('?');
+					i = end;
+					continue;
+				}
+			}
+			sql.append(c);
+		}
+		return new NamedQuery(sql.toString(), Collections.unmodifiableList(parameters));
+	}
+
+	/**
+	 * @return SQL with ? placeholders
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * @return Parameter names in placeholder order, with repeats
+	 */
+	public List<String> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Values of the parameters in placeholder order
+	 * @param values Parameter name to value mapping
+	 * @return Values to bind to the ? placeholders
+	 */
+	public Object[] bind(Map<String, ?> values) throws DbException {
+		Object[] params = new Object[parameters.size()];
+		for (int i = 0; i < params.length; i++) {
+			String name = parameters.get(i);
+			if (!values.containsKey(name)) {
+				throw new DbException("No value for query parameter: " + name);
+			}
+			params[i] = values.get(name);
+		}
+		return params;
+	}
+
+	@Override
+	public String toString() {
+		return sql;
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Describes a pull of a single table which is split into ranges of a numeric key, such as the primary key, so that
+ * the ranges can be pulled concurrently. Used with {@link DbCmd#pull(String, PartitionedPull)}
+ */
+public class PartitionedPull {
+
+	private String table;
+	private String keyColumn;
+	private int partitions;
+	private String columns = "*";
+	private String where;
+	private double sampleRate;
+	private boolean merge = true;
+
+	/**
+	 * @param table Table to pull from
+	 * @param keyColumn Indexed numeric column used to split the table into ranges
+	 * @param partitions Number of ranges, which are pulled concurrently
+	 */
+	public PartitionedPull(String table, String keyColumn, int partitions) {
+		this.table = table;
+		this.keyColumn = keyColumn;
+		this.partitions = partitions;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public String getKeyColumn() {
+		return keyColumn;
+	}
+
+	public int getPartitions() {
+		return partitions;
+	}
+
+	public String getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @param columns Comma separated columns to select, defaults to *
+	 */
+	public void setColumns(String columns) {
+		this.columns = columns;
+	}
+
+	public String getWhere() {
+		return where;
+	}
+
+	/**
+	 * @param where Optional predicate restricting the rows pulled
+	 */
+	public void setWhere(String where) {
+		this.where = where;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Split at quantiles of a random sample of keys instead of evenly between MIN and MAX of the key. Useful when keys
+	 * are unevenly distributed
+	 * @param sampleRate Fraction of rows to sample, e.g. 0.001. 0 splits evenly between MIN and MAX
+	 */
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public boolean isMerge() {
+		return merge;
+	}
+
+	/**
+	 * @param merge Merge the ranges into a single file with one header, or keep them as numbered part files
+	 */
+	public void setMerge(boolean merge) {
+		this.merge = merge;
+	}
+
+	/**
+	 * Query for the rows with lower &lt;= key &lt; upper
+	 * @param lower Inclusive lower bound, or null for no lower bound
+	 * @param upper Exclusive upper bound, or null for no upper bound
+	 * @return Range query
+	 */
+	protected String getRangeQuery(String lower, String upper) {
+		StringBuilder sb = new StringBuilder("SELECT ").append(columns).append(" FROM ").append(table);
+		String conjunction = " WHERE ";
+		if (where != null) {
+			sb.append(conjunction).append('(').append(where).append(')');
+			conjunction = " AND ";
+		}
+		if (lower != null) {
+			sb.append(conjunction).append(keyColumn).append(" >= ").append(lower);
+			conjunction = " AND ";
+		}
+		if (upper != null) {
+			sb.append(conjunction).append(keyColumn).append(" < ").append(upper);
+		}
+		return sb.toString();
+	}
+
+	protected String getBoundsQuery() {
+		return "SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " + table
+				+ (where == null ? "" : " WHERE (" + where + ")");
+	}
+
+	protected String getSampleQuery() {
+		return "SELECT " + keyColumn + " FROM " + table + " WHERE " + (where == null ? "" : "(" + where + ") AND ")
+				+ "RAND() < " + sampleRate + " ORDER BY " + keyColumn;
+	}
+
+}
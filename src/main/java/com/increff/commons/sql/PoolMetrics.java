@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * Snapshot of the state of a connection pool. Borrow statistics are only available for pools created from a
+ * {@link PoolProfile} and are -1 otherwise. For a latency histogram of connection acquisition, register a
+ * {@link QueryMetrics} on the DbQuery and see {@link QueryMetrics#getAcquireSnapshot()}
+ */
+public class PoolMetrics {
+
+	private final int active;
+	private final int idle;
+	private final int maxTotal;
+	private final int waiters;
+	private final long borrowedCount;
+	private final long createdCount;
+	private final long destroyedCount;
+	private final long destroyedByValidationCount;
+	private final long meanBorrowWaitMillis;
+	private final long maxBorrowWaitMillis;
+
+	private PoolMetrics(BasicDataSource ds, GenericObjectPool<PoolableConnection> pool) {
+		active = ds.getNumActive();
+		idle = ds.getNumIdle();
+		maxTotal = ds.getMaxTotal();
+		waiters = pool == null ? -1 : pool.getNumWaiters();
+		borrowedCount = pool == null ? -1 : pool.getBorrowedCount();
+		createdCount = pool == null ? -1 : pool.getCreatedCount();
+		destroyedCount = pool == null ? -1 : pool.getDestroyedCount();
+		destroyedByValidationCount = pool == null ? -1 : pool.getDestroyedByBorrowValidationCount();
+		meanBorrowWaitMillis = pool == null ? -1 : pool.getMeanBorrowWaitTimeMillis();
+		maxBorrowWaitMillis = pool == null ? -1 : pool.getMaxBorrowWaitTimeMillis();
+	}
+
+	/**
+	 * @param dataSource Pool created by {@link DbPoolUtil}, or another BasicDataSource
+	 * @return Current state of the pool
+	 */
+	public static PoolMetrics of(DataSource dataSource) {
+		if (!(dataSource instanceof BasicDataSource)) {
+			throw new IllegalArgumentException("Not a BasicDataSource: " + dataSource.getClass().getName());
+		}
+		GenericObjectPool<PoolableConnection> pool = null;
+		if (dataSource instanceof ProfiledDataSource) {
+			pool = ((ProfiledDataSource) dataSource).getPool();
+		}
+		return new PoolMetrics((BasicDataSource) dataSource, pool);
+	}
+
+	/**
+	 * @return Number of connections borrowed
+	 */
+	public int getActive() {
+		return active;
+	}
+
+	/**
+	 * @return Number of connections waiting in the pool
+	 */
+	public int getIdle() {
+		return idle;
+	}
+
+	public int getMaxTotal() {
+		return maxTotal;
+	}
+
+	/**
+	 * @return Number of threads waiting for a connection
+	 */
+	public int getWaiters() {
+		return waiters;
+	}
+
+	public long getBorrowedCount() {
+		return borrowedCount;
+	}
+
+	public long getCreatedCount() {
+		return createdCount;
+	}
+
+	public long getDestroyedCount() {
+		return destroyedCount;
+	}
+
+	/**
+	 * @return Number of connections dropped because they failed validation when borrowed
+	 */
+	public long getDestroyedByValidationCount() {
+		return destroyedByValidationCount;
+	}
+
+	/**
+	 * @return Mean time waited for a connection over the last 100 borrows
+	 */
+	public long getMeanBorrowWaitMillis() {
+		return meanBorrowWaitMillis;
+	}
+
+	public long getMaxBorrowWaitMillis() {
+		return maxBorrowWaitMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolMetrics [active=" + active + ", idle=" + idle + ", maxTotal=" + maxTotal + ", waiters=" + waiters
+				+ ", borrowed=" + borrowedCount + ", created=" + createdCount + ", destroyed=" + destroyedCount
+				+ ", destroyedByValidation=" + destroyedByValidationCount + ", meanBorrowWaitMillis="
+				+ meanBorrowWaitMillis + ", maxBorrowWaitMillis=" + maxBorrowWaitMillis + "]";
+	}
+
+}
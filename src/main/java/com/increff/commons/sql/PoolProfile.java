@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Settings of a connection pool created by DbPoolUtil. By default connections are validated with Connection.isValid,
+ * and only when they have been idle for more than 5 seconds, instead of running a validation query on every borrow
+ */
+public class PoolProfile {
+
+	/**
+	 * How connections are validated when borrowed from the pool
+	 */
+	public enum Validation {
+		/** Run the validation query on every borrow, the behaviour of the plain initDataSource */
+		QUERY,
+		/** Call Connection.isValid on every borrow, a ping for the MySQL driver */
+		IS_VALID,
+		/** Call Connection.isValid on borrow only if the connection has been idle longer than validationIdleMillis */
+		IDLE_TIME,
+		/** Do not validate on borrow */
+		NONE
+	}
+
+	private static final String VALIDATION_QUERY = "SELECT 1";
+
+	private int minConnections;
+	private int maxConnections;
+	private Validation validation = Validation.IDLE_TIME;
+	private long validationIdleMillis = 5000;
+	private int validationTimeoutSeconds = 5;
+	private long idleTestMillis = -1;
+	private boolean poolPreparedStatements;
+	private int maxOpenPreparedStatements = 100;
+	private long maxWaitMillis = -1;
+	private boolean warmUp;
+
+	/**
+	 * @param minConnections Connections created up front and kept idle, see the notes on {@link DbPoolUtil}
+	 * @param maxConnections Maximum number of connections
+	 */
+	public PoolProfile(int minConnections, int maxConnections) {
+		this.minConnections = minConnections;
+		this.maxConnections = maxConnections;
+	}
+
+	/**
+	 * Profile for heavy apps, 30 connections kept and up to 50 in total
+	 */
+	public static PoolProfile heavy() {
+		return new PoolProfile(30, 50);
+	}
+
+	/**
+	 * Profile for light apps, 10 connections kept and up to 20 in total
+	 */
+	public static PoolProfile light() {
+		return new PoolProfile(10, 20);
+	}
+
+	public int getMinConnections() {
+		return minConnections;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public Validation getValidation() {
+		return validation;
+	}
+
+	/**
+	 * @param validation How connections are validated when borrowed, defaults to {@link Validation#IDLE_TIME}
+	 */
+	public void setValidation(Validation validation) {
+		this.validation = validation;
+	}
+
+	public long getValidationIdleMillis() {
+		return validationIdleMillis;
+	}
+
+	/**
+	 * @param validationIdleMillis Idle time after which a borrowed connection is validated with
+	 *            {@link Validation#IDLE_TIME}, defaults to 5 seconds
+	 */
+	public void setValidationIdleMillis(long validationIdleMillis) {
+		this.validationIdleMillis = validationIdleMillis;
+	}
+
+	public int getValidationTimeoutSeconds() {
+		return validationTimeoutSeconds;
+	}
+
+	/**
+	 * @param validationTimeoutSeconds Time after which a validation fails, defaults to 5 seconds
+	 */
+	public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+		this.validationTimeoutSeconds = validationTimeoutSeconds;
+	}
+
+	public long getIdleTestMillis() {
+		return idleTestMillis;
+	}
+
+	/**
+	 * @param idleTestMillis Interval at which idle connections are validated in the background, so that broken ones
+	 *            are dropped before they are borrowed. Disabled by default
+	 */
+	public void setIdleTestMillis(long idleTestMillis) {
+		this.idleTestMillis = idleTestMillis;
+	}
+
+	public boolean isPoolPreparedStatements() {
+		return poolPreparedStatements;
+	}
+
+	/**
+	 * @param poolPreparedStatements Keep prepared statements open per connection, so that a DataSource-backed
+	 *            {@link DbQuery} reuses them. Disabled by default
+	 */
+	public void setPoolPreparedStatements(boolean poolPreparedStatements) {
+		this.poolPreparedStatements = poolPreparedStatements;
+	}
+
+	public int getMaxOpenPreparedStatements() {
+		return maxOpenPreparedStatements;
+	}
+
+	/**
+	 * @param maxOpenPreparedStatements Maximum number of pooled statements per connection, defaults to 100
+	 */
+	public void setMaxOpenPreparedStatements(int maxOpenPreparedStatements) {
+		this.maxOpenPreparedStatements = maxOpenPreparedStatements;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	/**
+	 * @param maxWaitMillis Time to wait for a free connection before failing, -1 (the default) to wait indefinitely
+	 */
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public boolean isWarmUp() {
+		return warmUp;
+	}
+
+	/**
+	 * @param warmUp Open and validate minConnections connections when the pool is created, so that startup fails
+	 *            early on a bad configuration and the first requests do not pay for connecting. Disabled by default
+	 */
+	public void setWarmUp(boolean warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	String getValidationQuery() {
+		return validation == Validation.QUERY ? VALIDATION_QUERY : null;
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.SQLException;
+
+import javax.management.ObjectName;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.dbcp2.PoolableConnectionFactory;
+import org.apache.commons.pool2.ObjectPool;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPool;
+
+/**
+ * BasicDataSource created from a {@link PoolProfile}, which can skip validating connections borrowed shortly after
+ * their last use, and exposes the statistics of its pool for {@link PoolMetrics}
+ */
+class ProfiledDataSource extends BasicDataSource {
+
+	// Connections idle for less are not validated on borrow, -1 to always validate
+	private final long validationIdleMillis;
+
+	ProfiledDataSource(long validationIdleMillis) {
+		this.validationIdleMillis = validationIdleMillis;
+	}
+
+	/**
+	 * @return Idle time below which borrowed connections are not validated, -1 if they are always validated
+	 */
+	long getValidationIdleMillis() {
+		return validationIdleMillis;
+	}
+
+	/**
+	 * @return Pool of connections, null until the first connection is requested
+	 */
+	GenericObjectPool<PoolableConnection> getPool() {
+		return getConnectionPool();
+	}
+
+	@Override
+	protected PoolableConnectionFactory createPoolableConnectionFactory(ConnectionFactory driverConnectionFactory)
+			throws SQLException {
+		PoolableConnectionFactory factory = super.createPoolableConnectionFactory(driverConnectionFactory);
+		if (validationIdleMillis < 0) {
+			return factory;
+		}
+		return new IdleValidatingFactory(factory, driverConnectionFactory, validationIdleMillis);
+	}
+
+	/**
+	 * Factory configured by BasicDataSource, skipping validation of connections idle for less than a given time
+	 */
+	static final class IdleValidatingFactory extends PoolableConnectionFactory {
+
+		private final PoolableConnectionFactory delegate;
+		private final long validationIdleMillis;
+
+		IdleValidatingFactory(PoolableConnectionFactory delegate, ConnectionFactory connectionFactory,
+				long validationIdleMillis) {
+			super(connectionFactory, (ObjectName) null);
+			this.delegate = delegate;
+			this.validationIdleMillis = validationIdleMillis;
+		}
+
+		@Override
+		public boolean validateObject(PooledObject<PoolableConnection> p) {
+			if (p.getIdleTimeMillis() < validationIdleMillis) {
+				return true;
+			}
+			return delegate.validateObject(p);
+		}
+
+		@Override
+		public PooledObject<PoolableConnection> makeObject() throws Exception {
+			return delegate.makeObject();
+		}
+
+		@Override
+		public void destroyObject(PooledObject<PoolableConnection> p) throws Exception {
+			delegate.destroyObject(p);
+		}
+
+		@Override
+		public void activateObject(PooledObject<PoolableConnection> p) throws Exception {
+			delegate.activateObject(p);
+		}
+
+		@Override
+		public void passivateObject(PooledObject<PoolableConnection> p) throws Exception {
+			delegate.passivateObject(p);
+		}
+
+		@Override
+		public void validateConnection(PoolableConnection conn) throws SQLException {
+			delegate.validateConnection(conn);
+		}
+
+		@Override
+		public synchronized void setPool(ObjectPool<PoolableConnection> pool) {
+			delegate.setPool(pool);
+		}
+
+		@Override
+		public synchronized ObjectPool<PoolableConnection> getPool() {
+			return delegate.getPool();
+		}
+
+	}
+
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Receives progress of a long running operation, such as a {@link ChunkedDelete}
+ */
+public interface ProgressListener {
+
+	/**
+	 * Called after each batch
+	 * @param rows Rows processed so far
+	 * @param rowsPerSecond Rows processed per second so far
+	 */
+	void progress(long rows, double rowsPerSecond);
+
+}
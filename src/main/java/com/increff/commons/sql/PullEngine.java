@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+
+/**
+ * Runs a query and writes its result to a TSV file in the format produced by the mysql command line client in batch
+ * mode: a header row of column names followed by one tab separated line per row
+ */
+public interface PullEngine {
+
+	/**
+	 * Run a query and write its result to a file
+	 * @param query Query to be executed
+	 * @param outFile File to write the result to
+	 * @param append Append to the file instead of overwriting it
+	 * @return Number of rows written, or -1 if not known
+	 */
+	long pull(String query, File outFile, boolean append) throws DbException;
+
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caches the results of queries run through {@link DbQuery#executeQuery(String)} and
+ * {@link DbQuery#executeQuery(String, Object...)}, keyed by SQL text and parameters. Register it with
+ * {@link DbQuery#setQueryCache(QueryCache)}. Entries expire after a time to live given per query, and the least
+ * recently used entries are evicted once the estimated size of the cached rows exceeds a byte budget.
+ * <p>
+ * Statements run through DbQuery, {@link BatchInserter}, {@link ChunkedDelete} and {@link DbCmd} invalidate the
+ * cached results of the tables they change. Changes made by other clients are only picked up once entries expire.
+ * Cached result lists are shared and unmodifiable, and their rows must not be modified
+ */
+public class QueryCache {
+
+	private static final long DEFAULT_MAX_BYTES = 64L << 20;
+	private static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	// Estimated sizes of objects, in bytes
+	private static final int ENTRY_BYTES = 128;
+	private static final int ROW_BYTES = 48;
+	private static final int TOKEN_BYTES = 48;
+
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final AtomicLong generation = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder invalidations = new LongAdder();
+	private long bytes;
+	private volatile long maxBytes = DEFAULT_MAX_BYTES;
+	private volatile ToLongFunction<String> ttlFunction = query -> DEFAULT_TTL_MILLIS;
+
+	/**
+	 * @param maxBytes Estimated size of cached rows above which least recently used entries are evicted. Results
+	 *            larger than a quarter of it are not cached. Defaults to 64 MB
+	 */
+	public void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		synchronized (this) {
+			evict();
+		}
+	}
+
+	/**
+	 * @param ttlMillis Time to live of every query, 0 to stop caching. Defaults to 5 minutes
+	 */
+	public void setTtlMillis(long ttlMillis) {
+		this.ttlFunction = query -> ttlMillis;
+	}
+
+	/**
+	 * @param ttlFunction Maps the SQL of a query to its time to live in milliseconds, 0 or less to not cache the query
+	 */
+	public void setTtlFunction(ToLongFunction<String> ttlFunction) {
+		this.ttlFunction = ttlFunction;
+	}
+
+	/**
+	 * Loads a query result on a cache miss
+	 */
+	interface Loader {
+		List<ResultRow> load() throws DbException;
+	}
+
+	/**
+	 * Get the cached result of a query, or run it through the loader and cache the result
+	 * @param query SQL text
+	 * @param params Values bound to the query
+	 * @param loader Runs the query
+	 * @return Unmodifiable result
+	 */
+	List<ResultRow> get(String query, Object[] params, Loader loader) throws DbException {
+		long ttlMillis = ttlFunction.applyAsLong(query);
+		if (ttlMillis <= 0) {
+			return loader.load();
+		}
+		Key key = new Key(query, params);
+		long now = System.nanoTime();
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			if (entry != null && now - entry.expiresAt < 0) {
+				hits.increment();
+				return entry.rows;
+			}
+			if (entry != null) {
+				remove(key, entry);
+			}
+		}
+		misses.increment();
+		// A write invalidating while the query runs may leave the result stale, it is then not cached
+		long loadGeneration = generation.get();
+		List<ResultRow> rows = Collections.unmodifiableList(loader.load());
+		long size = estimateBytes(query, params, rows);
+		if (size > maxBytes / 4) {
+			return rows;
+		}
+		Set<String> tables = SqlTables.getReadTables(query);
+		synchronized (this) {
+			if (generation.get() == loadGeneration) {
+				Entry previous = entries.put(key, new Entry(rows, tables, size, now + ttlMillis * 1_000_000));
+				if (previous != null) {
+					bytes -= previous.bytes;
+				}
+				bytes += size;
+				evict();
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Invalidate the results of the tables changed by a statement
+	 * @param statement SQL statement which has been run
+	 */
+	public void invalidateStatement(String statement) {
+		Set<String> tables = SqlTables.getWriteTables(statement);
+		if (tables == null) {
+			invalidateAll();
+		} else if (!tables.isEmpty()) {
+			invalidate(tables);
+		}
+	}
+
+	/**
+	 * Invalidate the results of queries reading a table. Results of queries whose tables are not known, e.g. SHOW
+	 * statements, are invalidated as well
+	 * @param table Table name, without schema
+	 */
+	public void invalidate(String table) {
+		invalidate(Collections.singleton(SqlTables.normalize(table)));
+	}
+
+	/**
+	 * Invalidate the results of queries reading any of the tables, given in lower case
+	 */
+	synchronized void invalidate(Set<String> tables) {
+		generation.incrementAndGet();
+		Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry entry = it.next().getValue();
+			if (entry.tables == null || !Collections.disjoint(entry.tables, tables)) {
+				it.remove();
+				bytes -= entry.bytes;
+				invalidations.increment();
+			}
+		}
+	}
+
+	/**
+	 * Invalidate all cached results
+	 */
+	public synchronized void invalidateAll() {
+		generation.incrementAndGet();
+		invalidations.add(entries.size());
+		entries.clear();
+		bytes = 0;
+	}
+
+	private void remove(Key key, Entry entry) {
+		entries.remove(key);
+		bytes -= entry.bytes;
+	}
+
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (bytes > maxBytes && it.hasNext()) {
+			bytes -= it.next().bytes;
+			it.remove();
+			evictions.increment();
+		}
+	}
+
+	private static long estimateBytes(String query, Object[] params, List<ResultRow> rows) {
+		long size = ENTRY_BYTES + 2L * query.length() + 16L * params.length;
+		for (ResultRow row : rows) {
+			String[] tokens = row.getTokens();
+			size += ROW_BYTES;
+			for (String token : tokens) {
+				size += token == null ? 8 : TOKEN_BYTES + 2L * token.length();
+			}
+		}
+		return size;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return Number of entries evicted to keep within the byte budget
+	 */
+	public long getEvictions() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return Number of entries removed by writes to their tables
+	 */
+	public long getInvalidations() {
+		return invalidations.sum();
+	}
+
+	/**
+	 * @return Number of cached results, including expired ones not yet removed
+	 */
+	public synchronized int getSize() {
+		return entries.size();
+	}
+
+	/**
+	 * @return Estimated size of the cached rows in bytes
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return "QueryCache [hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions()
+				+ ", invalidations=" + getInvalidations() + ", size=" + getSize() + ", bytes=" + getBytes() + "]";
+	}
+
+	private static final class Key {
+
+		private final String query;
+		private final Object[] params;
+		private final int hash;
+
+		Key(String query, Object[] params) {
+			this.query = query;
+			this.params = params;
+			this.hash = 31 * query.hashCode() + Arrays.hashCode(params);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) o;
+			return hash == other.hash && query.equals(other.query) && Arrays.equals(params, other.params);
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final List<ResultRow> rows;
+		// Tables read by the query, null if not known
+		private final Set<String> tables;
+		private final long bytes;
+		private final long expiresAt;
+
+		Entry(List<ResultRow> rows, Set<String> tables, long bytes, long expiresAt) {
+			this.rows = rows;
+			this.tables = tables;
+			this.bytes = bytes;
+			this.expiresAt = expiresAt;
+		}
+
+	}
+
+}
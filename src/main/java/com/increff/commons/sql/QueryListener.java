@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Receives timings of the queries run by a {@link DbQuery} or a {@link DbCmd}, see {@link QueryMetrics}. Methods
+ * are called on the thread running the query, so they must be thread safe and fast
+ */
+public interface QueryListener {
+
+	/**
+	 * Called when a connection is handed to a query, for a DataSource-backed DbQuery after borrowing it from the pool
+	 * @param nanos Time taken to get the connection
+	 */
+	void connectionAcquired(long nanos);
+
+	/**
+	 * Called when a query completes or fails
+	 * @param query SQL of the query, for DbCmd pushes a LOAD DATA statement naming the table
+	 * @param nanos Time taken by the query, including reading the result
+	 * @param rows Rows returned, updated or transferred, or -1 if not known
+	 * @param bytes Bytes written to file by a pull, or -1 for other queries
+	 * @param success False if the query failed
+	 */
+	void queryCompleted(String query, long nanos, long rows, long bytes, boolean success);
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Records latency histograms, rows and bytes per query, and the time taken to acquire connections. Queries are
+ * grouped by their fingerprint, the SQL with literals replaced by ?, or by a name from a key function. Register it
+ * with {@link DbQuery#setQueryListener(QueryListener)} or {@link DbCmd#setQueryListener(QueryListener)}; without a
+ * listener nothing is recorded. Snapshots can be taken at any time and exported to a monitoring system
+ */
+public class QueryMetrics implements QueryListener {
+
+	/** Key under which queries are recorded once the number of keys reaches the limit */
+	public static final String OTHER_KEY = "other";
+
+	private static final int DEFAULT_MAX_KEYS = 1000;
+	private static final int MAX_CACHED_FINGERPRINTS = 10000;
+	private static final Pattern VALUE_LIST = Pattern.compile("\\(\\?(?: ?, ?\\?)+\\)");
+	private static final Pattern ROW_LIST = Pattern.compile("\\(\\?\\+\\)(?: ?, ?\\(\\?\\+\\))+");
+
+	private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, String> fingerprints = new ConcurrentHashMap<>();
+	private volatile LatencyHistogram acquireHistogram = new LatencyHistogram();
+	private Function<String, String> keyFunction;
+	private int maxKeys = DEFAULT_MAX_KEYS;
+
+	/**
+	 * @param keyFunction Maps the SQL of a query to the key it is recorded under, e.g. a query name. Queries mapped to
+	 *            null are recorded under their fingerprint
+	 */
+	public void setKeyFunction(Function<String, String> keyFunction) {
+		this.keyFunction = keyFunction;
+	}
+
+	/**
+	 * @param maxKeys Maximum number of distinct keys, further queries are recorded under {@link #OTHER_KEY}.
+	 *            Defaults to 1000
+	 */
+	public void setMaxKeys(int maxKeys) {
+		this.maxKeys = maxKeys;
+	}
+
+	@Override
+	public void connectionAcquired(long nanos) {
+		acquireHistogram.record(nanos, -1, -1, true);
+	}
+
+	@Override
+	public void queryCompleted(String query, long nanos, long rows, long bytes, boolean success) {
+		getHistogram(getKey(query)).record(nanos, rows, bytes, success);
+	}
+
+	/**
+	 * @return Statistics of every query key, slowest total time first
+	 */
+	public List<QueryStats> getSnapshot() {
+		List<QueryStats> snapshot = new ArrayList<>();
+		histograms.forEach((key, histogram) -> snapshot.add(histogram.snapshot(key)));
+		snapshot.sort(Comparator.comparingLong(QueryStats::getTotalNanos).reversed());
+		return snapshot;
+	}
+
+	/**
+	 * @return Statistics of a single query key, or null if nothing was recorded under it
+	 */
+	public QueryStats getSnapshot(String key) {
+		LatencyHistogram histogram = histograms.get(key);
+		return histogram == null ? null : histogram.snapshot(key);
+	}
+
+	/**
+	 * @return Statistics of connection acquisition, under the key "connection"
+	 */
+	public QueryStats getAcquireSnapshot() {
+		return acquireHistogram.snapshot("connection");
+	}
+
+	/**
+	 * Discard everything recorded so far
+	 */
+	public void reset() {
+		histograms.clear();
+		acquireHistogram = new LatencyHistogram();
+	}
+
+	private String getKey(String query) {
+		String key = keyFunction == null ? null : keyFunction.apply(query);
+		if (key != null) {
+			return key;
+		}
+		key = fingerprints.get(query);
+		if (key == null) {
+			key = fingerprint(query);
+			if (fingerprints.size() >= MAX_CACHED_FINGERPRINTS) {
+				fingerprints.clear();
+			}
+			fingerprints.put(query, key);
+		}
+		return key;
+	}
+
+	private LatencyHistogram getHistogram(String key) {
+		LatencyHistogram histogram = histograms.get(key);
+		if (histogram != null) {
+			return histogram;
+		}
+		if (histograms.size() >= maxKeys) {
+			key = OTHER_KEY;
+		}
+		return histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+	}
+
+	/**
+	 * Normalize a query so that executions differing only in literal values share a fingerprint. Comments are
+	 * removed, whitespace is collapsed, string and numeric literals are replaced by ? and lists of values such as
+	 * IN (1, 2, 3) or the rows of a multi-row INSERT are collapsed to (?+)
+	 * @param query SQL of the query
+	 * @return Fingerprint of the query
+	 */
+	public static String fingerprint(String query) {
+		StringBuilder sb = new StringBuilder(query.length());
+		int n = query.length();
+		int i = 0;
+		while (i < n) {
+			char c = query.charAt(i);
+			char next = i + 1 < n ? query.charAt(i + 1) : 0;
+			if (c == '\'' || c == '"') {
+				i = skipString(query, i, c);
+				sb.append('?');
+			} else if (c == '`') {
+				int end = query.indexOf('`', i + 1);
+				end = end < 0 ? n : end + 1;
+				sb.append(query, i, end);
+				i = end;
+			} else if (c == '#' || (c == '-' && next == '-')) {
+				while (i < n && query.charAt(i) != '\n') {
+					i++;
+				}
+				appendSpace(sb);
+			} else if (c == '/' && next == '*') {
+				int end = query.indexOf("*/", i + 2);
+				i = end < 0 ? n : end + 2;
+				appendSpace(sb);
+			} else if (Character.isWhitespace(c)) {
+				appendSpace(sb);
+				i++;
+			} else if (Character.isDigit(c) && !isIdentifierEnd(sb)) {
+				while (i < n && (Character.isLetterOrDigit(query.charAt(i)) || query.charAt(i) == '.')) {
+					i++;
+				}
+				sb.append('?');
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		String fingerprint = sb.toString().trim();
+		if (fingerprint.indexOf('?') >= 0) {
+			fingerprint = VALUE_LIST.matcher(fingerprint).replaceAll("(?+)");
+			fingerprint = ROW_LIST.matcher(fingerprint).replaceAll("(?+)");
+		}
+		return fingerprint;
+	}
+
+	private static int skipString(String query, int start, char quote) {
+		int i = start + 1;
+		while (i < query.length()) {
+			char c = query.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (c == quote) {
+				if (i + 1 < query.length() && query.charAt(i + 1) == quote) {
+					i += 2;
+				} else {
+					return i + 1;
+				}
+			} else {
+				i++;
+			}
+		}
+		return query.length();
+	}
+
+	private static void appendSpace(StringBuilder sb) {
+		if (sb.length() > 0 && sb.charAt(sb.length() - 1) != ' ') {
+			sb.append(' ');
+		}
+	}
+
+	private static boolean isIdentifierEnd(StringBuilder sb) {
+		if (sb.length() == 0) {
+			return false;
+		}
+		char c = sb.charAt(sb.length() - 1);
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+}
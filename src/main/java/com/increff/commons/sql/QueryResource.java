@@ -18,16 +18,24 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.text.StringSubstitutor;
 
 import com.nextscm.commons.lang.CollectionUtil;
 import com.nextscm.commons.lang.FileUtil;
 
+/**
+ * Loads queries stored as resources. Loaded queries are cached with their comments removed and their variables
+ * located, so that repeated calls only substitute the variables
+ */
 public class QueryResource {
 
 	private String resourceBase;
+	private ConcurrentHashMap<String, QueryTemplate> templates = new ConcurrentHashMap<>();
+	private AtomicLong cacheHits = new AtomicLong();
+	private AtomicLong cacheMisses = new AtomicLong();
 
 	public QueryResource(String resourceBase) {
 		this.resourceBase = resourceBase;
@@ -53,8 +61,18 @@ public class QueryResource {
 	 * @return Query string with variables substituted=
 	 */
 	public String getQuery(String queryName, Map<String, String> data) throws DbException {
-		String query = getQuery(queryName);
-		return StringSubstitutor.replace(query, data);
+		return getTemplate(queryName).render(data);
+	}
+
+	/**
+	 * Returns a query with named bind parameters, after substituting the variables from given variable mapping.
+	 * Bind parameters must be in the format :{parameter_name} and compile to ? placeholders
+	 * @param queryName Name of resource in resourceBase location which stores the desired query
+	 * @param data Variable name to variable value mapping
+	 * @return Compiled query
+	 */
+	public NamedQuery getNamedQuery(String queryName, Map<String, String> data) throws DbException {
+		return NamedQuery.parse(getQuery(queryName, data));
 	}
 
 	/**
@@ -63,6 +81,45 @@ public class QueryResource {
 	 * @return Fetched query value
 	 */
 	public String getQuery(String resourceName) throws DbException {
+		return getTemplate(resourceName).getQuery();
+	}
+
+	/**
+	 * Drop a query from the cache, so that it is read again from its resource on next use
+	 * @param resourceName Name of query storing resource
+	 */
+	public void invalidate(String resourceName) {
+		templates.remove(resourceName);
+	}
+
+	/**
+	 * Drop all queries from the cache
+	 */
+	public void invalidateAll() {
+		templates.clear();
+	}
+
+	public long getCacheHits() {
+		return cacheHits.get();
+	}
+
+	public long getCacheMisses() {
+		return cacheMisses.get();
+	}
+
+	private QueryTemplate getTemplate(String resourceName) throws DbException {
+		QueryTemplate template = templates.get(resourceName);
+		if (template != null) {
+			cacheHits.incrementAndGet();
+			return template;
+		}
+		cacheMisses.incrementAndGet();
+		template = QueryTemplate.compile(loadQuery(resourceName));
+		QueryTemplate existing = templates.putIfAbsent(resourceName, template);
+		return existing == null ? template : existing;
+	}
+
+	private String loadQuery(String resourceName) throws DbException {
 		String resourcePath = resourceBase + "/" + resourceName;
 		InputStream is = this.getClass().getResourceAsStream(resourcePath);
 		if (is == null) {
@@ -79,15 +136,12 @@ public class QueryResource {
 	}
 
 	/**
-	 * Removes SQL comments from SQL queries. (?m) turns on the line mode
+	 * Removes SQL comments from SQL queries: #, -- followed by whitespace and // up to the end of the line, and
+	 * /* *&#47; blocks, which become a space. Comment markers inside quoted strings and identifiers are kept
 	 * @param s Query strong from which to remove comments
 	 * @return Cleaned query string
 	 */
 	public static String cleanComments(String s) {
-		String clean = s.replaceAll("(?m)#.*$", ""); // matches #comment
-		clean = clean.replaceAll("(?m)--.*$", ""); // matches --comment
-		clean = clean.replaceAll("(?m)//.*$", "");// matches //comment
-		clean = clean.replaceAll("(?m)/\\*.*$", "");// matches /*comment
-		return clean;
+		return SqlLexer.stripComments(s);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Snapshot of the statistics of a query recorded by {@link QueryMetrics}. Durations are in nanoseconds
+ */
+public class QueryStats {
+
+	private String key;
+	private long[] counts;
+	private long count;
+	private long totalNanos;
+	private long maxNanos;
+	private long rows;
+	private long bytes;
+	private long failures;
+
+	QueryStats(String key, long[] counts, long totalNanos, long maxNanos, long rows, long bytes, long failures) {
+		this.key = key;
+		this.counts = counts;
+		for (long c : counts) {
+			count += c;
+		}
+		this.totalNanos = totalNanos;
+		this.maxNanos = maxNanos;
+		this.rows = rows;
+		this.bytes = bytes;
+		this.failures = failures;
+	}
+
+	/**
+	 * @return Query name or fingerprint
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return Number of executions, including failed ones
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getMeanNanos() {
+		return count == 0 ? 0 : totalNanos / count;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	public long getP50Nanos() {
+		return getPercentileNanos(50);
+	}
+
+	public long getP99Nanos() {
+		return getPercentileNanos(99);
+	}
+
+	/**
+	 * @param percentile Percentile between 0 and 100
+	 * @return Duration below which the given percentage of executions completed, accurate within 12.5%
+	 */
+	public long getPercentileNanos(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(LatencyHistogram.getUpperBound(i), maxNanos);
+			}
+		}
+		return maxNanos;
+	}
+
+	/**
+	 * @return Total rows returned, updated or transferred, counting only executions which reported rows
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return Total bytes written to file by pulls
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return key + ": count=" + count + ", failures=" + failures + ", p50=" + getP50Nanos() / 1000 + "us, p99="
+				+ getP99Nanos() / 1000 + "us, max=" + maxNanos / 1000 + "us, rows=" + rows + ", bytes=" + bytes;
+	}
+
+}
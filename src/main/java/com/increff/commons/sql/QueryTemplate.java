@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.text.StringSubstitutor;
+
+/**
+ * Query text split once into literal segments and ${variable_name} references, so that rendering is a single pass of
+ * concatenation. Templates using escapes ($${...}) or default values (${name:-default}), and variable values which
+ * themselves contain variables, are rendered by StringSubstitutor to keep its exact behaviour
+ */
+class QueryTemplate {
+
+	private static final String PREFIX = "${";
+	private static final String SUFFIX = "}";
+
+	private String query;
+	// Literals at even indexes, variable names at odd indexes
+	private String[] segments;
+	private boolean complex;
+
+	private QueryTemplate(String query, String[] segments, boolean complex) {
+		this.query = query;
+		this.segments = segments;
+		this.complex = complex;
+	}
+
+	static QueryTemplate compile(String query) {
+		List<String> segments = new ArrayList<>();
+		boolean complex = false;
+		int position = 0;
+		while (true) {
+			int start = query.indexOf(PREFIX, position);
+			if (start < 0) {
+				break;
+			}
+			int end = query.indexOf(SUFFIX, start + PREFIX.length());
+			if (end < 0) {
+				break;
+			}
+			String name = query.substring(start + PREFIX.length(), end);
+			if ((start > 0 && query.charAt(start - 1) == '$') || name.isEmpty() || name.contains(":-")
+					|| name.contains(PREFIX)) {
+				complex = true;
+				break;
+			}
+			segments.add(query.substring(position, start));
+			segments.add(name);
+			position = end + SUFFIX.length();
+		}
+		segments.add(query.substring(position));
+		return new QueryTemplate(query, segments.toArray(new String[0]), complex);
+	}
+
+	/**
+	 * @return Query text without variables substituted
+	 */
+	String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Substitute variables from the mapping, leaving unknown variables untouched
+	 * @param data Variable name to variable value mapping, null for none
+	 * @return Query string with variables substituted
+	 */
+	String render(Map<String, String> data) {
+		if (data == null) {
+			data = Collections.emptyMap();
+		}
+		if (complex) {
+			return StringSubstitutor.replace(query, data);
+		}
+		StringBuilder sb = new StringBuilder(query.length() + 16 * segments.length);
+		sb.append(segments[0]);
+		for (int i = 1; i < segments.length; i += 2) {
+			String value = data.get(segments[i]);
+			if (value == null) {
+				sb.append(PREFIX).append(segments[i]).append(SUFFIX);
+			} else if (value.contains(PREFIX)) {
+				return StringSubstitutor.replace(query, data);
+			} else {
+				sb.append(value);
+			}
+			sb.append(segments[i + 1]);
+		}
+		return sb.toString();
+	}
+
+}
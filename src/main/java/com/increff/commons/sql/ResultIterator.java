@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Iterates over the rows of a streamed query result, one row at a time. Rows are read from the database as they are
+ * consumed, so memory use does not depend on the size of the result. The iterator must be closed once done, which is
+ * done automatically when the end of the result is reached
+ */
+public class ResultIterator implements Iterator<ResultRow>, AutoCloseable {
+
+	private DbQuery dbQuery;
+	private Connection con;
+	private Statement stmt;
+	private ResultSet rs;
+	private HashMap<String, Integer> columnMap;
+	private ResultRow next;
+	private boolean closed;
+	private String query;
+	private long start;
+	private long rows;
+	private boolean failed;
+
+	protected ResultIterator(DbQuery dbQuery, Connection con, Statement stmt, ResultSet rs) throws SQLException {
+		this.dbQuery = dbQuery;
+		this.con = con;
+		this.stmt = stmt;
+		this.rs = rs;
+		this.columnMap = JdbcUtil.getColumMap(rs);
+	}
+
+	/**
+	 * Report the query to the listener of the DbQuery when closed, see {@link DbQuery#startQuery()}
+	 */
+	void setTiming(String query, long start) {
+		this.query = query;
+		this.start = start;
+	}
+
+	/**
+	 * @return Mapping of column names to column index, shared by all rows of this result
+	 */
+	public HashMap<String, Integer> getColumns() {
+		return columnMap;
+	}
+
+	/**
+	 * Resolve a column name to a handle, valid for all rows of this result, see {@link ColumnHandle}
+	 * @param col Column name
+	 * @param ignoreCase Match the name ignoring case
+	 * @return Handle of the column
+	 */
+	public ColumnHandle getColumnHandle(String col, boolean ignoreCase) {
+		return ColumnHandle.of(columnMap, col, ignoreCase);
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (next != null) {
+			return true;
+		}
+		if (closed) {
+			return false;
+		}
+		try {
+			if (rs.next()) {
+				next = JdbcUtil.getResultRow(rs, columnMap);
+				rows++;
+				return true;
+			}
+		} catch (SQLException e) {
+			failed = true;
+			close();
+			throw new RuntimeException("Error reading DB query result", e);
+		}
+		close();
+		return false;
+	}
+
+	@Override
+	public ResultRow next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		ResultRow row = next;
+		next = null;
+		return row;
+	}
+
+	/**
+	 * Sequential stream over the remaining rows. Closing the stream closes this iterator
+	 * @return Stream of rows
+	 */
+	public Stream<ResultRow> stream() {
+		Spliterator<ResultRow> spliterator = Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
+	/**
+	 * Release the underlying statement, result set and connection. Safe to call more than once
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		// A row read ahead by hasNext is dropped
+		next = null;
+		JdbcUtil.closeQuietly(rs);
+		JdbcUtil.closeQuietly(stmt);
+		dbQuery.releaseConnection(con);
+		if (query != null) {
+			dbQuery.endQuery(query, start, rows, !failed);
+		}
+	}
+
+}
@@ -83,10 +83,32 @@ public class ResultRow {
 		return row;
 	}
 
+	/**
+	 * @return Mapping of column names to 0-based index, shared by all rows of a result
+	 */
 	public HashMap<String, Integer> getColumns() {
 		return columns;
 	}
 
+	/**
+	 * Resolve a column name to a handle for the handle based getters, failing if the column does not exist
+	 * @param col Column name
+	 * @return Handle of the column
+	 */
+	public ColumnHandle getColumnHandle(String col) {
+		return ColumnHandle.of(columns, col, false);
+	}
+
+	/**
+	 * Resolve a column name to a handle for the handle based getters, optionally ignoring case
+	 * @param col Column name
+	 * @param ignoreCase Match the name ignoring case
+	 * @return Handle of the column
+	 */
+	public ColumnHandle getColumnHandle(String col, boolean ignoreCase) {
+		return ColumnHandle.of(columns, col, ignoreCase);
+	}
+
 	/* Helper methods */
 
 	// STRING BASE GETS
@@ -194,4 +216,55 @@ public class ResultRow {
 		return s == null ? null : YearMonth.parse(s);
 	}
 
+	/* COLUMN HANDLE BASED GETS */
+	public String getValue(ColumnHandle col) {
+		return tokens[col.getIndex()];
+	}
+
+	public String getString(ColumnHandle col) {
+		return getValue(col);
+	}
+
+	public Long getLong(ColumnHandle col) {
+		return getLong(col.getIndex());
+	}
+
+	public Double getDouble(ColumnHandle col) {
+		return getDouble(col.getIndex());
+	}
+
+	public BigInteger getBigInteger(ColumnHandle col) {
+		return getBigInteger(col.getIndex());
+	}
+
+	public BigDecimal getBigDecimal(ColumnHandle col) {
+		return getBigDecimal(col.getIndex());
+	}
+
+	public Integer getInteger(ColumnHandle col) {
+		return getInteger(col.getIndex());
+	}
+
+	public Boolean getBoolean(ColumnHandle col) {
+		return getBoolean(col.getIndex());
+	}
+
+	public Boolean getBooleanFromInt(ColumnHandle col) {
+		String s = getValue(col);
+		return s == null ? null : s.equals("1");
+	}
+
+	public LocalDate getLocalDate(ColumnHandle col) {
+		return getLocalDate(col.getIndex());
+	}
+
+	public YearMonth getYearMonth(ColumnHandle col) {
+		return getYearMonth(col.getIndex());
+	}
+
+	public Date getDate(ColumnHandle col, DateFormat df) throws ParseException {
+		String s = getValue(col);
+		return s == null ? null : df.parse(s);
+	}
+
 }
@@ -0,0 +1,701 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Maps result rows to objects of a class. Columns are matched to properties by name, ignoring case and underscores,
+ * so that a column sku_code fills a property skuCode. Classes with a no-argument constructor are filled through
+ * setters, or fields where there is no setter. Other classes are created through their constructor: the canonical
+ * constructor of a record, or else the constructor with the most parameters, which needs the class to be compiled
+ * with -parameters. Columns without a matching property are ignored, properties without a column keep their default.
+ * <p>
+ * Setters and constructors are bound once per class with LambdaMetafactory or method handles, and the matching of
+ * columns is planned once per set of columns, so no reflection is done per row. Mappers are thread safe and cached
+ * per class, see {@link #of(Class)}
+ * @param <T> Type of the mapped objects
+ */
+public final class RowMapper<T> {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final ConcurrentHashMap<Class<?>, RowMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+	private final Class<T> type;
+	// Properties by normalized name
+	private final Map<String, Property> properties;
+	private final Supplier<Object> instantiator;
+	private final MethodHandle constructor;
+	private final Object[] defaultArgs;
+	private final ConcurrentHashMap<List<String>, Plan> plans = new ConcurrentHashMap<>();
+	private volatile Plan lastPlan;
+
+	private RowMapper(Class<T> type) {
+		this.type = type;
+		this.properties = new LinkedHashMap<>();
+		Supplier<Object> noArgs = getInstantiator(type);
+		if (noArgs != null) {
+			this.instantiator = noArgs;
+			this.constructor = null;
+			this.defaultArgs = null;
+			addSetters(type);
+		} else {
+			Constructor<?> ctor = getConstructor(type);
+			this.instantiator = null;
+			this.constructor = toSpreadHandle(ctor);
+			this.defaultArgs = addParameters(ctor, getParameterNames(type, ctor));
+		}
+	}
+
+	/**
+	 * @param type Class to map rows to
+	 * @return Cached mapper of the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> RowMapper<T> of(Class<T> type) {
+		RowMapper<?> mapper = MAPPERS.get(type);
+		if (mapper == null) {
+			mapper = MAPPERS.computeIfAbsent(type, t -> new RowMapper<>(t));
+		}
+		return (RowMapper<T>) mapper;
+	}
+
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * Map a row. Rows sharing a column map, such as the rows of one query result, share the mapping plan
+	 * @param row Row to map
+	 * @return Mapped object
+	 */
+	public T map(ResultRow row) {
+		Plan plan = lastPlan;
+		if (plan == null || plan.columnMap != row.getColumns()) {
+			plan = getPlan(row.getColumns());
+		}
+		return plan.map(row);
+	}
+
+	/**
+	 * Map a list of rows
+	 * @param rows Rows to map
+	 * @return Mapped objects, in row order
+	 */
+	public List<T> mapAll(List<ResultRow> rows) {
+		List<T> list = new ArrayList<>(rows.size());
+		for (ResultRow row : rows) {
+			list.add(map(row));
+		}
+		return list;
+	}
+
+	/**
+	 * Map the current row of a result set, reading values with the typed JDBC getters. Columns are matched by
+	 * label, i.e. by alias where one is given. To map many rows prefer {@link #mapAll(ResultSet)}, which matches
+	 * the columns only once
+	 * @param rs Result set positioned on a row
+	 * @return Mapped object
+	 */
+	public T map(ResultSet rs) throws SQLException {
+		return getPlan(rs).map(rs);
+	}
+
+	/**
+	 * Map all remaining rows of a result set, see {@link #map(ResultSet)}
+	 * @param rs Result set positioned before the first row to map
+	 * @return Mapped objects, in row order
+	 */
+	public List<T> mapAll(ResultSet rs) throws SQLException {
+		Plan plan = getPlan(rs);
+		List<T> list = new ArrayList<>();
+		while (rs.next()) {
+			list.add(plan.map(rs));
+		}
+		return list;
+	}
+
+	// PLANS
+
+	private Plan getPlan(HashMap<String, Integer> columnMap) {
+		// Sized by the largest index, as a duplicate column name leaves a gap at the index of its first occurrence
+		int columnCount = 0;
+		for (Integer index : columnMap.values()) {
+			columnCount = Math.max(columnCount, index + 1);
+		}
+		String[] names = new String[columnCount];
+		for (Map.Entry<String, Integer> e : columnMap.entrySet()) {
+			names[e.getValue()] = e.getKey();
+		}
+		Plan plan = getPlan(Arrays.asList(names));
+		Plan rowPlan = new Plan(plan, columnMap);
+		lastPlan = rowPlan;
+		return rowPlan;
+	}
+
+	private Plan getPlan(ResultSet rs) throws SQLException {
+		ResultSetMetaData rsm = rs.getMetaData();
+		String[] names = new String[rsm.getColumnCount()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = rsm.getColumnLabel(i + 1);
+		}
+		return getPlan(Arrays.asList(names));
+	}
+
+	private Plan getPlan(List<String> columns) {
+		Plan plan = plans.get(columns);
+		if (plan == null) {
+			plan = plans.computeIfAbsent(columns, this::newPlan);
+		}
+		return plan;
+	}
+
+	private Plan newPlan(List<String> columns) {
+		List<Integer> indexes = new ArrayList<>();
+		List<Property> matched = new ArrayList<>();
+		for (int i = 0; i < columns.size(); i++) {
+			Property property = columns.get(i) == null ? null : properties.get(normalize(columns.get(i)));
+			if (property != null && !matched.contains(property)) {
+				indexes.add(i);
+				matched.add(property);
+			}
+		}
+		if (matched.isEmpty()) {
+			throw new RuntimeException("No column matches a property of " + type.getName() + ", columns:" + columns);
+		}
+		int[] columnIndexes = new int[indexes.size()];
+		for (int i = 0; i < columnIndexes.length; i++) {
+			columnIndexes[i] = indexes.get(i);
+		}
+		return new Plan(columnIndexes, matched.toArray(new Property[matched.size()]), null);
+	}
+
+	/**
+	 * Columns to read and the properties they are written to. Plans for ResultRow remember the column map they were
+	 * looked up for, so that consecutive rows of a result skip the lookup
+	 */
+	private final class Plan {
+
+		private final int[] columns;
+		private final Property[] targets;
+		private final HashMap<String, Integer> columnMap;
+
+		Plan(int[] columns, Property[] targets, HashMap<String, Integer> columnMap) {
+			this.columns = columns;
+			this.targets = targets;
+			this.columnMap = columnMap;
+		}
+
+		Plan(Plan plan, HashMap<String, Integer> columnMap) {
+			this(plan.columns, plan.targets, columnMap);
+		}
+
+		T map(ResultRow row) {
+			if (instantiator != null) {
+				Object target = instantiator.get();
+				for (int i = 0; i < columns.length; i++) {
+					String value = row.getValue(columns[i]);
+					if (value != null) {
+						targets[i].setter.accept(target, targets[i].fromString(value));
+					}
+				}
+				return type.cast(target);
+			}
+			Object[] args = defaultArgs.clone();
+			for (int i = 0; i < columns.length; i++) {
+				String value = row.getValue(columns[i]);
+				if (value != null) {
+					args[targets[i].position] = targets[i].fromString(value);
+				}
+			}
+			return construct(args);
+		}
+
+		T map(ResultSet rs) throws SQLException {
+			if (instantiator != null) {
+				Object target = instantiator.get();
+				for (int i = 0; i < columns.length; i++) {
+					Object value = targets[i].read(rs, columns[i] + 1);
+					if (value != null) {
+						targets[i].setter.accept(target, value);
+					}
+				}
+				return type.cast(target);
+			}
+			Object[] args = defaultArgs.clone();
+			for (int i = 0; i < columns.length; i++) {
+				Object value = targets[i].read(rs, columns[i] + 1);
+				if (value != null) {
+					args[targets[i].position] = value;
+				}
+			}
+			return construct(args);
+		}
+
+	}
+
+	private T construct(Object[] args) {
+		try {
+			return type.cast((Object) constructor.invokeExact(args));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new RuntimeException("Error creating " + type.getName(), e);
+		}
+	}
+
+	// PROPERTIES
+
+	/**
+	 * Property of the mapped class, written either by a setter or as a constructor argument
+	 */
+	private static final class Property {
+
+		private final Class<?> javaType;
+		private final ValueType type;
+		private final BiConsumer<Object, Object> setter;
+		private final int position;
+
+		Property(Class<?> javaType, BiConsumer<Object, Object> setter, int position) {
+			this.javaType = javaType;
+			this.type = ValueType.of(javaType);
+			this.setter = setter;
+			this.position = position;
+		}
+
+		Object fromString(String s) {
+			return type == ValueType.ENUM ? toEnum(s) : type.fromString(s);
+		}
+
+		Object read(ResultSet rs, int column) throws SQLException {
+			if (type == ValueType.ENUM) {
+				String s = rs.getString(column);
+				return s == null ? null : toEnum(s);
+			}
+			return type.read(rs, column);
+		}
+
+		Object getDefault() {
+			return javaType.isPrimitive() ? type.primitiveDefault : null;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private Object toEnum(String s) {
+			return Enum.valueOf((Class<? extends Enum>) javaType, s);
+		}
+
+	}
+
+	private void addSetters(Class<?> cls) {
+		for (Method m : cls.getMethods()) {
+			if (Modifier.isStatic(m.getModifiers()) || m.getParameterCount() != 1 || m.getName().length() < 4
+					|| !m.getName().startsWith("set")) {
+				continue;
+			}
+			Class<?> javaType = m.getParameterTypes()[0];
+			String name = normalize(m.getName().substring(3));
+			if (ValueType.of(javaType) != null && !properties.containsKey(name)) {
+				properties.put(name, new Property(javaType, toSetter(m), -1));
+			}
+		}
+		for (Class<?> c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+			for (Field f : c.getDeclaredFields()) {
+				int modifiers = f.getModifiers();
+				String name = normalize(f.getName());
+				if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || f.isSynthetic()
+						|| ValueType.of(f.getType()) == null || properties.containsKey(name)) {
+					continue;
+				}
+				properties.put(name, new Property(f.getType(), toSetter(f), -1));
+			}
+		}
+	}
+
+	private Object[] addParameters(Constructor<?> ctor, String[] names) {
+		Class<?>[] types = ctor.getParameterTypes();
+		Object[] defaults = new Object[types.length];
+		for (int i = 0; i < types.length; i++) {
+			if (ValueType.of(types[i]) == null) {
+				throw new RuntimeException("Unsupported type of constructor parameter " + names[i] + " of "
+						+ type.getName() + ": " + types[i].getName());
+			}
+			Property property = new Property(types[i], null, i);
+			properties.putIfAbsent(normalize(names[i]), property);
+			defaults[i] = property.getDefault();
+		}
+		return defaults;
+	}
+
+	/**
+	 * Setter bound with LambdaMetafactory, falling back to a method handle for classes the lambda cannot link against,
+	 * e.g. those not visible from this class loader
+	 */
+	@SuppressWarnings("unchecked")
+	private static BiConsumer<Object, Object> toSetter(Method m) {
+		try {
+			MethodHandle handle = LOOKUP.unreflect(m);
+			Class<?> parameterType = ValueType.box(m.getParameterTypes()[0]);
+			if (Modifier.isPublic(m.getDeclaringClass().getModifiers()) && isVisible(m.getDeclaringClass())
+					&& isVisible(parameterType)) {
+				try {
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+							MethodType.methodType(BiConsumer.class), MethodType.methodType(void.class, Object.class,
+									Object.class),
+							handle, MethodType.methodType(void.class, m.getDeclaringClass(), parameterType));
+					return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+				} catch (Throwable e) {
+					// Fall back to the method handle
+				}
+			}
+			return toSetter(handle.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException("Cannot access setter: " + m, e);
+		}
+	}
+
+	private static BiConsumer<Object, Object> toSetter(Field f) {
+		try {
+			f.setAccessible(true);
+			MethodHandle handle = LOOKUP.unreflectSetter(f);
+			return toSetter(handle.asType(MethodType.methodType(void.class, Object.class, Object.class)));
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new RuntimeException("Cannot access field: " + f, e);
+		}
+	}
+
+	private static BiConsumer<Object, Object> toSetter(MethodHandle handle) {
+		return (target, value) -> {
+			try {
+				handle.invokeExact(target, value);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	/**
+	 * Whether a class resolves to itself from the class loader of RowMapper, where LambdaMetafactory defines the
+	 * lambdas it spins. Lambdas over other classes link lazily and would only fail on first use
+	 */
+	private static boolean isVisible(Class<?> cls) {
+		if (cls.isPrimitive()) {
+			return true;
+		}
+		try {
+			return Class.forName(cls.getName(), false, RowMapper.class.getClassLoader()) == cls;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Supplier<Object> getInstantiator(Class<?> cls) {
+		Constructor<?> ctor;
+		try {
+			ctor = cls.getDeclaredConstructor();
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+		try {
+			if (Modifier.isPublic(ctor.getModifiers()) && Modifier.isPublic(cls.getModifiers()) && isVisible(cls)) {
+				try {
+					MethodHandle handle = LOOKUP.unreflectConstructor(ctor);
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+							MethodType.methodType(Object.class), handle, MethodType.methodType(cls));
+					return (Supplier<Object>) site.getTarget().invokeExact();
+				} catch (Throwable e) {
+					// Fall back to the method handle
+				}
+			}
+			ctor.setAccessible(true);
+			MethodHandle handle = LOOKUP.unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+			return () -> {
+				try {
+					return (Object) handle.invokeExact();
+				} catch (RuntimeException | Error e) {
+					throw e;
+				} catch (Throwable e) {
+					throw new RuntimeException("Error creating " + cls.getName(), e);
+				}
+			};
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new RuntimeException("Cannot access constructor of " + cls.getName(), e);
+		}
+	}
+
+	private static MethodHandle toSpreadHandle(Constructor<?> ctor) {
+		try {
+			ctor.setAccessible(true);
+			return LOOKUP.unreflectConstructor(ctor).asSpreader(Object[].class, ctor.getParameterCount())
+					.asType(MethodType.methodType(Object.class, Object[].class));
+		} catch (IllegalAccessException | RuntimeException e) {
+			throw new RuntimeException("Cannot access constructor: " + ctor, e);
+		}
+	}
+
+	/**
+	 * Canonical constructor of a record, or else the constructor with the most parameters
+	 */
+	private static Constructor<?> getConstructor(Class<?> cls) {
+		String[] components = getRecordComponents(cls);
+		Constructor<?> best = null;
+		for (Constructor<?> ctor : cls.getDeclaredConstructors()) {
+			if (components != null) {
+				if (ctor.getParameterCount() == components.length / 2 && isCanonical(ctor, components)) {
+					return ctor;
+				}
+			} else if (best == null || ctor.getParameterCount() > best.getParameterCount()) {
+				best = ctor;
+			}
+		}
+		if (best == null) {
+			throw new RuntimeException("No constructor to map to: " + cls.getName());
+		}
+		return best;
+	}
+
+	private static boolean isCanonical(Constructor<?> ctor, String[] components) {
+		Class<?>[] types = ctor.getParameterTypes();
+		for (int i = 0; i < types.length; i++) {
+			if (!types[i].getName().equals(components[2 * i + 1])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] getParameterNames(Class<?> cls, Constructor<?> ctor) {
+		String[] components = getRecordComponents(cls);
+		String[] names = new String[ctor.getParameterCount()];
+		Parameter[] parameters = ctor.getParameters();
+		for (int i = 0; i < names.length; i++) {
+			if (components != null) {
+				names[i] = components[2 * i];
+			} else if (parameters[i].isNamePresent()) {
+				names[i] = parameters[i].getName();
+			} else {
+				throw new RuntimeException("Cannot map to " + cls.getName()
+						+ ": it needs a no-argument constructor, or must be compiled with -parameters");
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * Names and type names of the components of a record, alternating, or null if the class is not a record. Read
+	 * reflectively, as records need Java 16
+	 */
+	private static String[] getRecordComponents(Class<?> cls) {
+		try {
+			if (!(Boolean) Class.class.getMethod("isRecord").invoke(cls)) {
+				return null;
+			}
+			Object[] components = (Object[]) Class.class.getMethod("getRecordComponents").invoke(cls);
+			String[] result = new String[components.length * 2];
+			for (int i = 0; i < components.length; i++) {
+				Class<?> componentClass = components[i].getClass();
+				result[2 * i] = (String) componentClass.getMethod("getName").invoke(components[i]);
+				result[2 * i + 1] = ((Class<?>) componentClass.getMethod("getType").invoke(components[i])).getName();
+			}
+			return result;
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static String normalize(String name) {
+		return name.replace("_", "").toLowerCase(Locale.ROOT);
+	}
+
+	// VALUE TYPES
+
+	/**
+	 * Supported property types, converting from the text of a ResultRow and reading from a ResultSet. Enums are
+	 * converted by {@link Property}, which knows the enum class
+	 */
+	private enum ValueType {
+
+		STRING(String.class, null), //
+		INT(Integer.class, 0), //
+		LONG(Long.class, 0L), //
+		DOUBLE(Double.class, 0d), //
+		FLOAT(Float.class, 0f), //
+		SHORT(Short.class, (short) 0), //
+		BYTE(Byte.class, (byte) 0), //
+		BOOLEAN(Boolean.class, false), //
+		BIG_DECIMAL(BigDecimal.class, null), //
+		BIG_INTEGER(BigInteger.class, null), //
+		LOCAL_DATE(LocalDate.class, null), //
+		LOCAL_DATE_TIME(LocalDateTime.class, null), //
+		YEAR_MONTH(YearMonth.class, null), //
+		DATE(Date.class, null), //
+		ENUM(Enum.class, null);
+
+		private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<>();
+
+		static {
+			PRIMITIVES.put(int.class, Integer.class);
+			PRIMITIVES.put(long.class, Long.class);
+			PRIMITIVES.put(double.class, Double.class);
+			PRIMITIVES.put(float.class, Float.class);
+			PRIMITIVES.put(short.class, Short.class);
+			PRIMITIVES.put(byte.class, Byte.class);
+			PRIMITIVES.put(boolean.class, Boolean.class);
+		}
+
+		private final Class<?> javaType;
+		private final Object primitiveDefault;
+
+		ValueType(Class<?> javaType, Object primitiveDefault) {
+			this.javaType = javaType;
+			this.primitiveDefault = primitiveDefault;
+		}
+
+		static Class<?> box(Class<?> cls) {
+			Class<?> boxed = PRIMITIVES.get(cls);
+			return boxed == null ? cls : boxed;
+		}
+
+		/**
+		 * Value type of a property type, or null if not supported
+		 */
+		static ValueType of(Class<?> cls) {
+			if (cls.isEnum()) {
+				return ENUM;
+			}
+			Class<?> boxed = box(cls);
+			for (ValueType t : values()) {
+				if (t.javaType == boxed) {
+					return t;
+				}
+			}
+			return null;
+		}
+
+		Object fromString(String s) {
+			switch (this) {
+			case STRING:
+				return s;
+			case INT:
+				return Integer.valueOf(s);
+			case LONG:
+				return Long.valueOf(s);
+			case DOUBLE:
+				return Double.valueOf(s);
+			case FLOAT:
+				return Float.valueOf(s);
+			case SHORT:
+				return Short.valueOf(s);
+			case BYTE:
+				return Byte.valueOf(s);
+			case BOOLEAN:
+				return "1".equals(s) || "true".equalsIgnoreCase(s);
+			case BIG_DECIMAL:
+				return new BigDecimal(s);
+			case BIG_INTEGER:
+				return new BigInteger(s);
+			case LOCAL_DATE:
+				return LocalDate.parse(s.length() > 10 ? s.substring(0, 10) : s);
+			case LOCAL_DATE_TIME:
+				return LocalDateTime.parse(s.length() == 10 ? s + "T00:00" : s.replace(' ', 'T'));
+			case YEAR_MONTH:
+				return YearMonth.parse(s.length() > 7 ? s.substring(0, 7) : s);
+			case DATE:
+				return Timestamp.valueOf(s.length() == 10 ? s + " 00:00:00" : s);
+			default:
+				throw new IllegalStateException();
+			}
+		}
+
+		Object read(ResultSet rs, int column) throws SQLException {
+			Object value;
+			switch (this) {
+			case STRING:
+				return rs.getString(column);
+			case INT:
+				value = rs.getInt(column);
+				break;
+			case LONG:
+				value = rs.getLong(column);
+				break;
+			case DOUBLE:
+				value = rs.getDouble(column);
+				break;
+			case FLOAT:
+				value = rs.getFloat(column);
+				break;
+			case SHORT:
+				value = rs.getShort(column);
+				break;
+			case BYTE:
+				value = rs.getByte(column);
+				break;
+			case BOOLEAN:
+				value = rs.getBoolean(column);
+				break;
+			case BIG_DECIMAL:
+				return rs.getBigDecimal(column);
+			case BIG_INTEGER:
+				BigDecimal decimal = rs.getBigDecimal(column);
+				return decimal == null ? null : decimal.toBigInteger();
+			case LOCAL_DATE:
+				java.sql.Date date = rs.getDate(column);
+				return date == null ? null : date.toLocalDate();
+			case LOCAL_DATE_TIME:
+				Timestamp timestamp = rs.getTimestamp(column);
+				return timestamp == null ? null : timestamp.toLocalDateTime();
+			case DATE:
+				return rs.getTimestamp(column);
+			default:
+				String s = rs.getString(column);
+				return s == null ? null : fromString(s);
+			}
+			return rs.wasNull() ? null : value;
+		}
+
+	}
+
+}
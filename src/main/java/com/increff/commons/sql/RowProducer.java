@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.IOException;
+
+/**
+ * Generates rows for {@link DbQuery#importRows(String, String[], RowProducer)}. The producer runs on a pipeline
+ * thread while the rows it writes are loaded into the database
+ */
+public interface RowProducer {
+
+	/**
+	 * Write all rows to the writer, in the column order given to importRows
+	 * @param writer Writer encoding rows for LOAD DATA
+	 */
+	void produce(TsvWriter writer) throws IOException, DbException;
+
+}
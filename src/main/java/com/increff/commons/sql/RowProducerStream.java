@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stream of the rows written by a {@link RowProducer}, encoded for LOAD DATA. The producer runs on its own thread and
+ * writes into a pipe as the stream is read. A failed producer must not look like the clean end of data to the reader,
+ * so its failure is thrown as an IOException at the end of the stream
+ */
+class RowProducerStream extends FilterInputStream {
+
+	private final Thread producerThread;
+	private final AtomicReference<Exception> failure;
+
+	private RowProducerStream(InputStream in, Thread producerThread, AtomicReference<Exception> failure) {
+		super(in);
+		this.producerThread = producerThread;
+		this.failure = failure;
+	}
+
+	/**
+	 * Start a producer on a new daemon thread
+	 * @param producer Producer writing the rows
+	 * @param threadName Name of the producer thread
+	 * @return Stream of the rows written by the producer
+	 */
+	static RowProducerStream start(RowProducer producer, String threadName) throws IOException {
+		Pipe pipe = Pipe.open();
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread thread = new Thread(() -> {
+			TsvWriter writer = new TsvWriter(pipe.sink(), TsvWriter.LOAD_DATA_NULL);
+			try {
+				producer.produce(writer);
+				writer.flush();
+			} catch (Exception e) {
+				failure.set(e);
+			} finally {
+				JdbcUtil.closeQuietly(writer);
+			}
+		}, threadName);
+		thread.setDaemon(true);
+		RowProducerStream stream = new RowProducerStream(Channels.newInputStream(pipe.source()), thread, failure);
+		thread.start();
+		return stream;
+	}
+
+	/**
+	 * @return Exception thrown by the producer, or null if it has not failed
+	 */
+	Exception getFailure() {
+		return failure.get();
+	}
+
+	@Override
+	public int read() throws IOException {
+		return checkEnd(super.read());
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		return checkEnd(super.read(b, off, len));
+	}
+
+	/**
+	 * Close the pipe, which makes a producer still writing fail, and wait for the producer thread to end
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			super.close();
+		} finally {
+			try {
+				producerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private int checkEnd(int n) throws IOException {
+		if (n < 0 && failure.get() != null) {
+			throw new IOException("Row producer failed", failure.get());
+		}
+		return n;
+	}
+
+}
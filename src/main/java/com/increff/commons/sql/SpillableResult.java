@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Query result with random access to its rows which is held in memory up to a byte threshold and spilled to a file
+ * beyond it. Spilled rows are stored in a compact binary format, each value as its length followed by its UTF-8
+ * bytes, with a second file holding the offset of every row. Both files are read back through memory-mapped buffers,
+ * so rows are decoded only when accessed and do not count against the heap. The result must be closed once done,
+ * which deletes the files
+ */
+public class SpillableResult implements Iterable<ResultRow>, Closeable {
+
+	// Mapped segments are at most 1GB, data segments start at a row so that no row spans two of them
+	private static final int SEGMENT_SIZE = 1 << 30;
+	private static final int INDEX_SEGMENT_SHIFT = 30;
+	// Rough heap size of a row array, a reference and a String, excluding its characters
+	private static final int ROW_OVERHEAD = 16;
+	private static final int REFERENCE_SIZE = 4;
+	private static final int STRING_OVERHEAD = 40;
+
+	private final HashMap<String, Integer> columns;
+	private final int columnCount;
+	private final long maxMemoryBytes;
+	private final File spillDir;
+	private final int segmentSize;
+
+	private List<String[]> rows = new ArrayList<>();
+	private long memoryBytes;
+	private int size;
+
+	private File dataFile;
+	private File indexFile;
+	private OutputStream dataOut;
+	private DataOutputStream indexOut;
+	private long dataLength;
+	private long segmentStart;
+	private long[] segmentStarts = new long[1];
+	private int segmentCount;
+	private ByteBuffer[] dataSegments;
+	private ByteBuffer[] indexSegments;
+
+	SpillableResult(HashMap<String, Integer> columns, int columnCount, long maxMemoryBytes, File spillDir,
+			int segmentSize) {
+		this.columns = columns;
+		this.columnCount = columnCount;
+		this.maxMemoryBytes = maxMemoryBytes;
+		this.spillDir = spillDir;
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * Read all rows of a result set, spilling them to a file once they take more than maxMemoryBytes
+	 * @param rs Result set positioned before the first row
+	 * @param maxMemoryBytes Estimated heap size of the rows above which they are spilled
+	 * @param spillDir Directory of the spill files
+	 * @return Result, which must be closed
+	 */
+	protected static SpillableResult read(ResultSet rs, long maxMemoryBytes, File spillDir)
+			throws SQLException, IOException {
+		int columnCount = rs.getMetaData().getColumnCount();
+		SpillableResult result = new SpillableResult(JdbcUtil.getColumMap(rs), columnCount, maxMemoryBytes,
+				spillDir, SEGMENT_SIZE);
+		try {
+			while (rs.next()) {
+				String[] tokens = new String[columnCount];
+				for (int i = 0; i < columnCount; i++) {
+					tokens[i] = rs.getString(i + 1);
+				}
+				result.add(tokens);
+			}
+			result.finish();
+			return result;
+		} catch (SQLException | IOException | RuntimeException e) {
+			result.close();
+			throw e;
+		}
+	}
+
+	void add(String[] tokens) throws IOException {
+		size++;
+		if (dataOut != null) {
+			write(tokens);
+			return;
+		}
+		rows.add(tokens);
+		memoryBytes += ROW_OVERHEAD + REFERENCE_SIZE * tokens.length;
+		for (String token : tokens) {
+			memoryBytes += token == null ? 0 : STRING_OVERHEAD + 2L * token.length();
+		}
+		if (memoryBytes > maxMemoryBytes) {
+			spill();
+		}
+	}
+
+	private void spill() throws IOException {
+		dataFile = File.createTempFile("dbquery", ".spill", spillDir);
+		indexFile = File.createTempFile("dbquery", ".spill.idx", spillDir);
+		dataOut = new BufferedOutputStream(new FileOutputStream(dataFile), 64 * 1024);
+		indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 64 * 1024));
+		for (String[] tokens : rows) {
+			write(tokens);
+		}
+		rows = null;
+		memoryBytes = 0;
+	}
+
+	private void write(String[] tokens) throws IOException {
+		byte[][] values = new byte[tokens.length][];
+		long rowLength = 0;
+		for (int i = 0; i < tokens.length; i++) {
+			values[i] = tokens[i] == null ? null : tokens[i].getBytes(StandardCharsets.UTF_8);
+			int length = values[i] == null ? 0 : values[i].length + 1;
+			rowLength += getVarIntLength(length) + length - (length == 0 ? 0 : 1);
+		}
+		if (rowLength > segmentSize) {
+			throw new IOException("Row of " + rowLength + " bytes is too large to spill");
+		}
+		if (dataLength + rowLength - segmentStart > segmentSize) {
+			segmentStart = dataLength;
+			addSegmentStart(segmentStart);
+		}
+		indexOut.writeLong(dataLength);
+		for (byte[] value : values) {
+			// Lengths are stored plus one so that 0 marks a null value
+			writeVarInt(value == null ? 0 : value.length + 1);
+			if (value != null) {
+				dataOut.write(value);
+			}
+		}
+		dataLength += rowLength;
+	}
+
+	private void addSegmentStart(long start) {
+		if (segmentCount + 1 == segmentStarts.length) {
+			segmentStarts = Arrays.copyOf(segmentStarts, segmentStarts.length * 2);
+		}
+		segmentStarts[++segmentCount] = start;
+	}
+
+	void finish() throws IOException {
+		if (dataOut == null) {
+			return;
+		}
+		dataOut.close();
+		indexOut.close();
+		dataOut = null;
+		indexOut = null;
+		addSegmentStart(dataLength);
+		dataSegments = new ByteBuffer[segmentCount];
+		indexSegments = new ByteBuffer[(int) (((long) size * 8 + SEGMENT_SIZE - 1) >>> INDEX_SEGMENT_SHIFT)];
+		try (FileChannel data = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+				FileChannel index = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+			for (int i = 0; i < segmentCount; i++) {
+				dataSegments[i] = map(data, segmentStarts[i], segmentStarts[i + 1] - segmentStarts[i]);
+			}
+			long indexLength = (long) size * 8;
+			for (int i = 0; i < indexSegments.length; i++) {
+				long start = (long) i << INDEX_SEGMENT_SHIFT;
+				indexSegments[i] = map(index, start, Math.min(SEGMENT_SIZE, indexLength - start));
+			}
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+	}
+
+	private void writeVarInt(int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			dataOut.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dataOut.write(value);
+	}
+
+	private static int getVarIntLength(int value) {
+		int length = 1;
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			length++;
+		}
+		return length;
+	}
+
+	private static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	/* META INFORMATION */
+
+	public int size() {
+		return size;
+	}
+
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * @return Mapping of column names to 0-based index, shared by all rows
+	 */
+	public HashMap<String, Integer> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return Whether the rows have been spilled to a file
+	 */
+	public boolean isSpilled() {
+		return dataFile != null;
+	}
+
+	/**
+	 * @return Size of the spilled rows in bytes, 0 if not spilled
+	 */
+	public long getSpilledBytes() {
+		return dataLength;
+	}
+
+	/* ROW ACCESS */
+
+	/**
+	 * Row by number, decoded from the spill file if spilled. Rows read from a spill file are new objects on each call
+	 * @param row 0-based row number
+	 * @return Row with all accessors of ResultRow
+	 */
+	public ResultRow get(int row) {
+		ResultRow rr = new ResultRow(columns);
+		rr.setTokens(getTokens(row));
+		rr.setRow(row);
+		return rr;
+	}
+
+	/**
+	 * Single value of a row, decoding only that value if spilled
+	 * @param row 0-based row number
+	 * @param col 0-based column index
+	 */
+	public String getValue(int row, int col) {
+		if (col < 0 || col >= columnCount) {
+			throw new IndexOutOfBoundsException("Column: " + col);
+		}
+		if (!isSpilled()) {
+			return getRow(row)[col];
+		}
+		ByteBuffer buffer = seek(row);
+		for (int i = 0; i < col; i++) {
+			int length = readVarInt(buffer);
+			buffer.position(buffer.position() + Math.max(length - 1, 0));
+		}
+		return readValue(buffer);
+	}
+
+	public String getValue(int row, String col) {
+		Integer i = columns.get(col);
+		if (i == null) {
+			throw new RuntimeException("Invalid column:" + col);
+		}
+		return getValue(row, i);
+	}
+
+	private String[] getTokens(int row) {
+		if (!isSpilled()) {
+			return getRow(row).clone();
+		}
+		ByteBuffer buffer = seek(row);
+		String[] tokens = new String[columnCount];
+		for (int i = 0; i < columnCount; i++) {
+			tokens[i] = readValue(buffer);
+		}
+		return tokens;
+	}
+
+	private String[] getRow(int row) {
+		checkRow(row);
+		return rows.get(row);
+	}
+
+	private void checkRow(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", size: " + size);
+		}
+		if (isSpilled() && dataSegments == null) {
+			throw new IllegalStateException("Result is closed");
+		}
+	}
+
+	/**
+	 * Buffer positioned at the start of a row. Buffers are duplicated so that rows can be read concurrently
+	 */
+	private ByteBuffer seek(int row) {
+		checkRow(row);
+		long indexPosition = (long) row * 8;
+		long offset = indexSegments[(int) (indexPosition >>> INDEX_SEGMENT_SHIFT)]
+				.getLong((int) (indexPosition & (SEGMENT_SIZE - 1)));
+		int segment = Arrays.binarySearch(segmentStarts, 0, segmentCount, offset);
+		if (segment < 0) {
+			segment = -segment - 2;
+		}
+		ByteBuffer buffer = dataSegments[segment].duplicate();
+		buffer.position((int) (offset - segmentStarts[segment]));
+		return buffer;
+	}
+
+	private static String readValue(ByteBuffer buffer) {
+		int length = readVarInt(buffer) - 1;
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public Iterator<ResultRow> iterator() {
+		return new Iterator<ResultRow>() {
+
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public ResultRow next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return get(next++);
+			}
+		};
+	}
+
+	/**
+	 * Release the mapped buffers and delete the spill files. Mapped files are unmapped when the buffers are garbage
+	 * collected, until which some operating systems, e.g. Windows, may not be able to delete them
+	 */
+	@Override
+	public void close() {
+		dataSegments = null;
+		indexSegments = null;
+		JdbcUtil.closeQuietly(dataOut);
+		JdbcUtil.closeQuietly(indexOut);
+		dataOut = null;
+		indexOut = null;
+		if (dataFile != null) {
+			dataFile.delete();
+			indexFile.delete();
+		}
+	}
+
+}
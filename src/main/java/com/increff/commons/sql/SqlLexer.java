@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an SQL script into statements and removes comments in a single pass over a Reader. Quoted strings,
+ * quoted identifiers and backslash escapes are honoured, so a ; or -- inside a literal is kept. Removed comments are
+ * #, -- followed by whitespace and // up to the end of the line, and /* *&#47; blocks, which are replaced by a
+ * space. MySQL executable comments and optimizer hints (/*! and /*+) are kept. The client command DELIMITER changes
+ * the statement delimiter
+ */
+public class SqlLexer {
+
+	private static final String DEFAULT_DELIMITER = ";";
+	private static final String DELIMITER_COMMAND = "DELIMITER";
+
+	private Reader reader;
+	private char[] buf = new char[8192];
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private String delimiter = DEFAULT_DELIMITER;
+
+	/**
+	 * @param reader Script to read. The reader is not closed
+	 */
+	public SqlLexer(Reader reader) {
+		this.reader = reader;
+	}
+
+	/**
+	 * Split a script into its statements
+	 * @param script SQL script
+	 * @return Non-empty statements with comments removed, without delimiters
+	 */
+	public static List<String> split(String script) {
+		SqlLexer lexer = new SqlLexer(new StringReader(script));
+		List<String> statements = new ArrayList<>();
+		try {
+			String statement;
+			while ((statement = lexer.nextStatement()) != null) {
+				statements.add(statement);
+			}
+		} catch (IOException e) {
+			// Not thrown by StringReader
+			throw new RuntimeException(e);
+		}
+		return statements;
+	}
+
+	/**
+	 * Remove comments, keeping everything else including line breaks and delimiters
+	 * @param s SQL text
+	 * @return SQL text without comments
+	 */
+	public static String stripComments(String s) {
+		try {
+			return new SqlLexer(new StringReader(s)).scan(false);
+		} catch (IOException e) {
+			// Not thrown by StringReader
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read the next statement
+	 * @return Next non-empty statement with comments removed and surrounding whitespace trimmed, or null at the end
+	 *         of the script
+	 */
+	public String nextStatement() throws IOException {
+		String statement;
+		do {
+			statement = scan(true);
+		} while (statement != null && statement.isEmpty());
+		return statement;
+	}
+
+	/**
+	 * Scan up to the next delimiter when splitting, or to the end of input otherwise
+	 * @return Trimmed statement when splitting, untrimmed text otherwise, or null at the end of input
+	 */
+	private String scan(boolean split) throws IOException {
+		if (peek(0) < 0) {
+			return split ? null : "";
+		}
+		StringBuilder sb = new StringBuilder();
+		boolean blank = true;
+		while (true) {
+			int c = peek(0);
+			if (c < 0) {
+				break;
+			}
+			if (split && blank && (c == 'D' || c == 'd') && startsWith(DELIMITER_COMMAND, true)
+					&& Character.isWhitespace(peek(DELIMITER_COMMAND.length()))) {
+				pos += DELIMITER_COMMAND.length();
+				String newDelimiter = readLine().trim();
+				if (!newDelimiter.isEmpty()) {
+					delimiter = newDelimiter;
+				}
+				sb.setLength(0);
+				continue;
+			}
+			if (c == '\'' || c == '"' || c == '`') {
+				copyQuoted(sb, (char) c);
+				blank = false;
+			} else if (c == '#' || (c == '-' && peek(1) == '-' && isSpaceOrEnd(peek(2)))
+					|| (c == '/' && peek(1) == '/')) {
+				readLine();
+			} else if (c == '/' && peek(1) == '*') {
+				int next = peek(2);
+				if (next == '!' || next == '+') {
+					copyBlockComment(sb);
+					blank = false;
+				} else {
+					skipBlockComment();
+					sb.append(' ');
+				}
+			} else if (split && startsWith(delimiter, false)) {
+				pos += delimiter.length();
+				return sb.toString().trim();
+			} else {
+				sb.append((char) c);
+				pos++;
+				blank = blank && Character.isWhitespace(c);
+			}
+		}
+		return split ? sb.toString().trim() : sb.toString();
+	}
+
+	private void copyQuoted(StringBuilder sb, char quote) throws IOException {
+		sb.append(quote);
+		pos++;
+		while (true) {
+			int c = peek(0);
+			if (c < 0) {
+				return;
+			}
+			sb.append((char) c);
+			pos++;
+			if (c == '\\' && quote != '`') {
+				int escaped = peek(0);
+				if (escaped >= 0) {
+					sb.append((char) escaped);
+					pos++;
+				}
+			} else if (c == quote) {
+				return;
+			}
+		}
+	}
+
+	private void copyBlockComment(StringBuilder sb) throws IOException {
+		while (true) {
+			int c = peek(0);
+			if (c < 0) {
+				return;
+			}
+			if (c == '*' && peek(1) == '/') {
+				sb.append("*/");
+				pos += 2;
+				return;
+			}
+			sb.append((char) c);
+			pos++;
+		}
+	}
+
+	private void skipBlockComment() throws IOException {
+		pos += 2;
+		while (true) {
+			int c = peek(0);
+			if (c < 0) {
+				return;
+			}
+			if (c == '*' && peek(1) == '/') {
+				pos += 2;
+				return;
+			}
+			pos++;
+		}
+	}
+
+	/**
+	 * MySQL only treats -- as a comment when followed by whitespace, so 5--1 is an expression
+	 */
+	private static boolean isSpaceOrEnd(int c) {
+		return c < 0 || Character.isWhitespace(c);
+	}
+
+	/**
+	 * Consume input up to, but excluding, the end of the line
+	 */
+	private String readLine() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		while (true) {
+			int c = peek(0);
+			if (c < 0 || c == '\n' || c == '\r') {
+				return sb.toString();
+			}
+			sb.append((char) c);
+			pos++;
+		}
+	}
+
+	private boolean startsWith(String s, boolean ignoreCase) throws IOException {
+		if (!fill(s.length())) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); i++) {
+			char c = buf[pos + i];
+			char expected = s.charAt(i);
+			if (c != expected && !(ignoreCase && Character.toUpperCase(c) == Character.toUpperCase(expected))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Character at the given offset from the current position, or -1 past the end of input
+	 */
+	private int peek(int offset) throws IOException {
+		return fill(offset + 1) ? buf[pos + offset] : -1;
+	}
+
+	/**
+	 * Make at least n characters available from the current position, if input has that many left
+	 */
+	private boolean fill(int n) throws IOException {
+		if (limit - pos >= n) {
+			return true;
+		}
+		System.arraycopy(buf, pos, buf, 0, limit - pos);
+		limit -= pos;
+		pos = 0;
+		if (n > buf.length) {
+			char[] bigger = new char[n];
+			System.arraycopy(buf, 0, bigger, 0, limit);
+			buf = bigger;
+		}
+		while (limit < n && !eof) {
+			int read = reader.read(buf, limit, buf.length - limit);
+			if (read < 0) {
+				eof = true;
+			} else {
+				limit += read;
+			}
+		}
+		return limit - pos >= n;
+	}
+
+}
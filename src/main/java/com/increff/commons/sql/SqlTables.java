@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables read or written by an SQL statement, for invalidating cached results. Tables are found by keyword
+ * (FROM, JOIN, INTO, UPDATE, TABLE, ...) rather than by a full parse, so more tables may be reported than are
+ * actually touched, which only invalidates more than needed. Table names are reported in lower case, without schema
+ */
+final class SqlTables {
+
+	// Statements which do not change any table
+	private static final Set<String> NO_WRITE = new HashSet<>(Arrays.asList("SELECT", "SHOW", "DESCRIBE",
+			"DESC", "EXPLAIN", "SET", "USE", "BEGIN", "START", "SAVEPOINT", "RELEASE", "DO", "HELP"));
+	// Statements changing the tables named after the keywords below
+	private static final Set<String> TABLE_WRITE = new HashSet<>(Arrays.asList("INSERT", "REPLACE", "UPDATE",
+			"DELETE", "TRUNCATE", "LOAD", "ALTER", "DROP", "CREATE", "RENAME", "OPTIMIZE", "ANALYZE", "REPAIR"));
+	// Statements which may follow the common table expressions of a WITH clause
+	private static final Set<String> WITH_STATEMENTS = new HashSet<>(Arrays.asList("SELECT", "INSERT", "REPLACE",
+			"UPDATE", "DELETE"));
+	private static final Set<String> TABLE_KEYWORDS = new HashSet<>(Arrays.asList("FROM", "JOIN", "INTO", "UPDATE",
+			"TABLE", "TABLES", "TRUNCATE", "TO"));
+	// Words which end a table reference, so they are not taken as an alias
+	private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList("WHERE", "JOIN", "INNER", "LEFT",
+			"RIGHT", "CROSS", "OUTER", "NATURAL", "STRAIGHT_JOIN", "ON", "USING", "GROUP", "ORDER", "LIMIT", "HAVING",
+			"UNION", "WINDOW", "FOR", "LOCK", "INTO", "SET", "PARTITION", "USE", "IGNORE", "FORCE", "VALUES", "SELECT",
+			"AS", "TO", "READ", "WRITE"));
+
+	private SqlTables() {
+	}
+
+	/**
+	 * @param sql Query
+	 * @return Tables read by a SELECT, or null if the statement is not a SELECT and might read any table
+	 */
+	static Set<String> getReadTables(String sql) {
+		List<String> tokens = tokenize(sql);
+		if (tokens.isEmpty() || !(isWord(tokens.get(0), "SELECT") || isWord(tokens.get(0), "WITH")
+				|| tokens.get(0).equals("("))) {
+			return null;
+		}
+		if (isWord(tokens.get(0), "WITH")) {
+			int main = getWithStatement(tokens);
+			if (main < 0 || !isWord(tokens.get(main), "SELECT")) {
+				return null;
+			}
+		}
+		return findTables(tokens);
+	}
+
+	/**
+	 * @param sql Statement
+	 * @return Tables changed by the statement, empty if it changes none, or null if it might change any table
+	 */
+	static Set<String> getWriteTables(String sql) {
+		List<String> tokens = tokenize(sql);
+		if (tokens.isEmpty()) {
+			return Collections.emptySet();
+		}
+		String first = tokens.get(0).toUpperCase(Locale.ROOT);
+		if (first.equals("WITH")) {
+			// MySQL 8 allows WITH ... UPDATE and WITH ... DELETE
+			int main = getWithStatement(tokens);
+			if (main < 0) {
+				return null;
+			}
+			tokens = tokens.subList(main, tokens.size());
+			first = tokens.get(0).toUpperCase(Locale.ROOT);
+		}
+		if (NO_WRITE.contains(first)) {
+			return Collections.emptySet();
+		}
+		if (!TABLE_WRITE.contains(first)) {
+			return null;
+		}
+		Set<String> tables = findTables(tokens);
+		return tables.isEmpty() ? null : tables;
+	}
+
+	/**
+	 * Index of the statement following the common table expressions of a WITH clause, i.e. the first SELECT, INSERT,
+	 * REPLACE, UPDATE or DELETE outside parentheses, or -1 if there is none
+	 */
+	private static int getWithStatement(List<String> tokens) {
+		int depth = 0;
+		for (int i = 1; i < tokens.size(); i++) {
+			String token = tokens.get(i);
+			if (token.equals("(")) {
+				depth++;
+			} else if (token.equals(")")) {
+				depth--;
+			} else if (depth == 0 && WITH_STATEMENTS.contains(token.toUpperCase(Locale.ROOT))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static Set<String> findTables(List<String> tokens) {
+		Set<String> tables = new LinkedHashSet<>();
+		int i = 0;
+		while (i < tokens.size()) {
+			String keyword = tokens.get(i++).toUpperCase(Locale.ROOT);
+			if (!TABLE_KEYWORDS.contains(keyword) || (keyword.equals("UPDATE") && i > 1)) {
+				continue;
+			}
+			// Table list, e.g. FROM a x, b AS y
+			while (true) {
+				while (i < tokens.size() && TABLE_KEYWORDS.contains(tokens.get(i).toUpperCase(Locale.ROOT))) {
+					i++;
+				}
+				i = skipWords(tokens, i, "LOW_PRIORITY", "CONCURRENT", "LOCAL", "IGNORE", "QUICK", "IF", "NOT",
+						"EXISTS", "ONLY", "TEMPORARY");
+				if (i >= tokens.size() || !isIdentifier(tokens.get(i))) {
+					break;
+				}
+				String table = tokens.get(i++);
+				while (i + 1 < tokens.size() && tokens.get(i).equals(".") && isIdentifier(tokens.get(i + 1))) {
+					table = tokens.get(i + 1);
+					i += 2;
+				}
+				tables.add(normalize(table));
+				if (i < tokens.size() && isWord(tokens.get(i), "AS")) {
+					i++;
+				}
+				if (i < tokens.size() && isIdentifier(tokens.get(i))
+						&& !CLAUSE_KEYWORDS.contains(tokens.get(i).toUpperCase(Locale.ROOT))) {
+					i++;
+				}
+				if (i >= tokens.size() || !tokens.get(i).equals(",")) {
+					break;
+				}
+				i++;
+			}
+		}
+		return tables;
+	}
+
+	/**
+	 * @param table Table name, optionally with schema and quotes
+	 * @return Table name in lower case, without schema and quotes
+	 */
+	static String normalize(String table) {
+		String name = table.replace("`", "");
+		return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+	}
+
+	private static int skipWords(List<String> tokens, int i, String... words) {
+		while (i < tokens.size()) {
+			boolean skipped = false;
+			for (String word : words) {
+				if (isWord(tokens.get(i), word)) {
+					skipped = true;
+					break;
+				}
+			}
+			if (!skipped) {
+				return i;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isWord(String token, String word) {
+		return token.equalsIgnoreCase(word);
+	}
+
+	private static boolean isIdentifier(String token) {
+		char c = token.charAt(0);
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+
+	/**
+	 * Split SQL into words, quoted identifiers (without quotes) and single punctuation characters, dropping comments
+	 * and string literals
+	 */
+	static List<String> tokenize(String sql) {
+		String s = SqlLexer.stripComments(sql);
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while (i < s.length()) {
+			char c = s.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '\'' || c == '"') {
+				i = skipString(s, i);
+			} else if (c == '`') {
+				int end = s.indexOf('`', i + 1);
+				end = end < 0 ? s.length() : end;
+				if (end > i + 1) {
+					tokens.add(s.substring(i + 1, end));
+				}
+				i = end + 1;
+			} else if (Character.isLetterOrDigit(c) || c == '_' || c == '$') {
+				int start = i;
+				while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '_'
+						|| s.charAt(i) == '$')) {
+					i++;
+				}
+				tokens.add(s.substring(start, i));
+			} else {
+				tokens.add(String.valueOf(c));
+				i++;
+			}
+		}
+		return tokens;
+	}
+
+	private static int skipString(String s, int i) {
+		char quote = s.charAt(i++);
+		while (i < s.length()) {
+			char c = s.charAt(i++);
+			if (c == '\\') {
+				i++;
+			} else if (c == quote) {
+				if (i < s.length() && s.charAt(i) == quote) {
+					i++;
+				} else {
+					return i;
+				}
+			}
+		}
+		return i;
+	}
+
+}
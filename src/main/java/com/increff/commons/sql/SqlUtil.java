@@ -15,9 +15,15 @@
 package com.increff.commons.sql;
 
 import java.io.File;
+import java.util.List;
+import java.util.regex.Pattern;
 
 public class SqlUtil {
 
+	// Part files written by a partitioned pull are named like table.part001.tsv
+	private static final Pattern PART_SUFFIX = Pattern.compile("\\.part\\d+$");
+	private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?");
+
 	private String host;
 	private String username;
 	private String password;
@@ -30,8 +36,14 @@ public class SqlUtil {
 		this.schema = schema;
 	}
 
+	/**
+	 * Split an SQL script into statements, see {@link SqlLexer}
+	 * @param s SQL script
+	 * @return Non-empty statements with comments removed
+	 */
 	public static String[] tokenize(String s) {
-		return s.split(";");
+		List<String> statements = SqlLexer.split(s);
+		return statements.toArray(new String[statements.size()]);
 	}
 
 	public static String escape(String str) {
@@ -42,6 +54,19 @@ public class SqlUtil {
 		return str;
 	}
 
+	/**
+	 * SQL literal for a value read from a TSV file: numbers are left as they are and anything else, such as a
+	 * timestamp, is quoted
+	 * @param value Value to convert
+	 * @return Literal that can be used in a query
+	 */
+	static String toSqlLiteral(String value) {
+		if (NUMBER.matcher(value).matches()) {
+			return value;
+		}
+		return "'" + value.replace("\\", "\\\\").replace("'", "''") + "'";
+	}
+
 	// Commands
 
 	/**
@@ -74,14 +99,29 @@ public class SqlUtil {
 			"LOAD DATA LOCAL INFILE  '" + filePath + "'  INTO TABLE `" + schema + "`." + getTableName(filePath) + "  FIELDS TERMINATED BY '" + fieldSeparator + "' LINES TERMINATED BY '" + lineSeparator + "' IGNORE 1 LINES (" + columns + ")"};
 	}
 
+	/**
+	 * Command loading rows written to its standard input into the table named after the file, used to push compressed
+	 * files while decompressing them. Reading /dev/stdin needs a Unix-like OS
+	 * @param filePath Path of the file, used only for the table name
+	 * @param columns Comma separated columns of the file
+	 * @return String array representing import command
+	 */
+	public String[] getStreamImportCmd(String filePath, String columns) {
+		return new String[] {"mysql", "--host=" + host, "--user=" + username, "--password=" + password, "-e",
+			"LOAD DATA LOCAL INFILE '/dev/stdin' INTO TABLE `" + schema + "`." + getTableName(filePath) + " FIELDS TERMINATED BY '\t' LINES TERMINATED BY '\n' IGNORE 1 LINES (" + columns + ")"};
+	}
+
 	/**
 	 * Get SQL command for deleting records in the table (while maintaining table integrity)
 	 * @param tableName Target table name
 	 * @return String array representing delete all command
 	 */
 	public String[] getDeleteAllCommand(String tableName) {
-		String query = "delete from " + tableName;
-		return getQueryCmd(query);
+		return getQueryCmd(getDeleteAllQuery(tableName));
+	}
+
+	static String getDeleteAllQuery(String tableName) {
+		return "delete from " + tableName;
 	}
 
 	/**
@@ -90,13 +130,21 @@ public class SqlUtil {
 	 * @return String array representing truncate table command
 	 */
 	public String[] getTruncateCmd(String tableName) {
-		String query = "truncate table " + tableName;
-		return getQueryCmd(query);
+		return getQueryCmd(getTruncateQuery(tableName));
 	}
 
-	private String getTableName(String filePath) {
+	static String getTruncateQuery(String tableName) {
+		return "truncate table " + tableName;
+	}
+
+	/**
+	 * Name of the table a file is pushed to: the file name without directory, extensions and part suffix
+	 */
+	static String getTableName(String filePath) {
+		filePath = Compression.stripExtension(filePath);
 		int slashIndex = filePath.lastIndexOf(File.separator);
 		int dotIndex = filePath.lastIndexOf('.');
-		return filePath.substring(slashIndex + 1, dotIndex);
+		String tableName = filePath.substring(slashIndex + 1, dotIndex);
+		return PART_SUFFIX.matcher(tableName).replaceFirst("");
 	}
 }
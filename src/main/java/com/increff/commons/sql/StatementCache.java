@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of prepared statements of a single connection, keyed by SQL. Statements evicted from the cache
+ * are closed. The cache is cleared when it is used with a different connection
+ */
+class StatementCache {
+
+	private int maxSize;
+	private Connection con;
+	private LinkedHashMap<String, PreparedStatement> statements;
+	private long hits;
+	private long misses;
+
+	StatementCache(int maxSize) {
+		this.maxSize = maxSize;
+		this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() > StatementCache.this.maxSize) {
+					JdbcUtil.closeQuietly(eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get the cached statement for the SQL, preparing it on a miss. The statement must not be closed by the caller
+	 * @param con Connection to prepare the statement on
+	 * @param sql SQL with ? placeholders
+	 * @return Prepared statement with its parameters cleared
+	 */
+	PreparedStatement prepare(Connection con, String sql) throws SQLException {
+		if (con != this.con) {
+			clear();
+			this.con = con;
+		}
+		PreparedStatement ps = statements.get(sql);
+		if (ps != null && !ps.isClosed()) {
+			hits++;
+			ps.clearParameters();
+			return ps;
+		}
+		misses++;
+		ps = con.prepareStatement(sql);
+		statements.put(sql, ps);
+		return ps;
+	}
+
+	/**
+	 * Close and remove all statements
+	 */
+	void clear() {
+		for (PreparedStatement ps : statements.values()) {
+			JdbcUtil.closeQuietly(ps);
+		}
+		statements.clear();
+		con = null;
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+
+}
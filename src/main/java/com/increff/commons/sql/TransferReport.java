@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per file results of pulling or pushing a collection of files
+ */
+public class TransferReport {
+
+	private List<TransferResult> results;
+	private long durationMillis;
+
+	public TransferReport(List<TransferResult> results, long durationMillis) {
+		this.results = results;
+		this.durationMillis = durationMillis;
+	}
+
+	public List<TransferResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * @return Wall clock time taken for all files
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	public boolean hasFailures() {
+		return !getFailedFiles().isEmpty();
+	}
+
+	public List<String> getFailedFiles() {
+		List<String> failedFiles = new ArrayList<>();
+		for (TransferResult result : results) {
+			if (!result.isSuccess()) {
+				failedFiles.add(result.getFileName());
+			}
+		}
+		return failedFiles;
+	}
+
+	public long getTotalBytes() {
+		long bytes = 0;
+		for (TransferResult result : results) {
+			bytes += result.getBytes();
+		}
+		return bytes;
+	}
+
+	@Override
+	public String toString() {
+		return results.size() + " files in " + durationMillis + " ms, " + getFailedFiles().size() + " failed";
+	}
+
+}
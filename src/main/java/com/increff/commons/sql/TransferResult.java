@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+/**
+ * Outcome of pulling or pushing a single file
+ */
+public class TransferResult {
+
+	private String fileName;
+	private long durationMillis;
+	private long bytes;
+	private long rows;
+	private Throwable failure;
+
+	public TransferResult(String fileName, long durationMillis, long bytes, long rows, Throwable failure) {
+		this.fileName = fileName;
+		this.durationMillis = durationMillis;
+		this.bytes = bytes;
+		this.rows = rows;
+		this.failure = failure;
+	}
+
+	public String getFileName() {
+		return fileName;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return Size of the local file after the transfer
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Number of rows transferred, or -1 if not known
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return Cause of failure, or null if the transfer succeeded
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	public boolean isSuccess() {
+		return failure == null;
+	}
+
+	@Override
+	public String toString() {
+		return fileName + " [" + (isSuccess() ? "ok" : "failed: " + failure.getMessage()) + ", " + durationMillis
+				+ " ms, " + bytes + " bytes, " + rows + " rows]";
+	}
+
+}
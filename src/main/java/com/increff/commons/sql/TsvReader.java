@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Reads TSV files written by {@link DbCmd#pull(String, String)}, i.e. in the mysql client batch format written by
+ * {@link TsvWriter}. The file is memory-mapped and lines are split into fields in place; a value is only decoded,
+ * and its escape sequences \\, \t, \n and \0 resolved, when it is read. Rows are passed to a handler as a single
+ * reused row, so reading a file allocates little beyond the values actually read. Files can be split at line
+ * boundaries into readers which are run concurrently. Compressed files cannot be mapped and are not supported
+ */
+public class TsvReader {
+
+	// Size of the mapped windows, which end at a line boundary
+	private static final int WINDOW_SIZE = 1 << 28;
+
+	private final File file;
+	private final String[] names;
+	private final HashMap<String, Integer> columns;
+	private final byte[] nullToken;
+	private final long start;
+	private final long end;
+	private final int windowSize;
+
+	private TsvReader(File file, String[] names, HashMap<String, Integer> columns, byte[] nullToken, long start,
+			long end, int windowSize) {
+		this.file = file;
+		this.names = names;
+		this.columns = columns;
+		this.nullToken = nullToken;
+		this.start = start;
+		this.end = end;
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Open a file pulled by {@link DbCmd}, reading its header row and treating NULL as null
+	 * @param file Uncompressed TSV file with a header row
+	 * @return Reader over all rows of the file
+	 */
+	public static TsvReader open(File file) throws DbException {
+		return open(file, TsvWriter.CLI_NULL);
+	}
+
+	/**
+	 * Open a TSV file with a header row
+	 * @param file Uncompressed TSV file with a header row
+	 * @param nullToken Token read as null, e.g. {@link TsvWriter#LOAD_DATA_NULL}
+	 * @return Reader over all rows of the file
+	 */
+	public static TsvReader open(File file, String nullToken) throws DbException {
+		return open(file, nullToken, WINDOW_SIZE);
+	}
+
+	static TsvReader open(File file, String nullToken, int windowSize) throws DbException {
+		if (Compression.forFile(file.getName()) != Compression.NONE) {
+			throw new DbException("Cannot map compressed file: " + file);
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			long headerEnd = findLineEnd(channel, 0, size);
+			// Like the mysql client, column names are written without escaping
+			byte[] header = new byte[(int) Math.min(headerEnd, size)];
+			channel.read(ByteBuffer.wrap(header), 0);
+			String line = new String(header, StandardCharsets.UTF_8);
+			String[] names = line.isEmpty() ? new String[0] : line.split("\t", -1);
+			HashMap<String, Integer> columns = new HashMap<>();
+			for (int i = 0; i < names.length; i++) {
+				columns.put(names[i], i);
+			}
+			return new TsvReader(file, names, columns, nullToken.getBytes(StandardCharsets.UTF_8),
+					Math.min(headerEnd + 1, size), size, windowSize);
+		} catch (IOException e) {
+			throw new DbException("Error reading header for file: " + file, e);
+		}
+	}
+
+	/**
+	 * Position of the first newline at or after position, or size if there is none
+	 */
+	private static long findLineEnd(FileChannel channel, long position, long size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		while (position < size) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i;
+				}
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	/**
+	 * @return Column names read from the header row, as also returned comma separated by {@link DbCmd#getColumns}
+	 */
+	public String[] getColumnNames() {
+		return names;
+	}
+
+	/**
+	 * @return Mapping of column names to 0-based index, shared by all rows
+	 */
+	public HashMap<String, Integer> getColumns() {
+		return columns;
+	}
+
+	/**
+	 * @return Number of bytes of rows covered by this reader
+	 */
+	public long getLength() {
+		return end - start;
+	}
+
+	/**
+	 * Split the rows of this reader at line boundaries into readers of roughly equal size, which may be run
+	 * concurrently
+	 * @param parts Maximum number of readers, fewer are returned for files with fewer lines
+	 * @return Readers covering all rows, in file order
+	 */
+	public List<TsvReader> split(int parts) throws DbException {
+		List<TsvReader> readers = new ArrayList<>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long partStart = start;
+			for (int i = 1; i < parts && partStart < end; i++) {
+				long target = start + (end - start) * i / parts;
+				if (target <= partStart) {
+					continue;
+				}
+				long partEnd = Math.min(findLineEnd(channel, target - 1, end) + 1, end);
+				readers.add(new TsvReader(file, names, columns, nullToken, partStart, partEnd, windowSize));
+				partStart = partEnd;
+			}
+			if (partStart < end || readers.isEmpty()) {
+				readers.add(new TsvReader(file, names, columns, nullToken, partStart, end, windowSize));
+			}
+			return readers;
+		} catch (IOException e) {
+			throw new DbException("Error splitting file: " + file, e);
+		}
+	}
+
+	/**
+	 * Pass each row to the handler. The same row object is passed for every row and is only valid during the call;
+	 * use {@link ResultRow#getTokens()} to keep its values. Row numbers count from 0 for each reader
+	 * @param handler Callback invoked for every row
+	 * @return Number of rows read
+	 */
+	public long forEach(RowHandler handler) throws DbException {
+		TsvRow row = new TsvRow(columns, names.length, nullToken);
+		long rows = 0;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long position = start;
+			while (position < end) {
+				int length = (int) Math.min(windowSize, end - position);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				int limit = length;
+				if (position + length < end) {
+					while (limit > 0 && buffer.get(limit - 1) != '\n') {
+						limit--;
+					}
+					if (limit == 0) {
+						throw new DbException("Line longer than " + windowSize + " bytes at offset " + position
+								+ " of file: " + file);
+					}
+				}
+				row.buffer = buffer;
+				int lineStart = 0;
+				while (lineStart < limit) {
+					int lineEnd = row.tokenize(lineStart, limit);
+					if (row.fields != names.length) {
+						throw new DbException("Expected " + names.length + " values but found " + row.fields
+								+ " in row " + rows + " of file: " + file);
+					}
+					row.setRow((int) rows++);
+					handler.handle(row);
+					lineStart = lineEnd + 1;
+				}
+				position += limit;
+			}
+		} catch (IOException e) {
+			throw new DbException("Error reading file: " + file, e);
+		}
+		return rows;
+	}
+
+	/**
+	 * Read all rows into memory
+	 * @return Rows with their values decoded
+	 */
+	public List<ResultRow> readAll() throws DbException {
+		List<ResultRow> rows = new ArrayList<>();
+		forEach(row -> {
+			ResultRow copy = new ResultRow(columns);
+			copy.setTokens(row.getTokens());
+			copy.setRow(row.getRow());
+			rows.add(copy);
+		});
+		return rows;
+	}
+
+	/**
+	 * Row positioned on a line of a mapped buffer, decoding values when they are read
+	 */
+	private static class TsvRow extends ResultRow {
+
+		private final int[] starts;
+		private final int[] ends;
+		private final boolean[] escaped;
+		private final byte[] nullToken;
+		private ByteBuffer buffer;
+		private byte[] bytes = new byte[256];
+		private int fields;
+
+		TsvRow(HashMap<String, Integer> columns, int columnCount, byte[] nullToken) {
+			super(columns);
+			this.starts = new int[columnCount];
+			this.ends = new int[columnCount];
+			this.escaped = new boolean[columnCount];
+			this.nullToken = nullToken;
+		}
+
+		/**
+		 * Record the bounds of the fields of the line starting at position
+		 * @return Position of the newline ending the line, or limit if there is none
+		 */
+		int tokenize(int position, int limit) {
+			fields = 0;
+			int fieldStart = position;
+			boolean fieldEscaped = false;
+			while (true) {
+				byte b = position < limit ? buffer.get(position) : (byte) '\n';
+				if (b == '\t' || b == '\n') {
+					if (fields < starts.length) {
+						starts[fields] = fieldStart;
+						ends[fields] = position;
+						escaped[fields] = fieldEscaped;
+					}
+					fields++;
+					if (b == '\n') {
+						return position;
+					}
+					fieldStart = position + 1;
+					fieldEscaped = false;
+				} else if (b == '\\') {
+					fieldEscaped = true;
+				}
+				position++;
+			}
+		}
+
+		private boolean isNull(int col) {
+			int length = ends[col] - starts[col];
+			if (length != nullToken.length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (buffer.get(starts[col] + i) != nullToken[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String getValue(int col) {
+			if (col >= fields) {
+				throw new ArrayIndexOutOfBoundsException(col);
+			}
+			if (isNull(col)) {
+				return null;
+			}
+			int length = ends[col] - starts[col];
+			if (bytes.length < length) {
+				bytes = new byte[Math.max(length, bytes.length * 2)];
+			}
+			int n = 0;
+			for (int i = starts[col]; i < ends[col]; i++) {
+				byte b = buffer.get(i);
+				if (b == '\\' && escaped[col] && i + 1 < ends[col]) {
+					b = unescape(buffer.get(++i));
+				}
+				bytes[n++] = b;
+			}
+			return new String(bytes, 0, n, StandardCharsets.UTF_8);
+		}
+
+		private static byte unescape(byte b) {
+			switch (b) {
+			case 't':
+				return '\t';
+			case 'n':
+				return '\n';
+			case '0':
+				return 0;
+			default:
+				return b;
+			}
+		}
+
+		@Override
+		public String getValue(ColumnHandle col) {
+			return getValue(col.getIndex());
+		}
+
+		@Override
+		public String[] getTokens() {
+			String[] tokens = new String[fields];
+			for (int i = 0; i < fields; i++) {
+				tokens[i] = getValue(i);
+			}
+			return tokens;
+		}
+
+		/**
+		 * Parse integers directly from the buffer, falling back to decoding the value for anything else
+		 */
+		@Override
+		public Long getLong(int col) {
+			if (col >= fields || escaped[col] || isNull(col)) {
+				return super.getLong(col);
+			}
+			int position = starts[col];
+			int end = ends[col];
+			boolean negative = position < end && buffer.get(position) == '-';
+			if (negative) {
+				position++;
+			}
+			// Values of more than 18 digits may overflow and are left to Long.parseLong
+			if (position == end || end - position > 18) {
+				return super.getLong(col);
+			}
+			long value = 0;
+			for (; position < end; position++) {
+				int digit = buffer.get(position) - '0';
+				if (digit < 0 || digit > 9) {
+					return super.getLong(col);
+				}
+				value = value * 10 + digit;
+			}
+			return negative ? -value : value;
+		}
+
+		@Override
+		public Integer getInteger(int col) {
+			Long value = getLong(col);
+			if (value == null) {
+				return null;
+			}
+			if (value != value.intValue()) {
+				// Same failure as Integer.parseInt
+				return super.getInteger(col);
+			}
+			return value.intValue();
+		}
+
+		@Override
+		public Long getLong(String col) {
+			return getLong(getIndex(col));
+		}
+
+		@Override
+		public Integer getInteger(String col) {
+			return getInteger(getIndex(col));
+		}
+
+		@Override
+		public void setTokens(String[] tokens) {
+			throw new UnsupportedOperationException("Rows of a TsvReader are read only");
+		}
+
+		@Override
+		public void setToken(int index, Object token) {
+			throw new UnsupportedOperationException("Rows of a TsvReader are read only");
+		}
+
+	}
+
+}
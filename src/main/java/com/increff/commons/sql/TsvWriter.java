@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes TSV files through a large buffer, escaping values the same way the mysql command line client does in batch
+ * mode: backslash, tab, newline and NUL are written as \\, \t, \n and \0. Null values are written as the configured
+ * null token
+ */
+public class TsvWriter implements Closeable {
+
+	/**
+	 * Null token written by the mysql command line client
+	 */
+	public static final String CLI_NULL = "NULL";
+	/**
+	 * Null token understood by LOAD DATA with the default escape character
+	 */
+	public static final String LOAD_DATA_NULL = "\\N";
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private WritableByteChannel channel;
+	private String nullToken;
+	private ByteBuffer buffer;
+	private CharsetEncoder encoder;
+	private StringBuilder line;
+	private long rows;
+	private long bytes;
+
+	/**
+	 * @param channel Channel to write to
+	 * @param nullToken Token written for null values
+	 */
+	public TsvWriter(WritableByteChannel channel, String nullToken) {
+		this.channel = channel;
+		this.nullToken = nullToken;
+		this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		this.encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.line = new StringBuilder();
+	}
+
+	/**
+	 * Open a file for writing in the mysql client format. Files with a {@link Compression} extension, e.g. .tsv.gz,
+	 * are compressed while writing
+	 * @param file File to write
+	 * @param append Append to the file instead of overwriting it
+	 * @return TsvWriter on the file
+	 */
+	public static TsvWriter open(File file, boolean append) throws IOException {
+		if (Compression.forFile(file.getName()) != Compression.NONE) {
+			return new TsvWriter(Channels.newChannel(Compression.newOutputStream(file, append)), CLI_NULL);
+		}
+		FileChannel channel = append
+				? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.APPEND)
+				: FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING);
+		return new TsvWriter(channel, CLI_NULL);
+	}
+
+	/**
+	 * Write the header row. Like the mysql client, column names are written without escaping
+	 * @param columns Column names
+	 */
+	public void writeHeader(String[] columns) throws IOException {
+		line.setLength(0);
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				line.append('\t');
+			}
+			line.append(columns[i]);
+		}
+		line.append('\n');
+		writeLine();
+	}
+
+	/**
+	 * Write a single row
+	 * @param values Values of the row, may contain nulls
+	 */
+	public void writeRow(String[] values) throws IOException {
+		line.setLength(0);
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				line.append('\t');
+			}
+			if (values[i] == null) {
+				line.append(nullToken);
+			} else {
+				escape(values[i], line);
+			}
+		}
+		line.append('\n');
+		writeLine();
+		rows++;
+	}
+
+	/**
+	 * Append a value to the builder, escaped as by the mysql client in batch mode
+	 * @param s Value to escape
+	 * @param sb Builder to append to
+	 */
+	public static void escape(String s, StringBuilder sb) {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '\\':
+				sb.append("\\\\");
+				break;
+			case '\t':
+				sb.append("\\t");
+				break;
+			case '\n':
+				sb.append("\\n");
+				break;
+			case '\0':
+				sb.append("\\0");
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * @return Number of rows written, excluding the header
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return Number of bytes written, including the header
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			bytes += channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel == null) {
+			return;
+		}
+		try {
+			flush();
+		} finally {
+			channel.close();
+			channel = null;
+		}
+	}
+
+	private void writeLine() throws IOException {
+		CharBuffer chars = CharBuffer.wrap(line);
+		while (true) {
+			CoderResult result = encoder.encode(chars, buffer, true);
+			if (result.isOverflow()) {
+				flush();
+				continue;
+			}
+			if (result.isError()) {
+				result.throwException();
+			}
+			break;
+		}
+		encoder.reset();
+	}
+
+}
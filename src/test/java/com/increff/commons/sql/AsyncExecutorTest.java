@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AsyncExecutorTest {
+
+	@Test
+	public void testMaxInFlight() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			AsyncExecutor executor = new AsyncExecutor(pool, 2);
+			CountDownLatch release = new CountDownLatch(1);
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger maxRunning = new AtomicInteger();
+			List<CompletableFuture<Integer>> futures = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				int n = i;
+				futures.add(executor.submit(() -> {
+					maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+					release.await();
+					running.decrementAndGet();
+					return n;
+				}));
+			}
+			while (running.get() < 2) {
+				Thread.sleep(1);
+			}
+			assertEquals(8, executor.getQueued());
+			release.countDown();
+			for (int i = 0; i < 10; i++) {
+				assertEquals(Integer.valueOf(i), futures.get(i).join());
+			}
+			assertEquals(2, maxRunning.get());
+		} finally {
+			pool.shutdownNow();
+			pool.awaitTermination(1, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	public void testFailure() {
+		AsyncExecutor executor = new AsyncExecutor(1);
+		CompletableFuture<Object> future = executor.submit(() -> {
+			throw new DbException("Error running DB query");
+		});
+		try {
+			future.join();
+			fail("Failed task should complete exceptionally");
+		} catch (CompletionException e) {
+			assertTrue(e.getCause() instanceof DbException);
+		}
+		assertEquals("ok", executor.submit(() -> "ok").join());
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.sql.SQLException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BatchInserterTest {
+
+	@Test
+	public void testInsertSql() throws DbException {
+		BatchInserter inserter = new BatchInserter(new DbQuery(new FakeJdbc().getDataSource()), "stock",
+				new String[] { "sku", "qty" });
+		assertEquals("INSERT INTO stock (sku,qty) VALUES (?,?)", inserter.getInsertSql(1));
+		inserter.setReplace(true);
+		assertEquals("REPLACE INTO stock (sku,qty) VALUES (?,?),(?,?),(?,?)", inserter.getInsertSql(3));
+		inserter.close();
+	}
+
+	@Test
+	public void testEstimateBytes() {
+		assertEquals(4, BatchInserter.estimateBytes(null));
+		assertEquals(9, BatchInserter.estimateBytes("hello"));
+		assertEquals(24, BatchInserter.estimateBytes(42L));
+		assertEquals(10, BatchInserter.estimateBytes(new byte[3]));
+	}
+
+	@Test
+	public void testFixedBatchRows() throws DbException {
+		FakeJdbc jdbc = new FakeJdbc();
+		BatchInserter inserter = new BatchInserter(new DbQuery(jdbc.getDataSource()), "stock",
+				new String[] { "sku", "qty" });
+		inserter.setMaxBatchBytes(4000);
+		for (int i = 0; i < 1000; i++) {
+			// Rows of 32 to 41 estimated bytes, so that the rows fitting the budget vary from batch to batch
+			inserter.add(new Object[] { "sku-" + "xxxxxxxxx".substring(0, i % 10), i });
+		}
+		inserter.close();
+
+		// 82 rows fill three quarters of the budget, 3000 bytes
+		assertEquals(82, inserter.getBatchRows());
+		assertEquals(1000, inserter.getRowsInserted());
+		assertEquals(1000 / 82 + 1, jdbc.executed.size());
+		// One statement for the full batches and one for the final 16 rows
+		assertEquals(2, jdbc.prepared.size());
+		assertEquals(inserter.getInsertSql(82), jdbc.prepared.get(0));
+		assertEquals(inserter.getInsertSql(1000 % 82), jdbc.prepared.get(1));
+		assertEquals(0, jdbc.openStatements);
+		assertEquals(0, jdbc.openConnections);
+	}
+
+	@Test
+	public void testParameterLimit() throws DbException {
+		FakeJdbc jdbc = new FakeJdbc();
+		String[] columns = new String[1000];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = "c" + i;
+		}
+		BatchInserter inserter = new BatchInserter(new DbQuery(jdbc.getDataSource()), "wide", columns);
+		inserter.setMaxBatchBytes(Long.MAX_VALUE);
+		inserter.setMaxBatchRows(100000);
+		for (int i = 0; i < 130; i++) {
+			inserter.add(new Object[columns.length]);
+		}
+		inserter.close();
+		// 65535 placeholders allow 65 rows of 1000 columns
+		assertEquals(65, inserter.getBatchRows());
+		assertEquals(2, jdbc.executed.size());
+		assertEquals(1, jdbc.prepared.size());
+		assertEquals(65000, jdbc.parameters.get(0).size());
+	}
+
+	@Test
+	public void testFailedBatchIsNotResent() throws DbException {
+		for (boolean jdbcBatch : new boolean[] { false, true }) {
+			FakeJdbc jdbc = new FakeJdbc();
+			jdbc.setHandler((sql, params) -> {
+				if (params.contains("sku-1")) {
+					throw new SQLException("Duplicate entry");
+				}
+				return 1;
+			});
+			BatchInserter inserter = new BatchInserter(new DbQuery(jdbc.getDataSource()), "stock",
+					new String[] { "sku", "qty" });
+			inserter.setJdbcBatch(jdbcBatch);
+			inserter.add(new Object[] { "sku-0", 0 });
+			inserter.add(new Object[] { "sku-1", 1 });
+			try {
+				inserter.flush();
+				fail("Failed batch should throw");
+			} catch (DbException e) {
+				assertEquals("Error inserting rows into table: stock", e.getMessage());
+			}
+			inserter.close();
+			assertEquals(1, jdbc.executed.size());
+			assertEquals(0, inserter.getRowsInserted());
+			assertEquals(0, jdbc.openConnections);
+		}
+	}
+
+}
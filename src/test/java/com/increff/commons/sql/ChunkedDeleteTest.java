@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkedDeleteTest {
+
+	@Test
+	public void testBatches() throws DbException {
+		FakeJdbc jdbc = new FakeJdbc();
+		TreeSet<Long> table = newTable(jdbc, 25);
+		ChunkedDelete delete = new ChunkedDelete("orders", "id");
+		delete.setBatchSize(10);
+		List<Long> progress = new ArrayList<>();
+		delete.setProgressListener((rows, rowsPerSecond) -> progress.add(rows));
+
+		assertEquals(25, delete.run(new DbQuery(jdbc.getDataSource())));
+		assertTrue(table.isEmpty());
+		assertEquals(25, delete.getRowsDeleted());
+		assertEquals(Arrays.asList(10L, 20L, 25L), progress);
+		// Each batch ends at the key found at offset batchSize - 1, and the last batch is open ended
+		assertEquals(Arrays.asList("SELECT id FROM orders ORDER BY id LIMIT 1 OFFSET 9",
+				"DELETE FROM orders WHERE id <= ?",
+				"SELECT id FROM orders WHERE id > ? ORDER BY id LIMIT 1 OFFSET 9",
+				"DELETE FROM orders WHERE id > ? AND id <= ?",
+				"SELECT id FROM orders WHERE id > ? ORDER BY id LIMIT 1 OFFSET 9",
+				"DELETE FROM orders WHERE id > ?"), jdbc.executed);
+		assertEquals(Arrays.asList(Collections.emptyList(), Arrays.asList("10"), Arrays.asList("10"),
+				Arrays.asList("10", "20"), Arrays.asList("20"), Arrays.asList("20")), jdbc.parameters);
+		assertEquals(0, jdbc.openStatements);
+		assertEquals(0, jdbc.openConnections);
+	}
+
+	@Test
+	public void testExactBatches() throws DbException {
+		FakeJdbc jdbc = new FakeJdbc();
+		newTable(jdbc, 20);
+		ChunkedDelete delete = new ChunkedDelete("orders", "id");
+		delete.setBatchSize(10);
+		List<Long> progress = new ArrayList<>();
+		delete.setProgressListener((rows, rowsPerSecond) -> progress.add(rows));
+
+		// The final open ended batch finds no rows left
+		assertEquals(20, delete.run(new DbQuery(jdbc.getDataSource())));
+		assertEquals(Arrays.asList(10L, 20L, 20L), progress);
+		assertEquals("DELETE FROM orders WHERE id > ?", jdbc.executed.get(jdbc.executed.size() - 1));
+
+		// An empty table is deleted by a single open ended batch
+		jdbc = new FakeJdbc();
+		newTable(jdbc, 0);
+		assertEquals(0, delete.run(new DbQuery(jdbc.getDataSource())));
+		assertEquals(Arrays.asList("SELECT id FROM orders ORDER BY id LIMIT 1 OFFSET 9", "DELETE FROM orders"),
+				jdbc.executed);
+	}
+
+	@Test
+	public void testWhere() throws DbException {
+		FakeJdbc jdbc = new FakeJdbc();
+		TreeSet<Long> table = newTable(jdbc, 25);
+		ChunkedDelete delete = new ChunkedDelete("orders", "id");
+		delete.setBatchSize(5);
+		delete.setWhere("id % 2 = 0");
+
+		// Batches of matching rows, each continuing after the last key of the previous batch
+		assertEquals(12, delete.run(new DbQuery(jdbc.getDataSource())));
+		assertEquals(13, table.size());
+		assertEquals(Arrays.asList("SELECT id FROM orders WHERE (id % 2 = 0) ORDER BY id LIMIT 1 OFFSET 4",
+				"DELETE FROM orders WHERE id <= ? AND (id % 2 = 0)",
+				"SELECT id FROM orders WHERE id > ? AND (id % 2 = 0) ORDER BY id LIMIT 1 OFFSET 4",
+				"DELETE FROM orders WHERE id > ? AND id <= ? AND (id % 2 = 0)",
+				"SELECT id FROM orders WHERE id > ? AND (id % 2 = 0) ORDER BY id LIMIT 1 OFFSET 4",
+				"DELETE FROM orders WHERE id > ? AND (id % 2 = 0)"), jdbc.executed);
+		assertEquals(Arrays.asList(Collections.emptyList(), Arrays.asList("10"), Arrays.asList("10"),
+				Arrays.asList("10", "20"), Arrays.asList("20"), Arrays.asList("20")), jdbc.parameters);
+	}
+
+	@Test
+	public void testFailure() {
+		FakeJdbc jdbc = new FakeJdbc();
+		FakeJdbc.Handler handler = newHandler(new TreeSet<>(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L)));
+		jdbc.setHandler((sql, params) -> {
+			if (sql.startsWith("DELETE") && params.size() == 2) {
+				throw new SQLException("Lock wait timeout exceeded");
+			}
+			return handler.execute(sql, params);
+		});
+		ChunkedDelete delete = new ChunkedDelete("orders", "id");
+		delete.setBatchSize(2);
+		try {
+			delete.run(new DbQuery(jdbc.getDataSource()));
+			fail("Failed batch should throw");
+		} catch (DbException e) {
+			assertEquals("Error deleting from table: orders, rows deleted: 2", e.getMessage());
+		}
+		assertEquals(0, jdbc.openStatements);
+		assertEquals(0, jdbc.openConnections);
+	}
+
+	/**
+	 * Table of keys 1 to rows, read and deleted by the queries of a ChunkedDelete on id
+	 */
+	private static TreeSet<Long> newTable(FakeJdbc jdbc, int rows) {
+		TreeSet<Long> table = new TreeSet<>();
+		for (long i = 1; i <= rows; i++) {
+			table.add(i);
+		}
+		jdbc.setHandler(newHandler(table));
+		return table;
+	}
+
+	private static FakeJdbc.Handler newHandler(TreeSet<Long> table) {
+		Pattern offsetPattern = Pattern.compile("OFFSET (\\d+)");
+		return (sql, params) -> {
+			int index = 0;
+			long lower = sql.contains("id > ?") ? Long.parseLong((String) params.get(index++)) : Long.MIN_VALUE;
+			long upper = sql.contains("id <= ?") ? Long.parseLong((String) params.get(index)) : Long.MAX_VALUE;
+			boolean even = sql.contains("(id % 2 = 0)");
+			List<Long> keys = new ArrayList<>();
+			for (long key : table) {
+				if (key > lower && key <= upper && (!even || key % 2 == 0)) {
+					keys.add(key);
+				}
+			}
+			if (sql.startsWith("DELETE")) {
+				table.removeAll(keys);
+				return keys.size();
+			}
+			Matcher m = offsetPattern.matcher(sql);
+			assertTrue(sql, m.find());
+			int offset = Integer.parseInt(m.group(1));
+			if (offset >= keys.size()) {
+				return FakeJdbc.newResultSet(new String[] { "id" });
+			}
+			return FakeJdbc.newResultSet(new String[] { "id" }, new String[] { String.valueOf(keys.get(offset)) });
+		};
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ColumnarResultTest {
+
+	@Test
+	public void testTypes() throws SQLException {
+		ColumnarResult result = read();
+		assertEquals(3, result.size());
+		assertEquals(4, result.getColumnCount());
+		assertEquals("price", result.getColumnName(2));
+		assertEquals(2, result.getColumnIndex("price"));
+		assertEquals(ColumnarResult.ColumnType.INT, result.getColumnType(0));
+		assertEquals(ColumnarResult.ColumnType.LONG, result.getColumnType(1));
+		assertEquals(ColumnarResult.ColumnType.DOUBLE, result.getColumnType(2));
+		assertEquals(ColumnarResult.ColumnType.STRING, result.getColumnType(3));
+
+		assertEquals(7, result.getInt(0, 0));
+		assertEquals(7L, result.getLong(0, 0));
+		assertEquals(10000000000L, result.getLong(1, 1));
+		assertEquals(2.5, result.getDouble(0, 2), 0);
+		assertEquals(7.0, result.getDouble(0, 0), 0);
+		assertEquals(Integer.valueOf(8), result.getInteger(1, "id"));
+		assertEquals(Long.valueOf(10000000000L), result.getLong(1, "qty"));
+		assertEquals(Double.valueOf(1e10), result.getDouble(1, "price"));
+		try {
+			result.getInt(0, 1);
+			fail("LONG column should not be read as int");
+		} catch (RuntimeException e) {
+			assertEquals("Column is not of int type:qty", e.getMessage());
+		}
+		try {
+			result.getColumnIndex("missing");
+			fail("Missing column should fail");
+		} catch (RuntimeException e) {
+			assertEquals("Invalid column:missing", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testNulls() throws SQLException {
+		ColumnarResult result = read();
+		for (int col = 0; col < 4; col++) {
+			assertFalse(result.isNull(0, col));
+			assertTrue(result.isNull(2, col));
+			assertNull(result.getString(2, col));
+		}
+		assertEquals(0, result.getInt(2, 0));
+		assertNull(result.getInteger(2, "id"));
+		assertNull(result.getLong(2, "qty"));
+		assertNull(result.getDouble(2, "price"));
+		assertEquals(-1, result.getCode(2, 3));
+	}
+
+	@Test
+	public void testStrings() throws SQLException {
+		ColumnarResult result = read();
+		assertEquals("7", result.getString(0, "id"));
+		assertEquals("10000000000", result.getString(1, "qty"));
+		// Doubles are formatted as MySQL prints them, not in scientific notation
+		assertEquals("2.5", result.getString(0, "price"));
+		assertEquals("10000000000", result.getString(1, "price"));
+		assertArrayEquals(new String[] { "7", "3", "2.5", "open" }, result.getRow(0).getTokens());
+		assertArrayEquals(new String[] { "8", "10000000000", "10000000000", "open" }, result.getRow(1).getTokens());
+
+		// Strings are dictionary encoded
+		assertEquals(Arrays.asList("open"), result.getDictionary(3));
+		assertEquals(0, result.getCode(0, 3));
+		assertEquals(0, result.getCode(1, 3));
+		try {
+			result.getCode(0, 2);
+			fail("DOUBLE column has no dictionary");
+		} catch (RuntimeException e) {
+			assertEquals("Column is not of string type:price", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testDoubleStrings() throws SQLException {
+		ColumnarResult result = ColumnarResult.read(FakeJdbc.newResultSet(new String[] { "v" },
+				new int[] { Types.DOUBLE }, new String[] { "1.0" }, new String[] { "0.1" }, new String[] { "1e-7" },
+				new String[] { "-123456.75" }, new String[] { "1e21" }, new String[] { "0" }));
+		assertEquals("1", result.getString(0, 0));
+		assertEquals("0.1", result.getString(1, 0));
+		assertEquals("0.0000001", result.getString(2, 0));
+		assertEquals("-123456.75", result.getString(3, 0));
+		assertEquals("1000000000000000000000", result.getString(4, 0));
+		assertEquals("0", result.getString(5, 0));
+	}
+
+	private static ColumnarResult read() throws SQLException {
+		return ColumnarResult.read(FakeJdbc.newResultSet(new String[] { "id", "qty", "price", "status" },
+				new int[] { Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.VARCHAR },
+				new String[] { "7", "3", "2.5", "open" },
+				new String[] { "8", "10000000000", "1e10", "open" },
+				new String[] { null, null, null, null }));
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+
+	@Test
+	public void testForFile() {
+		assertEquals(Compression.GZIP, Compression.forFile("orders.tsv.gz"));
+		assertEquals(Compression.DEFLATE, Compression.forFile("orders.tsv.zz"));
+		assertEquals(Compression.NONE, Compression.forFile("orders.tsv"));
+		assertEquals("orders.tsv", Compression.stripExtension("orders.tsv.gz"));
+		assertEquals("orders", SqlUtil.getTableName("/data/orders.part001.tsv.gz"));
+	}
+
+	@Test
+	public void testGzipAppend() throws IOException, DbException {
+		File file = File.createTempFile("compression", ".tsv.gz");
+		file.deleteOnExit();
+		for (int i = 0; i < 2; i++) {
+			TsvWriter writer = TsvWriter.open(file, true);
+			writer.writeHeader(new String[] { "name", "pincode" });
+			writer.writeRow(new String[] { "Alice", null });
+			writer.close();
+		}
+		assertEquals("name\tpincode\nAlice\tNULL\nname\tpincode\nAlice\tNULL\n", read(file));
+		assertEquals("name,pincode", DbCmd.getColumns(file.getPath()));
+	}
+
+	@Test
+	public void testDeflate() throws IOException {
+		File file = File.createTempFile("compression", ".tsv.zz");
+		file.deleteOnExit();
+		TsvWriter writer = TsvWriter.open(file, false);
+		writer.writeRow(new String[] { "a\tb", "c" });
+		writer.close();
+		assertEquals("a\\tb\tc\n", read(file));
+		try {
+			TsvWriter.open(file, true);
+			fail("Appending to a deflate file should fail");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		try (InputStream in = Compression.newInputStream(file)) {
+			return IOUtils.toString(in, StandardCharsets.UTF_8);
+		}
+	}
+
+}
@@ -20,9 +20,18 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.junit.Assert.assertTrue;
-import static org.junit.Assert.fail;
+import static org.junit.Assert.*;
 
 public class DbCmdTest {
 
@@ -67,4 +76,143 @@ public class DbCmdTest {
         controller.dropDb("testDbNew");
     }
 
+    @Test
+    public void testPullReport() throws DbException, IOException {
+        File dir = Files.createTempDirectory("dbcmd").toFile();
+        FakePullEngine engine = new FakePullEngine(query -> {
+            if (query.contains("fail")) {
+                throw new DbException("Query failed");
+            }
+            return new String[][] { { "name" }, { query.substring(query.indexOf('\'')) } };
+        });
+        engine.setDelayMillis(50);
+        DbCmd cmd = new DbCmd(dir.getPath(), new DbQuery(new FakeJdbc().getDataSource()));
+        cmd.setPullEngine(engine);
+        Map<String, String> fileQueryMap = new LinkedHashMap<>();
+        for (String name : Arrays.asList("a", "b", "fail", "d", "e")) {
+            fileQueryMap.put(name + ".tsv", "SELECT '" + name + "'");
+        }
+
+        // Results follow the order of the map, and failures do not stop the other pulls
+        TransferReport report = cmd.pull(fileQueryMap, 2);
+        assertEquals(2, engine.maxRunning.get());
+        assertEquals(new ArrayList<>(fileQueryMap.keySet()), getFileNames(report));
+        assertEquals(Arrays.asList("fail.tsv"), report.getFailedFiles());
+        TransferResult failed = report.getResults().get(2);
+        assertEquals("Error pulling file: fail.tsv", failed.getFailure().getMessage());
+        assertEquals(-1, failed.getRows());
+        long bytes = 0;
+        for (TransferResult result : report.getResults()) {
+            File file = new File(dir, result.getFileName());
+            assertEquals(file.length(), result.getBytes());
+            bytes += file.length();
+            if (result.isSuccess()) {
+                assertEquals(1, result.getRows());
+            }
+        }
+        assertEquals(bytes, report.getTotalBytes());
+        assertTrue(new File(dir, "e.tsv").exists());
+
+        try {
+            cmd.pull(new HashMap<>(fileQueryMap));
+            fail("Failed pull should throw");
+        } catch (DbException e) {
+            assertEquals("Error pulling files: fail.tsv", e.getMessage());
+        }
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPushReport() throws DbException, IOException {
+        File dir = Files.createTempDirectory("dbcmd").toFile();
+        for (String name : Arrays.asList("a1", "a2", "b1", "b2", "b3")) {
+            FileUtils.writeStringToFile(new File(dir, name + ".tsv"), "id\tname\n1\tx\n", StandardCharsets.UTF_8);
+        }
+        FakeBackend backend = new FakeBackend("b2");
+        DbCmd cmd = new DbCmd(dir.getPath(), new DbQuery(new FakeJdbc().getDataSource()));
+        cmd.setBackend(backend);
+
+        TransferReport report = cmd.push(Arrays.asList(Arrays.asList("a1.tsv", "a2.tsv"),
+                Arrays.asList("b1.tsv", "b2.tsv", "b3.tsv")), 2);
+        assertEquals(Arrays.asList("a1.tsv", "a2.tsv", "b1.tsv", "b2.tsv", "b3.tsv"), getFileNames(report));
+        assertEquals(Arrays.asList("b2.tsv"), report.getFailedFiles());
+        assertEquals("Error pushing to table: b2.tsv", report.getResults().get(3).getFailure().getMessage());
+        assertEquals(2, backend.maxRunning.get());
+
+        // The second stage starts once every file of the first has been pushed
+        List<String> events = backend.events;
+        int lastOfFirstStage = Math.max(events.indexOf("end a1"), events.indexOf("end a2"));
+        for (String name : Arrays.asList("b1", "b2", "b3")) {
+            assertTrue(events.toString(), events.indexOf("start " + name) > lastOfFirstStage);
+        }
+        assertEquals("id,name", backend.columns);
+
+        // Backends which cannot count the rows loaded, such as the mysql client, report -1 rows
+        for (TransferResult result : report.getResults()) {
+            assertEquals(-1, result.getRows());
+            assertEquals(new File(dir, result.getFileName()).length(), result.getBytes());
+        }
+
+        try {
+            cmd.push(Collections.singleton("b2.tsv"));
+            fail("Failed push should throw");
+        } catch (DbException e) {
+            assertEquals("Error pushing files: b2.tsv", e.getMessage());
+        }
+        FileUtils.deleteDirectory(dir);
+    }
+
+    private static List<String> getFileNames(TransferReport report) {
+        List<String> names = new ArrayList<>();
+        for (TransferResult result : report.getResults()) {
+            names.add(result.getFileName());
+        }
+        return names;
+    }
+
+    /**
+     * Backend recording the start and end of each push, which takes 50 ms and reports -1 rows like the mysql client
+     */
+    private static class FakeBackend implements DbCmdBackend {
+
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger maxRunning = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final String failingTable;
+        volatile String columns;
+
+        FakeBackend(String failingTable) {
+            this.failingTable = failingTable;
+        }
+
+        @Override
+        public void runAdmin(String query) {
+        }
+
+        @Override
+        public void runQuery(String query) {
+        }
+
+        @Override
+        public long importFile(String filePath, String columns) throws DbException {
+            String table = SqlUtil.getTableName(filePath);
+            this.columns = columns;
+            events.add("start " + table);
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+                events.add("end " + table);
+            }
+            if (table.equals(failingTable)) {
+                throw new DbException("Import failed");
+            }
+            return -1;
+        }
+
+    }
+
 }
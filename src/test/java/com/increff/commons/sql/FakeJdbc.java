@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+/**
+ * Proxy based JDBC objects for testing without a database. Statements prepared and executed through the connections
+ * of a FakeJdbc are recorded, and their results are produced by its {@link Handler}
+ */
+class FakeJdbc {
+
+	interface Handler {
+		/**
+		 * @return ResultSet for a query, otherwise an update count, or null for 0
+		 */
+		Object execute(String sql, List<Object> params) throws SQLException;
+	}
+
+	final List<String> prepared = Collections.synchronizedList(new ArrayList<>());
+	final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+	final List<List<Object>> parameters = Collections.synchronizedList(new ArrayList<>());
+	int openConnections;
+	int openStatements;
+	// Connections handed out by the DataSource
+	int borrows;
+	int commits;
+	private volatile Handler handler = (sql, params) -> null;
+	private String catalog;
+	// Closed connections of the DataSource, handed out again like a pool does
+	private final List<Connection> idle = new ArrayList<>();
+
+	void setHandler(Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * @param catalog Schema selected on new connections, as by the JDBC URL
+	 */
+	void setCatalog(String catalog) {
+		this.catalog = catalog;
+	}
+
+	/**
+	 * DataSource reusing closed connections, which keep their state such as the selected schema
+	 */
+	DataSource getDataSource() {
+		return (DataSource) Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { DataSource.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getConnection":
+						synchronized (this) {
+							borrows++;
+							if (!idle.isEmpty()) {
+								openConnections++;
+								return idle.remove(idle.size() - 1);
+							}
+						}
+						return getConnection();
+					case "getLogWriter":
+						return (PrintWriter) null;
+					case "getParentLogger":
+						return Logger.getGlobal();
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	Connection getConnection() {
+		synchronized (this) {
+			openConnections++;
+		}
+		// Auto-commit mode and selected schema of the connection
+		Object[] state = { true, catalog };
+		return (Connection) Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "prepareStatement":
+						prepared.add((String) args[0]);
+						return newStatement((String) args[0], state);
+					case "createStatement":
+						return newStatement(null, state);
+					case "close":
+						synchronized (this) {
+							if (!idle.contains(proxy)) {
+								idle.add((Connection) proxy);
+								openConnections--;
+							}
+						}
+						return null;
+					case "isClosed":
+						synchronized (this) {
+							return idle.contains(proxy);
+						}
+					case "getAutoCommit":
+						return state[0];
+					case "setAutoCommit":
+						state[0] = args[0];
+						return null;
+					case "getCatalog":
+						return state[1];
+					case "setCatalog":
+						// Fails like USE when the handler rejects the schema
+						handler.execute("USE " + args[0], Collections.emptyList());
+						state[1] = args[0];
+						return null;
+					case "commit":
+						synchronized (this) {
+							commits++;
+						}
+						return null;
+					case "rollback":
+						return null;
+					case "equals":
+						return proxy == args[0];
+					case "hashCode":
+						return System.identityHashCode(proxy);
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private Object newStatement(String preparedSql, Object[] connectionState) {
+		synchronized (this) {
+			openStatements++;
+		}
+		List<Object> params = new ArrayList<>();
+		// Parameters of a prepared statement, or SQL of a plain statement, per batched statement
+		List<Object> batch = new ArrayList<>();
+		Object[] state = { Boolean.FALSE, null };
+		Class<?> type = preparedSql == null ? java.sql.Statement.class : java.sql.PreparedStatement.class;
+		return Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+			String name = method.getName();
+			if (name.startsWith("set") && args != null && args.length == 2 && args[0] instanceof Integer) {
+				int index = (Integer) args[0];
+				while (params.size() < index) {
+					params.add(null);
+				}
+				params.set(index - 1, args[1]);
+				return null;
+			}
+			switch (name) {
+			case "addBatch":
+				batch.add(args == null ? new ArrayList<>(params) : args[0]);
+				return null;
+			case "clearParameters":
+				params.clear();
+				return null;
+			case "executeBatch":
+				if (preparedSql != null) {
+					executed.add(preparedSql);
+					parameters.add(new ArrayList<>(params));
+				}
+				int[] counts = new int[batch.size()];
+				try {
+					for (int i = 0; i < batch.size(); i++) {
+						Object result;
+						if (preparedSql != null) {
+							@SuppressWarnings("unchecked")
+							List<Object> batchParams = (List<Object>) batch.get(i);
+							result = handler.execute(preparedSql, batchParams);
+						} else {
+							result = execute((String) batch.get(i), Collections.emptyList(), connectionState);
+						}
+						counts[i] = result instanceof Integer ? (Integer) result : 0;
+					}
+				} finally {
+					batch.clear();
+				}
+				return counts;
+			case "executeQuery":
+			case "executeUpdate":
+			case "execute":
+				String sql = args != null && args.length > 0 ? (String) args[0] : preparedSql;
+				Object result = execute(sql, new ArrayList<>(params), connectionState);
+				state[1] = result;
+				if (name.equals("executeQuery")) {
+					return (ResultSet) result;
+				}
+				if (name.equals("execute")) {
+					return result instanceof ResultSet;
+				}
+				return result instanceof Integer ? (Integer) result : 0;
+			case "getResultSet":
+				return state[1] instanceof ResultSet ? state[1] : null;
+			case "getUpdateCount":
+				return state[1] instanceof Integer ? (Integer) state[1] : -1;
+			case "setFetchSize":
+			case "setQueryTimeout":
+				return null;
+			case "close":
+				synchronized (this) {
+					if (!(Boolean) state[0]) {
+						state[0] = Boolean.TRUE;
+						openStatements--;
+					}
+				}
+				return null;
+			case "isClosed":
+				return state[0];
+			case "isWrapperFor":
+				return false;
+			default:
+				throw new UnsupportedOperationException(name);
+			}
+		});
+	}
+
+	/**
+	 * Record and run a statement. Dropping the selected schema unselects it, as MySQL does
+	 */
+	private Object execute(String sql, List<Object> params, Object[] connectionState) throws SQLException {
+		executed.add(sql);
+		parameters.add(params);
+		Object result = handler.execute(sql, params);
+		String catalog = (String) connectionState[1];
+		if (catalog != null && sql.matches("(?i)DROP DATABASE (IF EXISTS )?`?" + Pattern.quote(catalog) + "`?")) {
+			connectionState[1] = null;
+		}
+		return result;
+	}
+
+	/**
+	 * Result set of string columns, positioned before the first row
+	 */
+	static ResultSet newResultSet(String[] names, String[]... rows) {
+		int[] types = new int[names.length];
+		Arrays.fill(types, Types.VARCHAR);
+		return newResultSet(names, types, rows);
+	}
+
+	/**
+	 * Result set positioned before the first row, whose columns report the given JDBC types. Values are given as the
+	 * strings returned by getString
+	 */
+	static ResultSet newResultSet(String[] names, int[] types, String[]... rows) {
+		ResultSetMetaData rsm = (ResultSetMetaData) Proxy.newProxyInstance(getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getColumnCount":
+						return names.length;
+					case "getColumnName":
+					case "getColumnLabel":
+						return names[(Integer) args[0] - 1];
+					case "getColumnType":
+						return types[(Integer) args[0] - 1];
+					case "isSigned":
+						return true;
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+		// Current row and whether the last value read was null
+		int[] state = { -1, 0 };
+		boolean[] closed = { false };
+		return (ResultSet) Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> {
+					String name = method.getName();
+					if (name.startsWith("get") && args != null && args.length == 1 && !name.equals("getObject")
+							|| name.equals("getObject") && args.length == 1) {
+						int index = args[0] instanceof Integer ? (Integer) args[0] : findColumn(names, (String) args[0]);
+						String value = rows[state[0]][index - 1];
+						state[1] = value == null ? 1 : 0;
+						switch (name) {
+						case "getInt":
+							return value == null ? 0 : Integer.parseInt(value);
+						case "getLong":
+							return value == null ? 0L : Long.parseLong(value);
+						case "getDouble":
+							return value == null ? 0.0 : Double.parseDouble(value);
+						case "getFloat":
+							return value == null ? 0f : Float.parseFloat(value);
+						case "getShort":
+							return value == null ? (short) 0 : Short.parseShort(value);
+						case "getByte":
+							return value == null ? (byte) 0 : Byte.parseByte(value);
+						case "getBoolean":
+							return "1".equals(value) || "true".equalsIgnoreCase(value);
+						case "getBigDecimal":
+							return value == null ? null : new BigDecimal(value);
+						case "getDate":
+							return value == null ? null : Date.valueOf(value);
+						case "getTimestamp":
+							return value == null ? null : Timestamp.valueOf(value);
+						default:
+							return value;
+						}
+					}
+					switch (name) {
+					case "getMetaData":
+						return rsm;
+					case "next":
+						return ++state[0] < rows.length;
+					case "wasNull":
+						return state[1] == 1;
+					case "findColumn":
+						return findColumn(names, (String) args[0]);
+					case "close":
+						closed[0] = true;
+						return null;
+					case "isClosed":
+						return closed[0];
+					default:
+						throw new UnsupportedOperationException(name);
+					}
+				});
+	}
+
+	private static int findColumn(String[] names, String label) throws SQLException {
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].equalsIgnoreCase(label)) {
+				return i + 1;
+			}
+		}
+		throw new SQLException("Column not found: " + label);
+	}
+
+	private static ClassLoader getClassLoader() {
+		return FakeJdbc.class.getClassLoader();
+	}
+
+}
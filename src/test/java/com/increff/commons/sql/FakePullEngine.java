@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pull engine for testing without a database, which writes the rows returned by its {@link Source} for a query
+ */
+class FakePullEngine implements PullEngine {
+
+	interface Source {
+		/**
+		 * @return Header row followed by the rows of the query
+		 */
+		String[][] query(String query) throws DbException;
+	}
+
+	final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+	final AtomicInteger maxRunning = new AtomicInteger();
+	private final AtomicInteger running = new AtomicInteger();
+	private final Source source;
+	private long delayMillis;
+
+	FakePullEngine(Source source) {
+		this.source = source;
+	}
+
+	/**
+	 * @param delayMillis Time each pull takes, so that concurrent pulls overlap
+	 */
+	void setDelayMillis(long delayMillis) {
+		this.delayMillis = delayMillis;
+	}
+
+	@Override
+	public long pull(String query, File outFile, boolean append) throws DbException {
+		queries.add(query);
+		maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+		try {
+			if (delayMillis > 0) {
+				Thread.sleep(delayMillis);
+			}
+			String[][] rows = source.query(query);
+			try (TsvWriter writer = TsvWriter.open(outFile, append)) {
+				writer.writeHeader(rows[0]);
+				for (int i = 1; i < rows.length; i++) {
+					writer.writeRow(rows[i]);
+				}
+			}
+			return rows.length - 1;
+		} catch (IOException e) {
+			throw new DbException("Error writing file: " + outFile, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted", e);
+		} finally {
+			running.decrementAndGet();
+		}
+	}
+
+}
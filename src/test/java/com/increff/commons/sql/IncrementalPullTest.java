@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IncrementalPullTest {
+
+	@Test
+	public void testRangeQuery() {
+		IncrementalPull spec = new IncrementalPull("orders", "updated_at");
+		assertEquals("SELECT MAX(updated_at) FROM orders", spec.getUpperBoundQuery());
+		assertEquals("SELECT * FROM orders WHERE updated_at <= '2021-06-15 10:20:30'",
+				spec.getRangeQuery(null, "2021-06-15 10:20:30"));
+		spec.setColumns("id, status");
+		spec.setWhere("client_id = 7");
+		assertEquals("SELECT MAX(updated_at) FROM orders WHERE (client_id = 7)", spec.getUpperBoundQuery());
+		assertEquals("SELECT id, status FROM orders WHERE (client_id = 7) AND updated_at > '2021-06-15 10:20:30'"
+				+ " AND updated_at <= '2021-06-16 00:00:00'", spec.getRangeQuery("2021-06-15 10:20:30", "2021-06-16 00:00:00"));
+	}
+
+	@Test
+	public void testSqlLiteral() {
+		assertEquals("42", SqlUtil.toSqlLiteral("42"));
+		assertEquals("-1.50", SqlUtil.toSqlLiteral("-1.50"));
+		assertEquals("'1e5'", SqlUtil.toSqlLiteral("1e5"));
+		assertEquals("'it''s \\\\ x'", SqlUtil.toSqlLiteral("it's \\ x"));
+	}
+
+	@Test
+	public void testAppendsNewRows() throws IOException, DbException {
+		File dir = Files.createTempDirectory("incremental").toFile();
+		List<String[]> table = new ArrayList<>();
+		boolean[] failing = { false };
+		FakePullEngine engine = newEngine(table, failing);
+		DbCmd cmd = newDbCmd(dir, engine);
+		IncrementalPull spec = new IncrementalPull("orders", "id");
+		File file = new File(dir, "orders.tsv");
+
+		addRows(table, 1, 3);
+		assertEquals(3, cmd.pull("orders", spec));
+		assertEquals("3", cmd.getWatermark("orders"));
+		assertEquals(0, cmd.pull("orders", spec));
+		addRows(table, 4, 5);
+		assertEquals(2, cmd.pull("orders", spec));
+		assertEquals("SELECT * FROM orders WHERE id > 3 AND id <= 5", engine.queries.get(engine.queries.size() - 1));
+		assertEquals("id\tname\n1\to1\n2\to2\n3\to3\n4\to4\n5\to5\n", read(file));
+
+		// A failed pull leaves the file and the watermark as they were
+		addRows(table, 6, 6);
+		failing[0] = true;
+		try {
+			cmd.pull("orders", spec);
+			fail("Failed pull should throw");
+		} catch (DbException e) {
+			assertEquals("5", cmd.getWatermark("orders"));
+		}
+		failing[0] = false;
+
+		// Rows appended by a pull whose watermark was not saved are dropped
+		FileUtils.writeStringToFile(file, "6\to6\n", StandardCharsets.UTF_8, true);
+		assertEquals(1, cmd.pull("orders", spec));
+		assertEquals("6", cmd.getWatermark("orders"));
+		assertEquals("id\tname\n1\to1\n2\to2\n3\to3\n4\to4\n5\to5\n6\to6\n", read(file));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testOtherPullsOfFile() throws IOException, DbException {
+		File dir = Files.createTempDirectory("incremental").toFile();
+		List<String[]> table = new ArrayList<>();
+		DbCmd cmd = newDbCmd(dir, newEngine(table, new boolean[1]));
+		IncrementalPull spec = new IncrementalPull("orders", "id");
+		addRows(table, 1, 3);
+		cmd.pull("orders", spec);
+
+		// A full pull of the same file clears its watermark, so the next incremental pull starts afresh
+		cmd.pull("orders.tsv", "SELECT * FROM orders WHERE id <= 2");
+		assertNull(cmd.getWatermark("orders"));
+		spec.setInitialWatermark("2");
+		assertEquals(1, cmd.pull("orders", spec));
+		assertEquals("id\tname\n1\to1\n2\to2\n3\to3\n", read(new File(dir, "orders.tsv")));
+
+		// A file replaced by other means is not truncated
+		FileUtils.writeStringToFile(new File(dir, "orders.tsv"), "id\tname\n7\tother\n1\to1\n2\to2\n",
+				StandardCharsets.UTF_8);
+		addRows(table, 4, 4);
+		try {
+			cmd.pull("orders", spec);
+			fail("Changed file should fail");
+		} catch (DbException e) {
+			assertEquals("File was changed since its last incremental pull: orders.tsv", e.getMessage());
+		}
+
+		// A deleted file is started afresh
+		new File(dir, "orders.tsv").delete();
+		assertEquals(1, cmd.pull("orders", spec));
+		assertEquals("id\tname\n4\to4\n", read(new File(dir, "orders.tsv")));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testDeflateIsRejected() throws IOException, DbException {
+		File dir = Files.createTempDirectory("incremental").toFile();
+		List<String[]> table = new ArrayList<>();
+		FakePullEngine engine = newEngine(table, new boolean[1]);
+		DbCmd cmd = newDbCmd(dir, engine);
+		addRows(table, 1, 3);
+		try {
+			cmd.pull("orders.zz", new IncrementalPull("orders", "id"));
+			fail("DEFLATE compressed file should be rejected");
+		} catch (DbException e) {
+			assertEquals("Cannot pull incrementally into DEFLATE compressed file: orders.zz", e.getMessage());
+		}
+		assertTrue(engine.queries.isEmpty());
+		assertNull(cmd.getWatermark("orders.zz"));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private static DbCmd newDbCmd(File dir, FakePullEngine engine) {
+		DbCmd cmd = new DbCmd(dir.getPath(), new DbQuery(new FakeJdbc().getDataSource()));
+		cmd.setPullEngine(engine);
+		return cmd;
+	}
+
+	/**
+	 * Engine answering the MAX and range queries of an IncrementalPull on id from the rows of a table, failing range
+	 * queries while failing[0] is set
+	 */
+	private static FakePullEngine newEngine(List<String[]> table, boolean[] failing) {
+		Pattern range = Pattern.compile("(?:id > (\\d+) AND )?id <= (\\d+)");
+		return new FakePullEngine(query -> {
+			List<String[]> rows = new ArrayList<>();
+			if (query.startsWith("SELECT MAX(id)")) {
+				rows.add(new String[] { "MAX(id)" });
+				rows.add(new String[] { table.isEmpty() ? null : table.get(table.size() - 1)[0] });
+				return rows.toArray(new String[0][]);
+			}
+			if (failing[0]) {
+				throw new DbException("Query failed");
+			}
+			Matcher m = range.matcher(query);
+			assertTrue(query, m.find());
+			long lower = m.group(1) == null ? Long.MIN_VALUE : Long.parseLong(m.group(1));
+			long upper = Long.parseLong(m.group(2));
+			rows.add(new String[] { "id", "name" });
+			for (String[] row : table) {
+				long id = Long.parseLong(row[0]);
+				if (id > lower && id <= upper) {
+					rows.add(row);
+				}
+			}
+			return rows.toArray(new String[0][]);
+		});
+	}
+
+	private static void addRows(List<String[]> table, int from, int to) {
+		for (int i = from; i <= to; i++) {
+			table.add(new String[] { String.valueOf(i), "o" + i });
+		}
+	}
+
+	private static String read(File file) throws IOException {
+		return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JdbcBackendTest {
+
+	private File dir;
+	private FakeJdbc jdbc;
+	private Set<String> databases;
+	private DbQuery dbQuery;
+	private DbCmd cmd;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("jdbcbackend").toFile();
+		databases = new HashSet<>(Collections.singleton("shop"));
+		jdbc = new FakeJdbc();
+		jdbc.setCatalog("shop");
+		jdbc.setHandler((sql, params) -> {
+			String[] words = sql.split(" ");
+			if (sql.startsWith("USE ") && !databases.contains(words[1])) {
+				throw new SQLException("Unknown database '" + words[1] + "'");
+			}
+			if (sql.startsWith("CREATE DATABASE ")) {
+				databases.add(words[2]);
+			}
+			if (sql.startsWith("DROP DATABASE IF EXISTS ")) {
+				databases.remove(words[4]);
+			}
+			if (sql.startsWith("SELECT id, name")) {
+				return FakeJdbc.newResultSet(new String[] { "id", "name" }, new String[] { "1", "a" },
+						new String[] { "2", null });
+			}
+			if (sql.startsWith("SELECT")) {
+				return FakeJdbc.newResultSet(new String[] { "id" });
+			}
+			return null;
+		});
+		dbQuery = new DbQuery(jdbc.getDataSource());
+		cmd = new DbCmd(dir.getPath(), dbQuery);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testOperations() throws DbException, IOException {
+		cmd.createDb("archive");
+		cmd.dropDb("archive");
+		cmd.processQuery("UPDATE orders SET status = 'done'");
+		cmd.truncate("orders");
+		cmd.delete("lines");
+		assertEquals(Arrays.asList("CREATE DATABASE archive DEFAULT CHARACTER SET utf8", "DROP DATABASE IF EXISTS archive",
+				"UPDATE orders SET status = 'done'", "truncate table orders", "delete from lines"), jdbc.executed);
+
+		// Pulls go through a JdbcPullEngine
+		cmd.pull("orders.tsv", "SELECT id, name FROM orders");
+		assertEquals("id\tname\n1\ta\n2\tNULL\n",
+				FileUtils.readFileToString(new File(dir, "orders.tsv"), StandardCharsets.UTF_8));
+
+		// Pushes stream the file with LOAD DATA LOCAL INFILE, which the fake driver does not support
+		try {
+			cmd.push("orders.tsv");
+			fail("Push should need the MySQL driver");
+		} catch (DbException e) {
+			assertEquals("Error pushing to table: orders.tsv", e.getMessage());
+			assertEquals("JDBC driver does not support LOAD DATA LOCAL INFILE from a stream",
+					e.getCause().getCause().getMessage());
+		}
+
+		// Chunked deletes need a JdbcBackend
+		jdbc.executed.clear();
+		assertEquals(0, cmd.delete(new ChunkedDelete("orders", "id")));
+		assertEquals(Arrays.asList("SELECT id FROM orders ORDER BY id LIMIT 1 OFFSET 999", "DELETE FROM orders"),
+				jdbc.executed);
+		cmd.setBackend(new CliBackend(new SqlUtil("localhost", "user", "password", "shop"), () -> null));
+		try {
+			cmd.delete(new ChunkedDelete("orders", "id"));
+			fail("Chunked delete should need a JdbcBackend");
+		} catch (DbException e) {
+			assertEquals("Chunked delete needs a JdbcBackend, table: orders", e.getMessage());
+		}
+		assertEquals(0, jdbc.openConnections);
+		assertEquals(0, jdbc.openStatements);
+	}
+
+	@Test
+	public void testMultipleStatements() throws DbException {
+		// Statements separated by semicolons run like with the mysql client, without allowMultiQueries
+		cmd.processQuery("DELETE FROM orders WHERE id = 1; INSERT INTO orders VALUES (1, 'a');\n-- done\n");
+		assertEquals(Arrays.asList("DELETE FROM orders WHERE id = 1", "INSERT INTO orders VALUES (1, 'a')"),
+				jdbc.executed);
+		jdbc.executed.clear();
+		cmd.processQuery("UPDATE orders SET name = 'b';");
+		assertEquals(Arrays.asList("UPDATE orders SET name = 'b'"), jdbc.executed);
+		assertEquals(0, jdbc.openConnections);
+	}
+
+	@Test
+	public void testRecreateSchema() throws DbException, SQLException {
+		// Dropping the schema of the connection unselects it, and it is selected again once recreated
+		cmd.dropDb("shop");
+		assertEquals(1, jdbc.openConnections);
+		cmd.createDb("shop");
+		assertEquals(0, jdbc.openConnections);
+		cmd.processQuery("CREATE TABLE orders (id INT)");
+		try (Connection con = jdbc.getDataSource().getConnection()) {
+			assertEquals("shop", con.getCatalog());
+		}
+		assertEquals(Arrays.asList("DROP DATABASE IF EXISTS shop", "CREATE DATABASE shop DEFAULT CHARACTER SET utf8",
+				"CREATE TABLE orders (id INT)"), jdbc.executed);
+	}
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class KeysetIteratorTest {
+
+	@Test
+	public void testPageQuery() {
+		KeysetIterator it = new KeysetIterator(null, "stock", "store_id", "sku_id", "bin");
+		it.setWhere("qty > 0");
+		it.setPageSize(500);
+		assertEquals("SELECT * FROM stock WHERE (qty > 0) ORDER BY store_id, sku_id, bin LIMIT 500",
+				it.getPageQuery(false));
+		assertEquals("SELECT * FROM stock WHERE store_id >= ? AND (store_id > ? OR (store_id = ? AND sku_id > ?)"
+				+ " OR (store_id = ? AND sku_id = ? AND bin > ?)) AND (qty > 0) ORDER BY store_id, sku_id, bin LIMIT 500",
+				it.getPageQuery(true));
+		KeysetIterator single = new KeysetIterator(null, "orders", "id");
+		assertEquals("SELECT * FROM orders WHERE (id > ?) ORDER BY id LIMIT 1000", single.getPageQuery(true));
+	}
+
+	@Test
+	public void testCheckpointToken() {
+		Object[] key = { 42L, "a;b c%", new BigDecimal("1.50"), Timestamp.valueOf("2021-06-15 10:20:30"),
+				new byte[] { 0, -1, 16 } };
+		String token = KeysetIterator.encodeKey(key);
+		Object[] decoded = KeysetIterator.decodeKey(token, key.length);
+		assertEquals(42L, decoded[0]);
+		assertEquals("a;b c%", decoded[1]);
+		assertEquals(new BigDecimal("1.50"), decoded[2]);
+		assertEquals(key[3], decoded[3]);
+		assertArrayEquals((byte[]) key[4], (byte[]) decoded[4]);
+		try {
+			KeysetIterator.decodeKey(token, 2);
+			fail("Token of another key should fail");
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().startsWith("Invalid checkpoint"));
+		}
+	}
+
+}
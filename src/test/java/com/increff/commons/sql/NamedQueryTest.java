@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NamedQueryTest {
+
+	@Test
+	public void testParse() {
+		NamedQuery query = NamedQuery.parse("SELECT * FROM t WHERE a = :{a} AND b > :{ b } OR a = :{a}");
+		assertEquals("SELECT * FROM t WHERE a = ? AND b > ? OR a = ?", query.getSql());
+		assertEquals(Arrays.asList("a", "b", "a"), query.getParameters());
+	}
+
+	@Test
+	public void testParseIgnoresQuotes() {
+		NamedQuery query = NamedQuery.parse("SELECT ':{a}', \"it\\\":{b}\", `:{c}` FROM t WHERE d = :{d}");
+		assertEquals("SELECT ':{a}', \"it\\\":{b}\", `:{c}` FROM t WHERE d = ?", query.getSql());
+		assertEquals(Arrays.asList("d"), query.getParameters());
+	}
+
+	@Test
+	public void testBind() throws DbException {
+		NamedQuery query = NamedQuery.parse("SELECT * FROM t WHERE a = :{a} AND b = :{b} OR a = :{a}");
+		HashMap<String, Object> values = new HashMap<>();
+		values.put("a", 1);
+		values.put("b", null);
+		assertArrayEquals(new Object[] { 1, null, 1 }, query.bind(values));
+	}
+
+	@Test(expected = DbException.class)
+	public void testBindMissingValue() throws DbException {
+		NamedQuery.parse("SELECT * FROM t WHERE a = :{a}").bind(new HashMap<String, Object>());
+	}
+
+	@Test
+	public void testGetNamedQuery() throws DbException {
+		HashMap<String, String> data = new HashMap<>();
+		data.put("key1", "users");
+
+		QueryResource queryResource = new QueryResource("");
+		NamedQuery query = queryResource.getNamedQuery("query03.txt", data);
+		assertEquals("SELECT * FROM users WHERE id = ? AND name <> ':{id}' AND code = ?", query.getSql());
+		assertEquals(Arrays.asList("id", "code"), query.getParameters());
+	}
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PartitionedPullTest {
+
+	@Test
+	public void testQueries() {
+		PartitionedPull spec = new PartitionedPull("orders", "id", 4);
+		assertEquals("SELECT * FROM orders", spec.getRangeQuery(null, null));
+		assertEquals("SELECT * FROM orders WHERE id < 10", spec.getRangeQuery(null, "10"));
+		assertEquals("SELECT * FROM orders WHERE id >= 10", spec.getRangeQuery("10", null));
+		assertEquals("SELECT MIN(id), MAX(id) FROM orders", spec.getBoundsQuery());
+		spec.setColumns("id, status");
+		spec.setWhere("client_id = 7");
+		spec.setSampleRate(0.01);
+		assertEquals("SELECT id, status FROM orders WHERE (client_id = 7) AND id >= 10 AND id < 20",
+				spec.getRangeQuery("10", "20"));
+		assertEquals("SELECT MIN(id), MAX(id) FROM orders WHERE (client_id = 7)", spec.getBoundsQuery());
+		assertEquals("SELECT id FROM orders WHERE (client_id = 7) AND RAND() < 0.01 ORDER BY id",
+				spec.getSampleQuery());
+	}
+
+	@Test
+	public void testParts() throws IOException, DbException {
+		File dir = Files.createTempDirectory("partitioned").toFile();
+		FakePullEngine engine = newEngine(ids(1, 10), null);
+		DbCmd cmd = newDbCmd(dir, engine);
+		PartitionedPull spec = new PartitionedPull("orders", "id", 3);
+		spec.setMerge(false);
+
+		// MIN 1 and MAX 10 split evenly at 4 and 7, with open ended first and last ranges
+		TransferReport report = cmd.pull("orders.tsv", spec);
+		assertFalse(report.hasFailures());
+		assertEquals("SELECT MIN(id), MAX(id) FROM orders", engine.queries.get(0));
+		assertEquals(Arrays.asList("SELECT * FROM orders WHERE id < 4", "SELECT * FROM orders WHERE id >= 4 AND id < 7",
+				"SELECT * FROM orders WHERE id >= 7"), sorted(engine.queries.subList(1, engine.queries.size())));
+		assertEquals(Arrays.asList("orders.part000.tsv", "orders.part001.tsv", "orders.part002.tsv"),
+				getFileNames(report));
+		assertEquals("id\tname\n1\to1\n2\to2\n3\to3\n", read(new File(dir, "orders.part000.tsv")));
+		assertEquals("id\tname\n4\to4\n5\to5\n6\to6\n", read(new File(dir, "orders.part001.tsv")));
+		assertEquals("id\tname\n7\to7\n8\to8\n9\to9\n10\to10\n", read(new File(dir, "orders.part002.tsv")));
+		assertFalse(new File(dir, "orders.tsv").exists());
+
+		// Part numbers go before the .tsv and compression extensions
+		report = cmd.pull("orders.tsv.gz", spec);
+		assertEquals(Arrays.asList("orders.part000.tsv.gz", "orders.part001.tsv.gz", "orders.part002.tsv.gz"),
+				getFileNames(report));
+		report = cmd.pull("orders", spec);
+		assertEquals(Arrays.asList("orders.part000", "orders.part001", "orders.part002"), getFileNames(report));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testMerge() throws IOException, DbException {
+		File dir = Files.createTempDirectory("partitioned").toFile();
+		DbCmd cmd = newDbCmd(dir, newEngine(ids(1, 10), null));
+		String expected = "id\tname\n1\to1\n2\to2\n3\to3\n4\to4\n5\to5\n6\to6\n7\to7\n8\to8\n9\to9\n10\to10\n";
+
+		// Only the header of the first part is kept
+		TransferReport report = cmd.pull("orders.tsv", new PartitionedPull("orders", "id", 3));
+		assertEquals(3, report.getResults().size());
+		assertEquals(expected, read(new File(dir, "orders.tsv")));
+		assertEquals(Arrays.asList("orders.tsv"), Arrays.asList(dir.list()));
+
+		cmd.pull("orders.tsv.gz", new PartitionedPull("orders", "id", 3));
+		assertEquals(expected, read(decompress(dir, "orders.tsv.gz")));
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testSplitPoints() throws IOException, DbException {
+		File dir = Files.createTempDirectory("partitioned").toFile();
+
+		// More partitions than keys repeat split points, which are dropped
+		FakePullEngine engine = newEngine(ids(5, 6), null);
+		newDbCmd(dir, engine).pull("orders.tsv", new PartitionedPull("orders", "id", 4));
+		assertEquals(Arrays.asList("SELECT * FROM orders WHERE id < 5", "SELECT * FROM orders WHERE id >= 5 AND id < 6",
+				"SELECT * FROM orders WHERE id >= 6"), sorted(engine.queries.subList(1, engine.queries.size())));
+		assertEquals("id\tname\n5\to5\n6\to6\n", read(new File(dir, "orders.tsv")));
+
+		// An empty table is pulled as a single range
+		engine = newEngine(new ArrayList<>(), null);
+		newDbCmd(dir, engine).pull("orders.tsv", new PartitionedPull("orders", "id", 4));
+		assertEquals(Arrays.asList("SELECT MIN(id), MAX(id) FROM orders", "SELECT * FROM orders"), engine.queries);
+		assertEquals("id\tname\n", read(new File(dir, "orders.tsv")));
+
+		// Sampled keys are split at their quantiles
+		List<String[]> table = ids(1, 4);
+		table.addAll(ids(100, 103));
+		engine = newEngine(table, null);
+		PartitionedPull spec = new PartitionedPull("orders", "id", 2);
+		spec.setSampleRate(0.5);
+		newDbCmd(dir, engine).pull("orders.tsv", spec);
+		assertEquals(Arrays.asList("SELECT * FROM orders WHERE id < 100", "SELECT * FROM orders WHERE id >= 100"),
+				sorted(engine.queries.subList(1, engine.queries.size())));
+
+		try {
+			newDbCmd(dir, newEngine(Arrays.asList(new String[][] { { "a1", "x" } }), null))
+					.pull("orders.tsv", new PartitionedPull("orders", "id", 2));
+			fail("Non numeric key should fail");
+		} catch (DbException e) {
+			assertEquals("Key column is not an integer: id", e.getMessage());
+		}
+		FileUtils.deleteDirectory(dir);
+	}
+
+	@Test
+	public void testFailure() throws IOException, DbException {
+		File dir = Files.createTempDirectory("partitioned").toFile();
+		DbCmd cmd = newDbCmd(dir, newEngine(ids(1, 10), "id >= 4 AND id < 7"));
+		try {
+			cmd.pull("orders.tsv", new PartitionedPull("orders", "id", 3));
+			fail("Failed part should fail the pull");
+		} catch (DbException e) {
+			assertEquals("Error pulling file: orders.tsv, failed parts: orders.part001.tsv", e.getMessage());
+		}
+		// Parts pulled before the failure are removed, and no merged file is written
+		assertEquals(0, dir.list().length);
+
+		// Without merging, the failure is reported and the other parts are kept
+		PartitionedPull spec = new PartitionedPull("orders", "id", 3);
+		spec.setMerge(false);
+		TransferReport report = cmd.pull("orders.tsv", spec);
+		assertEquals(Arrays.asList("orders.part001.tsv"), report.getFailedFiles());
+		assertTrue(new File(dir, "orders.part000.tsv").exists());
+		assertTrue(new File(dir, "orders.part002.tsv").exists());
+		FileUtils.deleteDirectory(dir);
+	}
+
+	private static DbCmd newDbCmd(File dir, FakePullEngine engine) {
+		DbCmd cmd = new DbCmd(dir.getPath(), new DbQuery(new FakeJdbc().getDataSource()));
+		cmd.setPullEngine(engine);
+		return cmd;
+	}
+
+	/**
+	 * Engine answering the bounds, sample and range queries of a PartitionedPull on id from the rows of a table,
+	 * failing the range query containing failingRange
+	 */
+	private static FakePullEngine newEngine(List<String[]> table, String failingRange) {
+		Pattern lowerBound = Pattern.compile("id >= (\\d+)");
+		Pattern upperBound = Pattern.compile("id < (\\d+)");
+		return new FakePullEngine(query -> {
+			List<String[]> rows = new ArrayList<>();
+			if (query.startsWith("SELECT MIN(id)")) {
+				rows.add(new String[] { "MIN(id)", "MAX(id)" });
+				if (table.isEmpty()) {
+					rows.add(new String[] { null, null });
+				} else {
+					rows.add(new String[] { table.get(0)[0], table.get(table.size() - 1)[0] });
+				}
+				return rows.toArray(new String[0][]);
+			}
+			if (query.startsWith("SELECT id FROM")) {
+				// Every other row is sampled
+				rows.add(new String[] { "id" });
+				for (int i = 0; i < table.size(); i += 2) {
+					rows.add(new String[] { table.get(i)[0] });
+				}
+				return rows.toArray(new String[0][]);
+			}
+			if (failingRange != null && query.contains(failingRange)) {
+				throw new DbException("Query failed");
+			}
+			Matcher lower = lowerBound.matcher(query);
+			Matcher upper = upperBound.matcher(query);
+			long min = lower.find() ? Long.parseLong(lower.group(1)) : Long.MIN_VALUE;
+			long max = upper.find() ? Long.parseLong(upper.group(1)) : Long.MAX_VALUE;
+			rows.add(new String[] { "id", "name" });
+			for (String[] row : table) {
+				long id = Long.parseLong(row[0]);
+				if (id >= min && id < max) {
+					rows.add(row);
+				}
+			}
+			return rows.toArray(new String[0][]);
+		});
+	}
+
+	private static List<String[]> ids(int from, int to) {
+		List<String[]> table = new ArrayList<>();
+		for (int i = from; i <= to; i++) {
+			table.add(new String[] { String.valueOf(i), "o" + i });
+		}
+		return table;
+	}
+
+	/**
+	 * Ranges are pulled concurrently, so their queries are compared in order
+	 */
+	private static List<String> sorted(List<String> queries) {
+		List<String> sorted = new ArrayList<>(queries);
+		sorted.sort(null);
+		return sorted;
+	}
+
+	private static List<String> getFileNames(TransferReport report) {
+		List<String> names = new ArrayList<>();
+		for (TransferResult result : report.getResults()) {
+			names.add(result.getFileName());
+		}
+		return names;
+	}
+
+	private static File decompress(File dir, String fileName) throws IOException {
+		File file = new File(dir, "decompressed.tsv");
+		FileUtils.copyInputStreamToFile(Compression.newInputStream(new File(dir, fileName)), file);
+		return file;
+	}
+
+	private static String read(File file) throws IOException {
+		return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+	}
+
+}
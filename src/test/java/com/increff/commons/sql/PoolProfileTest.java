@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.apache.commons.dbcp2.ConnectionFactory;
+import org.apache.commons.dbcp2.PoolableConnection;
+import org.apache.commons.dbcp2.PoolableConnectionFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PoolProfileTest {
+
+	@Test
+	public void testValidationQuery() {
+		PoolProfile profile = PoolProfile.light();
+		assertNull(profile.getValidationQuery());
+		profile.setValidation(PoolProfile.Validation.QUERY);
+		assertEquals("SELECT 1", profile.getValidationQuery());
+		profile.setValidation(PoolProfile.Validation.IS_VALID);
+		assertNull(profile.getValidationQuery());
+		profile.setValidation(PoolProfile.Validation.NONE);
+		assertNull(profile.getValidationQuery());
+	}
+
+	@Test
+	public void testDefaults() throws DbException {
+		BasicDataSource ds = DbPoolUtil.initDataSource("com.mysql.cj.jdbc.Driver", "jdbc:mysql://localhost/db", "user",
+				"password", PoolProfile.heavy());
+		assertEquals("com.mysql.cj.jdbc.Driver", ds.getDriverClassName());
+		assertEquals("jdbc:mysql://localhost/db", ds.getUrl());
+		assertEquals("user", ds.getUsername());
+		assertEquals(30, ds.getInitialSize());
+		assertEquals(30, ds.getMaxIdle());
+		assertEquals(50, ds.getMaxTotal());
+		assertEquals(-1, ds.getMaxWaitMillis());
+		// Connections are validated with isValid, only once idle for 5 seconds
+		assertNull(ds.getValidationQuery());
+		assertEquals(5, ds.getValidationQueryTimeout());
+		assertTrue(ds.getTestOnBorrow());
+		assertEquals(5000, ((ProfiledDataSource) ds).getValidationIdleMillis());
+		assertFalse(ds.getTestWhileIdle());
+		assertFalse(ds.isPoolPreparedStatements());
+	}
+
+	@Test
+	public void testSettings() throws DbException {
+		PoolProfile profile = new PoolProfile(2, 8);
+		profile.setValidation(PoolProfile.Validation.QUERY);
+		profile.setValidationTimeoutSeconds(3);
+		profile.setIdleTestMillis(60000);
+		profile.setPoolPreparedStatements(true);
+		profile.setMaxOpenPreparedStatements(25);
+		profile.setMaxWaitMillis(1500);
+		BasicDataSource ds = DbPoolUtil.initDataSource("driver", "url", "user", "password", profile);
+		assertEquals(2, ds.getInitialSize());
+		assertEquals(2, ds.getMaxIdle());
+		assertEquals(8, ds.getMaxTotal());
+		assertEquals(1500, ds.getMaxWaitMillis());
+		assertEquals("SELECT 1", ds.getValidationQuery());
+		assertEquals(3, ds.getValidationQueryTimeout());
+		assertTrue(ds.getTestOnBorrow());
+		// Every borrow is validated
+		assertEquals(-1, ((ProfiledDataSource) ds).getValidationIdleMillis());
+		assertTrue(ds.getTestWhileIdle());
+		assertEquals(60000, ds.getTimeBetweenEvictionRunsMillis());
+		assertTrue(ds.isPoolPreparedStatements());
+		assertEquals(25, ds.getMaxOpenPreparedStatements());
+
+		profile.setValidation(PoolProfile.Validation.NONE);
+		ds = DbPoolUtil.initDataSource("driver", "url", "user", "password", profile);
+		assertNull(ds.getValidationQuery());
+		assertFalse(ds.getTestOnBorrow());
+	}
+
+	@Test
+	public void testIdleValidation() {
+		CountingFactory delegate = new CountingFactory();
+		ProfiledDataSource.IdleValidatingFactory factory = new ProfiledDataSource.IdleValidatingFactory(delegate,
+				delegate.connectionFactory, 5000);
+
+		// Recently used connections are not validated
+		assertTrue(factory.validateObject(newPooledObject(4999)));
+		assertEquals(0, delegate.validations);
+
+		// Connections idle for longer are validated by the configured factory
+		assertTrue(factory.validateObject(newPooledObject(5000)));
+		assertEquals(1, delegate.validations);
+		delegate.valid = false;
+		assertFalse(factory.validateObject(newPooledObject(60000)));
+		assertEquals(2, delegate.validations);
+	}
+
+	private static PooledObject<PoolableConnection> newPooledObject(long idleMillis) {
+		return new DefaultPooledObject<PoolableConnection>(null) {
+
+			@Override
+			public long getIdleTimeMillis() {
+				return idleMillis;
+			}
+		};
+	}
+
+	/**
+	 * Factory standing in for the one configured by BasicDataSource, counting the connections it validates
+	 */
+	private static class CountingFactory extends PoolableConnectionFactory {
+
+		final ConnectionFactory connectionFactory;
+		int validations;
+		boolean valid = true;
+
+		CountingFactory() {
+			this(() -> {
+				throw new UnsupportedOperationException();
+			});
+		}
+
+		private CountingFactory(ConnectionFactory connectionFactory) {
+			super(connectionFactory, null);
+			this.connectionFactory = connectionFactory;
+		}
+
+		@Override
+		public boolean validateObject(PooledObject<PoolableConnection> p) {
+			validations++;
+			return valid;
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.ByteArrayInputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PooledDbQueryTest {
+
+	private static final int THREADS = 8;
+	private static final int ITERATIONS = 50;
+
+	/**
+	 * Calls of one DataSource-backed DbQuery from several threads each borrow one connection and return it, also
+	 * when the call fails
+	 */
+	@Test
+	public void testConcurrentCalls() throws Exception {
+		FakeJdbc jdbc = new FakeJdbc();
+		jdbc.setHandler((sql, params) -> {
+			if (sql.contains("missing")) {
+				throw new SQLException("Table 'missing' doesn't exist");
+			}
+			if (sql.startsWith("SELECT")) {
+				return FakeJdbc.newResultSet(new String[] { "id" }, new String[] { "1" }, new String[] { "2" });
+			}
+			return 1;
+		});
+		// Connections acquired and released by the current call of each thread
+		ThreadLocal<int[]> counts = ThreadLocal.withInitial(() -> new int[2]);
+		DbQuery dbQuery = new DbQuery(jdbc.getDataSource()) {
+
+			@Override
+			protected Connection acquireConnection() throws DbException {
+				counts.get()[0]++;
+				return super.acquireConnection();
+			}
+
+			@Override
+			protected void releaseConnection(Connection con) {
+				counts.get()[1]++;
+				super.releaseConnection(con);
+			}
+
+		};
+		List<Callable<Object>> calls = new ArrayList<>();
+		calls.add(() -> dbQuery.executeQuery("SELECT id FROM orders"));
+		calls.add(() -> dbQuery.executeQuery("SELECT id FROM orders WHERE id > ?", 0));
+		calls.add(() -> dbQuery.execute("UPDATE orders SET status = 'CLOSED'"));
+		calls.add(() -> dbQuery.importData("orders.tsv", "orders"));
+		calls.add(() -> dbQuery.executeQuery("SELECT id FROM missing"));
+		calls.add(() -> dbQuery.execute("DELETE FROM missing"));
+		// Fails as the fake driver cannot stream LOAD DATA LOCAL INFILE
+		calls.add(() -> dbQuery.importData(new ByteArrayInputStream(new byte[0]), "orders", null, false));
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					int failures = 0;
+					for (int i = 0; i < ITERATIONS; i++) {
+						for (Callable<Object> call : calls) {
+							int[] count = counts.get();
+							count[0] = 0;
+							count[1] = 0;
+							try {
+								call.call();
+							} catch (DbException e) {
+								failures++;
+							}
+							assertArrayEquals(new int[] { 1, 1 }, count);
+						}
+					}
+					return failures;
+				}));
+			}
+			for (Future<Integer> future : futures) {
+				assertEquals(3 * ITERATIONS, (int) future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(THREADS * ITERATIONS * calls.size(), jdbc.borrows);
+		assertEquals(0, jdbc.openConnections);
+		assertEquals(0, jdbc.openStatements);
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryCacheTest {
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	public void testHitsAndInvalidation() throws DbException {
+		QueryCache cache = new QueryCache();
+		String query = "SELECT s.code, c.name FROM `db`.`store` s JOIN city c ON c.id = s.city_id WHERE s.id = ?";
+		cache.get(query, new Object[] { 1 }, () -> load(1));
+		cache.get(query, new Object[] { 1 }, () -> load(1));
+		cache.get(query, new Object[] { 2 }, () -> load(1));
+		assertEquals(2, loads.get());
+		assertEquals(1, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		cache.invalidateStatement("UPDATE sku SET name = 'x'");
+		assertEquals(2, cache.getSize());
+		cache.invalidateStatement("INSERT INTO city (name) VALUES ('from store')");
+		assertEquals(0, cache.getSize());
+		assertEquals(2, cache.getInvalidations());
+
+		cache.get(query, new Object[] { 1 }, () -> load(1));
+		cache.invalidate("DB.STORE");
+		assertEquals(0, cache.getSize());
+		assertEquals(0, cache.getBytes());
+	}
+
+	@Test
+	public void testTtlAndEviction() throws DbException {
+		QueryCache cache = new QueryCache();
+		cache.setTtlFunction(query -> query.contains("nocache") ? 0 : 60_000);
+		cache.get("SELECT 1 nocache", new Object[0], () -> load(1));
+		assertEquals(0, cache.getSize());
+
+		cache.setMaxBytes(4000);
+		for (int i = 0; i < 10; i++) {
+			cache.get("SELECT * FROM sku WHERE id = " + i, new Object[0], () -> load(5));
+		}
+		assertTrue(cache.getBytes() <= 4000);
+		assertTrue(cache.getEvictions() > 0);
+		assertEquals(10 - cache.getEvictions(), cache.getSize());
+		// Least recently used entries are evicted first
+		cache.get("SELECT * FROM sku WHERE id = 9", new Object[0], () -> load(5));
+		assertEquals(1, cache.getHits());
+	}
+
+	@Test
+	public void testTables() {
+		assertEquals(set("a", "b", "c"), SqlTables.getReadTables("select * from a x, b as y left join c on x.id = c.id"));
+		assertEquals(set("o"), SqlTables.getReadTables("SELECT * FROM (SELECT id FROM o) t -- FROM comment"));
+		assertEquals(set(), SqlTables.getReadTables("SELECT 'FROM x' AS s"));
+		assertNull(SqlTables.getReadTables("SHOW TABLES"));
+		assertEquals(set("t"), SqlTables.getWriteTables("TRUNCATE TABLE t"));
+		assertEquals(set("t"), SqlTables.getWriteTables("LOAD DATA LOCAL INFILE 'x' INTO TABLE `t` IGNORE 1 ROWS"));
+		assertEquals(set("a", "b"), SqlTables.getWriteTables("UPDATE a JOIN b ON a.id = b.id SET a.x = 1"));
+		assertEquals(set("a", "b"), SqlTables.getWriteTables("DROP TABLE IF EXISTS a, s.b"));
+		assertEquals(set("t"), SqlTables.getWriteTables("INSERT INTO t VALUES (1) ON DUPLICATE KEY UPDATE x = 1"));
+		assertEquals(set(), SqlTables.getWriteTables("SET NAMES utf8"));
+		assertNull(SqlTables.getWriteTables("CALL refresh()"));
+		String cte = "WITH RECURSIVE old (id) AS (SELECT id FROM orders WHERE created < NOW() - INTERVAL 1 YEAR) ";
+		assertEquals(set(), SqlTables.getWriteTables(cte + "SELECT * FROM old"));
+		assertEquals(set("orders", "old"), SqlTables.getReadTables(cte + "SELECT * FROM old"));
+		// Tables read by the statement are reported too, which only invalidates more than needed
+		assertEquals(set("stock", "old"),
+				SqlTables.getWriteTables(cte + "UPDATE stock SET qty = 0 WHERE id IN (SELECT id FROM old)"));
+		assertEquals(set("lines", "old"),
+				SqlTables.getWriteTables(cte + "DELETE lines FROM lines JOIN old ON lines.order_id = old.id"));
+		assertEquals(set("archive", "x"),
+				SqlTables.getWriteTables("WITH x AS (SELECT 1) INSERT INTO archive SELECT * FROM x"));
+		assertNull(SqlTables.getReadTables(cte + "DELETE FROM orders WHERE id IN (SELECT id FROM old)"));
+		assertNull(SqlTables.getWriteTables("WITH x AS (SELECT 1) TABLE x"));
+	}
+
+	private List<ResultRow> load(int rows) {
+		loads.incrementAndGet();
+		HashMap<String, Integer> columns = new HashMap<>();
+		columns.put("id", 0);
+		ResultRow[] result = new ResultRow[rows];
+		for (int i = 0; i < rows; i++) {
+			result[i] = new ResultRow(columns);
+			result[i].setTokens(new String[] { String.valueOf(i) });
+		}
+		return Arrays.asList(result);
+	}
+
+	private static HashSet<String> set(String... tables) {
+		HashSet<String> set = new HashSet<>();
+		Collections.addAll(set, tables);
+		return set;
+	}
+
+}
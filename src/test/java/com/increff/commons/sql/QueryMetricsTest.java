@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QueryMetricsTest {
+
+	@Test
+	public void testFingerprint() {
+		assertEquals("SELECT * FROM t1 WHERE id = ? AND name = ?",
+				QueryMetrics.fingerprint("SELECT  *\n FROM t1 WHERE id = 42 AND name = 'it''s' -- comment"));
+		assertEquals("SELECT a FROM `t 2` WHERE id IN (?+)",
+				QueryMetrics.fingerprint("SELECT a FROM `t 2` WHERE id IN (1, 2,3)"));
+		assertEquals("INSERT INTO t VALUES (?+)",
+				QueryMetrics.fingerprint("INSERT INTO t VALUES (1, 'a'), (2, 'b'), (3, \"c\")"));
+		assertEquals("SELECT ? FROM t", QueryMetrics.fingerprint("SELECT /* hint */ 1.5e3 FROM t"));
+	}
+
+	@Test
+	public void testPercentiles() {
+		QueryMetrics metrics = new QueryMetrics();
+		for (int i = 1; i <= 1000; i++) {
+			metrics.queryCompleted("SELECT " + i, i * 1000L, 1, -1, i % 100 != 0);
+		}
+		QueryStats stats = metrics.getSnapshot("SELECT ?");
+		assertEquals(1000, stats.getCount());
+		assertEquals(10, stats.getFailures());
+		assertEquals(1000, stats.getRows());
+		assertEquals(1000000, stats.getMaxNanos());
+		assertEquals(500000, stats.getP50Nanos(), 500000 / 8);
+		assertEquals(990000, stats.getP99Nanos(), 990000 / 8);
+		assertEquals(1, metrics.getSnapshot().size());
+	}
+
+	@Test
+	public void testMaxKeys() {
+		QueryMetrics metrics = new QueryMetrics();
+		metrics.setMaxKeys(2);
+		metrics.queryCompleted("SELECT a FROM t", 1, -1, -1, true);
+		metrics.queryCompleted("SELECT b FROM t", 1, -1, -1, true);
+		metrics.queryCompleted("SELECT c FROM t", 1, -1, -1, true);
+		assertEquals(1, metrics.getSnapshot(QueryMetrics.OTHER_KEY).getCount());
+	}
+
+}
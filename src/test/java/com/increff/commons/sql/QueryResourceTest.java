@@ -17,9 +17,11 @@ package com.increff.commons.sql;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.text.StringSubstitutor;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -64,6 +66,17 @@ public class QueryResourceTest {
 		assertEquals("SELECT ${key1} FROM ${key2} WHERE ${key3} = 100;", query01);
 	}
 
+	@Test
+	public void testGetQueryWithNullMap() throws DbException {
+		QueryResource queryResource = new QueryResource("");
+		String query01 = queryResource.getQuery("query01.txt", (Map<String, String>) null);
+		assertEquals("SELECT ${key1} FROM ${key2} WHERE ${key3} = 100;", query01);
+		for (String query : new String[] { "SELECT ${key1}", "$${key1} ${key4:-default}" }) {
+			assertEquals(query, StringSubstitutor.replace(query, (Map<String, String>) null),
+					QueryTemplate.compile(query).render(null));
+		}
+	}
+
 	@Test
 	public void testGetQueryWithRepeatingVariablesInQuery() throws DbException {
 		HashMap<String, String> map = new HashMap<>();
@@ -87,6 +100,37 @@ public class QueryResourceTest {
 		}
 	}
 
+	@Test
+	public void testQueryCache() throws DbException {
+		HashMap<String, String> map = new HashMap<>();
+		map.put("key1", "value1");
+
+		QueryResource queryResource = new QueryResource("");
+		queryResource.getQuery("query01.txt", map);
+		queryResource.getQuery("query01.txt", map);
+		queryResource.getQuery("query01.txt");
+		assertEquals(1, queryResource.getCacheMisses());
+		assertEquals(2, queryResource.getCacheHits());
+
+		queryResource.invalidate("query01.txt");
+		queryResource.getQuery("query01.txt");
+		assertEquals(2, queryResource.getCacheMisses());
+	}
+
+	@Test
+	public void testTemplateMatchesStringSubstitutor() {
+		HashMap<String, String> map = new HashMap<>();
+		map.put("key1", "value1");
+		map.put("key2", "${key1}");
+		map.put("key3", null);
+
+		String[] queries = { "SELECT ${key1} FROM ${key1}", "${key1}${key1}", "${key2}", "${key3} ${key4}",
+				"$${key1} ${key1}", "${key4:-default}", "${} ${key1", "no variables" };
+		for (String query : queries) {
+			assertEquals(query, StringSubstitutor.replace(query, map), QueryTemplate.compile(query).render(map));
+		}
+	}
+
 	@Test
 	public void testCommentFilter() throws IOException {
 		String s = IOUtils.resourceToString(resource, Charset.forName("utf-8"));
@@ -94,10 +138,10 @@ public class QueryResourceTest {
 		OperatingSystem os = OperatingSystem.getOs();
 		switch (os) {
 		case linux:
-			assertEquals(879, cleanedStr.length());			
+			assertEquals(881, cleanedStr.length());			
 			break;
 		case windows:
-			assertEquals(896, cleanedStr.length());
+			assertEquals(898, cleanedStr.length());
 			break;
 		default:
 			fail("Invalid operating system: " + os.toString());
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResultIteratorTest {
+
+	private FakeJdbc jdbc;
+	private List<ResultSet> resultSets = new ArrayList<>();
+	private List<String> completed = new ArrayList<>();
+
+	@Test
+	public void testIterate() throws DbException, SQLException {
+		ResultIterator iterator = newDbQuery().executeStream("SELECT id FROM orders");
+		List<String> ids = new ArrayList<>();
+		while (iterator.hasNext()) {
+			ids.add(iterator.next().getValue("id"));
+		}
+		assertEquals(Arrays.asList("1", "2", "3"), ids);
+
+		// Reaching the end closes the iterator
+		assertReleased();
+		assertEquals(Arrays.asList("SELECT id FROM orders 3 true"), completed);
+		try {
+			iterator.next();
+			fail("Exhausted iterator should throw");
+		} catch (NoSuchElementException e) {
+			// Expected
+		}
+		iterator.close();
+		assertEquals(1, completed.size());
+	}
+
+	@Test
+	public void testPartialClose() throws DbException, SQLException {
+		ResultIterator iterator = newDbQuery().executeStream("SELECT id FROM orders");
+		assertEquals("1", iterator.next().getValue("id"));
+		assertTrue(iterator.hasNext());
+		assertEquals(1, jdbc.openConnections);
+
+		iterator.close();
+		assertReleased();
+		assertFalse(iterator.hasNext());
+		assertEquals(Arrays.asList("SELECT id FROM orders 2 true"), completed);
+
+		// Closing again does nothing
+		iterator.close();
+		assertEquals(1, completed.size());
+	}
+
+	@Test
+	public void testStream() throws DbException, SQLException {
+		ResultIterator iterator = newDbQuery().executeStream("SELECT id FROM orders");
+		try (Stream<ResultRow> stream = iterator.stream()) {
+			assertEquals(Arrays.asList("1", "2"), stream.limit(2).map(row -> row.getValue("id"))
+					.collect(Collectors.toList()));
+			assertEquals(1, jdbc.openConnections);
+		}
+		// Closing the stream closes the iterator before the end of the result
+		assertReleased();
+		assertFalse(iterator.hasNext());
+		assertEquals(1, completed.size());
+		iterator.close();
+		assertEquals(1, completed.size());
+	}
+
+	@Test
+	public void testForEach() throws DbException, SQLException {
+		List<String> ids = new ArrayList<>();
+		assertEquals(3, newDbQuery().forEach("SELECT id FROM orders", row -> ids.add(row.getValue("id"))));
+		assertEquals(Arrays.asList("1", "2", "3"), ids);
+		assertEquals(0, jdbc.openStatements);
+		assertEquals(0, jdbc.openConnections);
+
+		// A failing handler stops the iteration and releases the connection
+		try {
+			newDbQuery().forEach("SELECT id FROM orders", row -> {
+				throw new DbException("Handler failed");
+			});
+			fail("Failed handler should throw");
+		} catch (DbException e) {
+			assertEquals("Handler failed", e.getMessage());
+		}
+		assertEquals(0, jdbc.openStatements);
+		assertEquals(0, jdbc.openConnections);
+		assertEquals(Arrays.asList("SELECT id FROM orders 3 true", "SELECT id FROM orders 0 false"), completed);
+	}
+
+	/**
+	 * DbQuery over fake connections returning the ids 1 to 3, recording the queries completed
+	 */
+	private DbQuery newDbQuery() {
+		jdbc = new FakeJdbc();
+		jdbc.setHandler((sql, params) -> {
+			ResultSet rs = FakeJdbc.newResultSet(new String[] { "id" }, new String[] { "1" }, new String[] { "2" },
+					new String[] { "3" });
+			resultSets.add(rs);
+			return rs;
+		});
+		DbQuery dbQuery = new DbQuery(jdbc.getDataSource());
+		dbQuery.setQueryListener(new QueryListener() {
+
+			@Override
+			public void connectionAcquired(long nanos) {
+			}
+
+			@Override
+			public void queryCompleted(String query, long nanos, long rows, long bytes, boolean success) {
+				completed.add(query + " " + rows + " " + success);
+			}
+		});
+		return dbQuery;
+	}
+
+	private void assertReleased() throws SQLException {
+		assertTrue(resultSets.get(resultSets.size() - 1).isClosed());
+		assertEquals(0, jdbc.openStatements);
+		assertEquals(0, jdbc.openConnections);
+	}
+
+}
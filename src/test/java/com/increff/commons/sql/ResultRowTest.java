@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ResultRowTest {
+
+	@Test
+	public void testNameAndIndexAgree() throws SQLException {
+		ResultSet rs = newResultSet(new String[] { "id", "name", "day" }, new String[] { "7", "Alice", "2021-06-15" });
+		HashMap<String, Integer> columns = JdbcUtil.getColumMap(rs);
+		ResultRow row = JdbcUtil.getResultRow(rs, columns);
+		assertEquals(row.getValue(0), row.getValue("id"));
+		assertEquals(row.getValue(2), row.getValue("day"));
+		assertEquals(Long.valueOf(7), row.getLong("id"));
+	}
+
+	@Test
+	public void testColumnHandles() {
+		HashMap<String, Integer> columns = new HashMap<>();
+		columns.put("Id", 0);
+		columns.put("Name", 1);
+		columns.put("Day", 2);
+		ResultRow row = new ResultRow(columns);
+		row.setTokens(new String[] { "7", null, "2021-06-15" });
+
+		ColumnHandle id = row.getColumnHandle("Id");
+		ColumnHandle day = row.getColumnHandle("DAY", true);
+		assertEquals(Integer.valueOf(7), row.getInteger(id));
+		assertEquals(LocalDate.of(2021, 6, 15), row.getLocalDate(day));
+		assertNull(row.getString(ColumnHandle.of(columns, "name", true)));
+		assertEquals("Day", day.getName());
+	}
+
+	@Test
+	public void testInvalidColumnHandles() {
+		HashMap<String, Integer> columns = new HashMap<>();
+		columns.put("id", 0);
+		columns.put("ID", 1);
+		try {
+			ColumnHandle.of(columns, "Id", true);
+			fail("Ambiguous column should fail");
+		} catch (RuntimeException e) {
+			assertEquals("Ambiguous column:Id", e.getMessage());
+		}
+		try {
+			ColumnHandle.of(columns, "name", true);
+			fail("Missing column should fail");
+		} catch (RuntimeException e) {
+			assertEquals("Invalid column:name", e.getMessage());
+		}
+		assertEquals(1, ColumnHandle.of(columns, "ID", true).getIndex());
+	}
+
+	/**
+	 * Single row result set, positioned on the row
+	 */
+	private static ResultSet newResultSet(String[] names, String[] values) {
+		ResultSetMetaData rsm = (ResultSetMetaData) Proxy.newProxyInstance(getClassLoader(),
+				new Class<?>[] { ResultSetMetaData.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getColumnCount":
+						return names.length;
+					case "getColumnName":
+					case "getColumnLabel":
+						return names[(Integer) args[0] - 1];
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+		return (ResultSet) Proxy.newProxyInstance(getClassLoader(), new Class<?>[] { ResultSet.class },
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+					case "getMetaData":
+						return rsm;
+					case "getString":
+						return values[(Integer) args[0] - 1];
+					default:
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+	private static ClassLoader getClassLoader() {
+		return ResultRowTest.class.getClassLoader();
+	}
+
+}
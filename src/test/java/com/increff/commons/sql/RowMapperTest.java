@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RowMapperTest {
+
+	public enum Status {
+		OPEN, CLOSED
+	}
+
+	public static class Order {
+
+		private long id;
+		private String skuCode;
+		private BigDecimal amount;
+		private Status status;
+		private LocalDate orderDate;
+		private boolean paid;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getSkuCode() {
+			return skuCode;
+		}
+
+		public void setSkuCode(String skuCode) {
+			this.skuCode = skuCode;
+		}
+
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		public void setAmount(BigDecimal amount) {
+			this.amount = amount;
+		}
+
+		public Status getStatus() {
+			return status;
+		}
+
+		public void setStatus(Status status) {
+			this.status = status;
+		}
+
+		public LocalDate getOrderDate() {
+			return orderDate;
+		}
+
+		public void setOrderDate(LocalDate orderDate) {
+			this.orderDate = orderDate;
+		}
+
+		public boolean isPaid() {
+			return paid;
+		}
+
+		public void setPaid(boolean paid) {
+			this.paid = paid;
+		}
+
+	}
+
+	static class Item {
+		private int qty;
+		Integer bin;
+	}
+
+	static class Line {
+
+		final String sku;
+		final int qty;
+		final LocalDate due;
+
+		Line(String sku, int qty, LocalDate due) {
+			this.sku = sku;
+			this.qty = qty;
+			this.due = due;
+		}
+
+	}
+
+	public static class Bean {
+
+		private long id;
+		private String name;
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+	}
+
+	/**
+	 * Defines its own copy of Bean, which is then not visible from the class loader of RowMapper
+	 */
+	private static class ChildLoader extends ClassLoader {
+
+		ChildLoader() {
+			super(RowMapperTest.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.equals(Bean.class.getName())) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> cls = findLoadedClass(name);
+				if (cls != null) {
+					return cls;
+				}
+				try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+					byte[] bytes = IOUtils.toByteArray(is);
+					return defineClass(name, bytes, 0, bytes.length);
+				} catch (IOException e) {
+					throw new ClassNotFoundException(name, e);
+				}
+			}
+		}
+
+	}
+
+	@Test
+	public void testSetters() {
+		List<ResultRow> rows = newRows(new String[] { "id", "sku_code", "amount", "status", "order_date", "paid" },
+				new String[] { "7", "SKU-1", "12.50", "OPEN", "2021-06-15", "1" },
+				new String[] { "8", null, null, "CLOSED", null, "0" });
+		List<Order> orders = RowMapper.of(Order.class).mapAll(rows);
+		assertEquals(2, orders.size());
+		Order order = orders.get(0);
+		assertEquals(7, order.getId());
+		assertEquals("SKU-1", order.getSkuCode());
+		assertEquals(new BigDecimal("12.50"), order.getAmount());
+		assertEquals(Status.OPEN, order.getStatus());
+		assertEquals(LocalDate.of(2021, 6, 15), order.getOrderDate());
+		assertTrue(order.isPaid());
+		order = orders.get(1);
+		assertNull(order.getSkuCode());
+		assertEquals(Status.CLOSED, order.getStatus());
+		assertFalse(order.isPaid());
+	}
+
+	@Test
+	public void testFieldsAndColumnSets() {
+		RowMapper<Item> mapper = RowMapper.of(Item.class);
+		assertSame(mapper, RowMapper.of(Item.class));
+		Item item = mapper.map(newRows(new String[] { "QTY", "BIN", "other" }, new String[] { "3", "12", "x" }).get(0));
+		assertEquals(3, item.qty);
+		assertEquals(Integer.valueOf(12), item.bin);
+		item = mapper.map(newRows(new String[] { "bin" }, new String[] { null }).get(0));
+		assertEquals(0, item.qty);
+		assertNull(item.bin);
+	}
+
+	@Test
+	public void testNoMatchingColumn() {
+		try {
+			RowMapper.of(Item.class).map(newRows(new String[] { "name" }, new String[] { "x" }).get(0));
+			fail("Result without matching columns should fail");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage().startsWith("No column matches a property"));
+		}
+	}
+
+	@Test
+	public void testDuplicateColumnName() {
+		// A join returning two id columns, of which the column map keeps the last
+		Item item = RowMapper.of(Item.class).map(newRows(new String[] { "id", "bin", "id", "qty" },
+				new String[] { "1", "12", "2", "3" }).get(0));
+		assertEquals(Integer.valueOf(12), item.bin);
+		assertEquals(3, item.qty);
+	}
+
+	@Test
+	public void testResultSet() throws SQLException {
+		List<Order> orders = RowMapper.of(Order.class).mapAll(FakeJdbc.newResultSet(
+				new String[] { "id", "sku_code", "amount", "status", "order_date", "paid", "other" },
+				new String[] { "7", "SKU-1", "12.50", "OPEN", "2021-06-15", "1", "x" },
+				new String[] { "8", null, null, "CLOSED", null, "0", "y" }));
+		assertEquals(2, orders.size());
+		Order order = orders.get(0);
+		assertEquals(7, order.getId());
+		assertEquals("SKU-1", order.getSkuCode());
+		assertEquals(new BigDecimal("12.50"), order.getAmount());
+		assertEquals(Status.OPEN, order.getStatus());
+		assertEquals(LocalDate.of(2021, 6, 15), order.getOrderDate());
+		assertTrue(order.isPaid());
+		order = orders.get(1);
+		assertEquals(8, order.getId());
+		assertNull(order.getSkuCode());
+		assertNull(order.getOrderDate());
+		assertEquals(Status.CLOSED, order.getStatus());
+		assertFalse(order.isPaid());
+	}
+
+	@Test
+	public void testConstructor() throws SQLException {
+		// Parameter names are available as the tests are compiled with -parameters
+		RowMapper<Line> mapper = RowMapper.of(Line.class);
+		Line line = mapper.map(newRows(new String[] { "QTY", "SKU" }, new String[] { "4", "SKU-1" }).get(0));
+		assertEquals("SKU-1", line.sku);
+		assertEquals(4, line.qty);
+		assertNull(line.due);
+
+		List<Line> lines = mapper.mapAll(FakeJdbc.newResultSet(new String[] { "sku", "qty", "due" },
+				new String[] { "SKU-2", "5", "2021-06-15" }, new String[] { "SKU-3", null, null }));
+		assertEquals("SKU-2", lines.get(0).sku);
+		assertEquals(LocalDate.of(2021, 6, 15), lines.get(0).due);
+		assertEquals(0, lines.get(1).qty);
+	}
+
+	@Test
+	public void testChildLoaderClass() throws Exception {
+		Class<?> cls = new ChildLoader().loadClass(Bean.class.getName());
+		assertNotSame(Bean.class, cls);
+		RowMapper<?> mapper = RowMapper.of(cls);
+		Object bean = mapper.map(newRows(new String[] { "id", "name" }, new String[] { "7", "Alice" }).get(0));
+		assertEquals(7L, cls.getMethod("getId").invoke(bean));
+		assertEquals("Alice", cls.getMethod("getName").invoke(bean));
+
+		List<?> beans = mapper.mapAll(FakeJdbc.newResultSet(new String[] { "id", "name" },
+				new String[] { "8", "Bob" }));
+		assertEquals("Bob", cls.getMethod("getName").invoke(beans.get(0)));
+	}
+
+	private static List<ResultRow> newRows(String[] names, String[]... values) {
+		HashMap<String, Integer> columns = new HashMap<>();
+		for (int i = 0; i < names.length; i++) {
+			columns.put(names[i], i);
+		}
+		ResultRow[] rows = new ResultRow[values.length];
+		for (int i = 0; i < values.length; i++) {
+			rows[i] = new ResultRow(columns);
+			rows[i].setTokens(values[i]);
+		}
+		return Arrays.asList(rows);
+	}
+
+}
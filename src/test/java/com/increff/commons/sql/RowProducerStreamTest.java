@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.increff.commons.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RowProducerStreamTest {
+
+	@Test
+	public void testRows() throws IOException {
+		try (RowProducerStream in = RowProducerStream.start(writer -> {
+			writer.writeRow(new String[] { "1", "a\tb" });
+			writer.writeRow(new String[] { "2", null });
+		}, "producer")) {
+			assertEquals("1\ta\\tb\n2\t\\N\n", IOUtils.toString(in, StandardCharsets.UTF_8));
+			assertNull(in.getFailure());
+		}
+	}
+
+	@Test
+	public void testFailure() throws IOException {
+		IOException failure = new IOException("Disk full");
+		RowProducerStream in = RowProducerStream.start(writer -> {
+			writer.writeRow(new String[] { "1", "a" });
+			throw failure;
+		}, "producer");
+		try {
+			// Rows written before the failure are read, and the failure is thrown instead of the end of the stream
+			assertEquals("1\ta\n", read(in, 4));
+			in.read();
+			fail("Failed producer should not end the stream cleanly");
+		} catch (IOException e) {
+			assertEquals("Row producer failed", e.getMessage());
+			assertSame(failure, e.getCause());
+			assertSame(failure, in.getFailure());
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void testClose() throws IOException {
+		RowProducerStream in = RowProducerStream.start(writer -> {
+			for (int i = 0;; i++) {
+				writer.writeRow(new String[] { String.valueOf(i) });
+			}
+		}, "producer");
+		assertEquals("0\n1\n", read(in, 4));
+
+		// Closing while the producer is still writing ends it, and close waits for it
+		in.close();
+		assertNotNull(in.getFailure());
+	}
+
+	private static String read(InputStream in, int length) throws IOException {
+		byte[] b = new byte[length];
+		IOUtils.readFully(in, b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+}
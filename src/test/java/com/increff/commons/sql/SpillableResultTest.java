@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpillableResultTest {
+
+	@Test
+	public void testInMemory() throws IOException {
+		SpillableResult result = newResult(1 << 20, 1 << 20, new File(System.getProperty("java.io.tmpdir")));
+		assertFalse(result.isSpilled());
+		assertEquals(100, result.size());
+		assertEquals("sku-42", result.get(42).getString("sku"));
+		assertEquals(Long.valueOf(42), result.get(42).getLong("id"));
+		assertNull(result.getValue(7, "note"));
+		result.close();
+	}
+
+	@Test
+	public void testSpilled() throws IOException {
+		// Small segments so that rows are spread over many mapped buffers
+		File dir = Files.createTempDirectory("spill").toFile();
+		SpillableResult result = newResult(1000, 64, dir);
+		assertTrue(result.isSpilled());
+		assertEquals(100, result.size());
+		assertEquals(2, dir.list().length);
+		for (int i = 99; i >= 0; i--) {
+			ResultRow row = result.get(i);
+			assertEquals(i, row.getRow());
+			assertEquals(Long.valueOf(i), row.getLong("id"));
+			assertEquals("sku-" + i, row.getString(1));
+			assertEquals(i % 7 == 0 ? null : "né " + i, row.getString("note"));
+			assertEquals("sku-" + i, result.getValue(i, 1));
+		}
+		int count = 0;
+		for (ResultRow row : result) {
+			assertEquals(count++, row.getRow());
+		}
+		assertEquals(100, count);
+		result.close();
+		try {
+			result.get(0);
+			fail("Closed result should fail");
+		} catch (IllegalStateException e) {
+			assertEquals("Result is closed", e.getMessage());
+		}
+		assertEquals(0, dir.list().length);
+		dir.delete();
+	}
+
+	private static SpillableResult newResult(long maxMemoryBytes, int segmentSize, File dir) throws IOException {
+		HashMap<String, Integer> columns = new HashMap<>();
+		columns.put("id", 0);
+		columns.put("sku", 1);
+		columns.put("note", 2);
+		SpillableResult result = new SpillableResult(columns, 3, maxMemoryBytes, dir, segmentSize);
+		for (int i = 0; i < 100; i++) {
+			result.add(new String[] { String.valueOf(i), "sku-" + i, i % 7 == 0 ? null : "né " + i });
+		}
+		result.finish();
+		return result;
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SqlLexerTest {
+
+	@Test
+	public void testSplit() {
+		List<String> statements = SqlLexer.split("CREATE TABLE t (a INT);\n\n INSERT INTO t VALUES (1) ;;\n");
+		assertEquals(Arrays.asList("CREATE TABLE t (a INT)", "INSERT INTO t VALUES (1)"), statements);
+	}
+
+	@Test
+	public void testQuotesAreKept() {
+		List<String> statements = SqlLexer.split(
+				"INSERT INTO t VALUES ('a;b', \"--c\", 'it''s', 'x\\';y'); SELECT `we;ird` FROM t # trailing");
+		assertEquals(Arrays.asList("INSERT INTO t VALUES ('a;b', \"--c\", 'it''s', 'x\\';y')",
+				"SELECT `we;ird` FROM t"), statements);
+	}
+
+	@Test
+	public void testComments() {
+		String sql = "SELECT a, -- first\n b # second\n FROM /* block ; \n comment */ t // third\n";
+		assertEquals("SELECT a, \n b \n FROM   t \n", SqlLexer.stripComments(sql));
+		assertEquals(Arrays.asList("SELECT a, \n b \n FROM   t"), SqlLexer.split(sql));
+	}
+
+	@Test
+	public void testBlockCommentSeparatesTokens() {
+		assertEquals("SELECT col FROM t", SqlLexer.stripComments("SELECT col/*c*/FROM t"));
+		assertEquals(Arrays.asList("SELECT a FROM t", "SELECT 1"), SqlLexer.split("SELECT a/*x*/FROM t; SELECT 1"));
+	}
+
+	@Test
+	public void testDoubleDashNeedsWhitespace() {
+		assertEquals("SELECT 5--1", SqlLexer.stripComments("SELECT 5--1"));
+		assertEquals(Arrays.asList("SELECT 5--1", "SELECT 2"), SqlLexer.split("SELECT 5--1; SELECT 2 --\n"));
+		assertEquals("SELECT 1 \n", SqlLexer.stripComments("SELECT 1 --\tnote\n"));
+	}
+
+	@Test
+	public void testHintsAreKept() {
+		String sql = "SELECT /*+ MAX_EXECUTION_TIME(1000) */ a FROM t /*!50001 USE INDEX (i) */";
+		assertEquals(sql, SqlLexer.stripComments(sql));
+	}
+
+	@Test
+	public void testDelimiter() throws IOException {
+		String script = "DROP PROCEDURE IF EXISTS p;\nDELIMITER $$\nCREATE PROCEDURE p() BEGIN SELECT 1; END$$\n"
+				+ "delimiter ;\nCALL p();";
+		SqlLexer lexer = new SqlLexer(new StringReader(script));
+		assertEquals("DROP PROCEDURE IF EXISTS p", lexer.nextStatement());
+		assertEquals("CREATE PROCEDURE p() BEGIN SELECT 1; END", lexer.nextStatement());
+		assertEquals("CALL p()", lexer.nextStatement());
+		assertNull(lexer.nextStatement());
+	}
+
+	@Test
+	public void testTokenize() {
+		assertArrayEquals(new String[] { "SELECT 1", "SELECT ';'" }, SqlUtil.tokenize("SELECT 1; SELECT ';';"));
+	}
+
+}
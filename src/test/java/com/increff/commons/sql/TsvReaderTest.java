@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TsvReaderTest {
+
+	@Test
+	public void testReadsWriterOutput() throws IOException, DbException {
+		File file = File.createTempFile("tsv-reader", ".tsv");
+		file.deleteOnExit();
+		TsvWriter writer = TsvWriter.open(file, false);
+		writer.writeHeader(new String[] { "id", "name", "note" });
+		List<String[]> expected = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			String[] values = { String.valueOf(i - 100), "né " + i, i % 3 == 0 ? null : "a\tb\nc\\d\0" + i };
+			expected.add(values);
+			writer.writeRow(values);
+		}
+		writer.close();
+
+		// Small windows so that rows are read from several mappings
+		TsvReader reader = TsvReader.open(file, TsvWriter.CLI_NULL, 100);
+		assertArrayEquals(new String[] { "id", "name", "note" }, reader.getColumnNames());
+		assertEquals("id,name,note", DbCmd.getColumns(file.getPath()));
+		List<ResultRow> rows = reader.readAll();
+		assertEquals(expected.size(), rows.size());
+		for (int i = 0; i < rows.size(); i++) {
+			assertArrayEquals(expected.get(i), rows.get(i).getTokens());
+			assertEquals(i, rows.get(i).getRow());
+		}
+
+		long[] sum = new long[1];
+		assertEquals(200, reader.forEach(row -> sum[0] += row.getLong("id") + row.getInteger(0)));
+		assertEquals(-200, sum[0]);
+	}
+
+	@Test
+	public void testSplit() throws IOException, DbException {
+		File file = File.createTempFile("tsv-reader", ".tsv");
+		file.deleteOnExit();
+		StringBuilder sb = new StringBuilder("id\n");
+		for (int i = 0; i < 1000; i++) {
+			sb.append(i).append('\n');
+		}
+		FileUtils.writeStringToFile(file, sb.toString(), StandardCharsets.UTF_8);
+
+		TsvReader reader = TsvReader.open(file);
+		List<TsvReader> parts = reader.split(7);
+		assertEquals(7, parts.size());
+		List<Long> ids = new ArrayList<>();
+		long length = 0;
+		for (TsvReader part : parts) {
+			part.forEach(row -> ids.add(row.getLong(0)));
+			length += part.getLength();
+		}
+		assertEquals(reader.getLength(), length);
+		assertEquals(1000, ids.size());
+		for (int i = 0; i < ids.size(); i++) {
+			assertEquals(Long.valueOf(i), ids.get(i));
+		}
+		assertEquals(1, TsvReader.open(file).split(1).size());
+	}
+
+	@Test
+	public void testInvalidRow() throws IOException {
+		File file = File.createTempFile("tsv-reader", ".tsv");
+		file.deleteOnExit();
+		FileUtils.writeStringToFile(file, "id\tname\n1\ta\n2\n", StandardCharsets.UTF_8);
+		try {
+			TsvReader.open(file).readAll();
+			fail("Row with a missing value should fail");
+		} catch (DbException e) {
+			assertTrue(e.getMessage().startsWith("Expected 2 values but found 1 in row 1"));
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021. Increff
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.increff.commons.sql;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TsvWriterTest {
+
+	@Test
+	public void testMatchesCliOutput() throws IOException {
+		File file = File.createTempFile("tsv-writer", ".tsv");
+		file.deleteOnExit();
+		TsvWriter writer = TsvWriter.open(file, false);
+		writer.writeHeader(new String[] { "name", "pincode" });
+		writer.writeRow(new String[] { "Alice", "190006" });
+		writer.writeRow(new String[] { "John", "7800611" });
+		writer.close();
+
+		File expected = new File("src/test/resources/dbresultExpected.txt");
+		assertTrue("The files differ!", FileUtils.contentEquals(expected, file));
+		assertEquals(2, writer.getRows());
+		assertEquals(expected.length(), writer.getBytes());
+	}
+
+	@Test
+	public void testEscaping() throws IOException {
+		File file = File.createTempFile("tsv-writer", ".tsv");
+		file.deleteOnExit();
+		TsvWriter writer = TsvWriter.open(file, false);
+		writer.writeRow(new String[] { "a\tb", "c\nd", "e\\f", "g\0h", null, "\u00e9" });
+		writer.close();
+
+		String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+		assertEquals("a\\tb\tc\\nd\te\\\\f\tg\\0h\tNULL\t\u00e9\n", content);
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		File file = File.createTempFile("tsv-writer", ".tsv");
+		file.deleteOnExit();
+		for (int i = 0; i < 2; i++) {
+			TsvWriter writer = TsvWriter.open(file, true);
+			writer.writeHeader(new String[] { "id" });
+			writer.writeRow(new String[] { String.valueOf(i) });
+			writer.close();
+		}
+
+		String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+		assertEquals("id\n0\nid\n1\n", content);
+	}
+
+}